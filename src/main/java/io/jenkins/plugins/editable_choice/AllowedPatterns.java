@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * AllowedPatterns tests whether a value matches any of regular expressions.
+ *
+ * Patterns are compiled once into a single union pattern,
+ * so a value is tested in one match regardless of the number of patterns.
+ * Patterns referring groups (back references) are compiled separately instead,
+ * as group numbers change in the union pattern,
+ * and so are patterns that cannot be joined into a union.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+@Restricted(NoExternalUse.class)
+public final class AllowedPatterns {
+    /**
+     * Patterns referring groups, roughly detected.
+     */
+    private static final Pattern GROUP_REFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)");
+
+    @NonNull
+    private final List<String> sources;
+
+    /**
+     * The union of patterns. {@code null} if compiled separately.
+     */
+    @CheckForNull
+    private final Pattern union;
+
+    @NonNull
+    private final List<Pattern> patterns;
+
+    /**
+     * ctor.
+     *
+     * @param sources regular expressions. Each must match the whole value.
+     * @throws PatternSyntaxException any of patterns is malformed
+     */
+    public AllowedPatterns(@NonNull final List<String> sources) throws PatternSyntaxException {
+        this.sources = sources;
+        final List<Pattern> compiled = new ArrayList<>();
+        boolean referGroups = false;
+        for (final String source : sources) {
+            // compile each to report malformed ones.
+            compiled.add(Pattern.compile(source));
+            referGroups = referGroups || GROUP_REFERENCE.matcher(source).find();
+        }
+        this.union = (!referGroups && compiled.size() > 1) ? compileUnion(sources) : null;
+        this.patterns = (union != null) ? new ArrayList<>() : compiled;
+    }
+
+    /**
+     * Some patterns valid alone break the union,
+     * like {@code \Qfoo} without {@code \E} or comments in {@code (?x)}.
+     *
+     * @param sources regular expressions
+     * @return the union of patterns. {@code null} if patterns cannot be joined.
+     */
+    @CheckForNull
+    private static Pattern compileUnion(@NonNull final List<String> sources) {
+        try {
+            return Pattern.compile(
+                sources.stream().map(s -> "(?:" + s + ")").collect(Collectors.joining("|"))
+            );
+        } catch (final PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param sources patterns to test
+     * @return whether this instance is built from the specified list
+     */
+    public boolean isBuiltFrom(@CheckForNull final List<String> sources) {
+        return this.sources == sources;
+    }
+
+    /**
+     * @return whether no patterns are configured
+     */
+    public boolean isEmpty() {
+        return sources.isEmpty();
+    }
+
+    /**
+     * @param value the value to test
+     * @return whether the value matches any of patterns as a whole
+     */
+    public boolean matches(@NonNull final String value) {
+        if (union != null) {
+            return union.matcher(value).matches();
+        }
+        for (final Pattern pattern : patterns) {
+            if (pattern.matcher(value).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import jenkins.util.VirtualFile;
+
+/**
+ * Caches lines of artifacts archived by the last successful build of jobs, for {@link ArtifactChoiceProvider}.
+ *
+ * Lines are cached for the build number, and the cache of a job is replaced
+ * only when a new successful build of the job completes,
+ * so rendering pages never reads artifacts again.
+ * Caches are removed when jobs are deleted or renamed,
+ * as another job may take the name.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class ArtifactChoiceCache {
+    private static final int CACHE_SIZE = 256;
+
+    /**
+     * Caches keyed by full names of jobs.
+     */
+    private final LruCache<String, BuildEntry> cache = new LruCache<>(CACHE_SIZE);
+
+    /**
+     * @return the instance
+     */
+    @NonNull
+    public static ArtifactChoiceCache get() {
+        return ExtensionList.lookupSingleton(ArtifactChoiceCache.class);
+    }
+
+    /**
+     * @param job the job
+     * @param path the relative path of the artifact
+     * @return lines of the artifact archived by the last successful build. The same instance while cached.
+     * @throws IOException failed to read the artifact
+     */
+    @NonNull
+    public List<String> getLines(@NonNull final Job<?, ?> job, @NonNull final String path) throws IOException {
+        BuildEntry entry = cache.get(job.getFullName());
+        if (entry == null) {
+            final Run<?, ?> build = job.getLastSuccessfulBuild();
+            if (build == null) {
+                return Collections.emptyList();
+            }
+            entry = new BuildEntry(build.getNumber());
+            cache.put(job.getFullName(), entry);
+        }
+        final List<String> cached = entry.lines.get(path);
+        if (cached != null) {
+            return cached;
+        }
+        final Run<?, ?> build = job.getBuildByNumber(entry.number);
+        final List<String> lines = (build != null) ? readLines(build, path) : Collections.emptyList();
+        entry.lines.put(path, lines);
+        return lines;
+    }
+
+    /**
+     * Read lines of an artifact with the artifact manager, so artifacts stored in remote storages are also read.
+     * Empty lines and lines starting with {@code #} are skipped.
+     *
+     * @param build the build
+     * @param path the relative path of the artifact
+     * @return lines
+     * @throws IOException failed to read the artifact
+     */
+    @NonNull
+    static List<String> readLines(@NonNull final Run<?, ?> build, @NonNull final String path) throws IOException {
+        final VirtualFile file = build.getArtifactManager().root().child(path);
+        if (!file.isFile()) {
+            return Collections.emptyList();
+        }
+        final List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.open(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String value = line.trim();
+                if (!value.isEmpty() && !value.startsWith("#")) {
+                    lines.add(value);
+                }
+            }
+        }
+        return Collections.unmodifiableList(lines);
+    }
+
+    private void onSucceeded(@NonNull final Run<?, ?> build) {
+        final String name = build.getParent().getFullName();
+        final BuildEntry entry = cache.get(name);
+        if (entry == null || entry.number < build.getNumber()) {
+            // refers the build directly, as the permalink to the last successful build may not be updated yet.
+            cache.put(name, new BuildEntry(build.getNumber()));
+        }
+    }
+
+    private void onDeleted(@NonNull final Run<?, ?> build) {
+        final String name = build.getParent().getFullName();
+        final BuildEntry entry = cache.get(name);
+        if (entry != null && entry.number == build.getNumber()) {
+            cache.remove(name);
+        }
+    }
+
+    /**
+     * Removes caches of the item and items in it.
+     *
+     * @param fullName the full name of the item
+     */
+    private void evict(@NonNull final String fullName) {
+        final String prefix = fullName + "/";
+        cache.removeIf(name -> name.equals(fullName) || name.startsWith(prefix));
+    }
+
+    /**
+     * Lines of artifacts in a build.
+     */
+    private static final class BuildEntry {
+        private final int number;
+
+        /**
+         * Lines keyed by paths of artifacts.
+         */
+        private final Map<String, List<String>> lines = new ConcurrentHashMap<>();
+
+        BuildEntry(final int number) {
+            this.number = number;
+        }
+    }
+
+    /**
+     * Replaces caches when new successful builds complete.
+     */
+    @Extension
+    public static class RunListenerImpl extends RunListener<Run<?, ?>> {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onCompleted(final Run<?, ?> run, final TaskListener listener) {
+            final Result result = run.getResult();
+            if (result != null && result.isBetterOrEqualTo(Result.SUCCESS)) {
+                get().onSucceeded(run);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onDeleted(final Run<?, ?> run) {
+            get().onDeleted(run);
+        }
+    }
+
+    /**
+     * Removes caches when jobs are deleted or renamed.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLocationChanged(final Item item, final String oldFullName, final String newFullName) {
+            get().evict(oldFullName);
+            get().evict(newFullName);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onDeleted(final Item item) {
+            get().evict(item.getFullName());
+        }
+    }
+}
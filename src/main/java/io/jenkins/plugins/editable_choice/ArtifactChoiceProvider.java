@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Job;
+import hudson.model.Run;
+import jenkins.model.Jenkins;
+
+/**
+ * Provides lines of a text file archived by the last successful build of a job.
+ *
+ * Lines are cached in {@link ArtifactChoiceCache} until a new successful build completes.
+ */
+public class ArtifactChoiceProvider extends ChoiceProvider {
+    private static final long serialVersionUID = -1873602445170946712L;
+    private static final Logger LOGGER = Logger.getLogger(ArtifactChoiceProvider.class.getName());
+
+    @NonNull
+    private final String job;
+
+    @NonNull
+    private final String artifact;
+
+    /**
+     * ctor.
+     *
+     * @param job the full name of the job archiving the artifact
+     * @param artifact the relative path of the artifact, like {@code versions.txt}
+     */
+    @DataBoundConstructor
+    public ArtifactChoiceProvider(@NonNull final String job, @NonNull final String artifact) {
+        this.job = Util.fixNull(job).trim();
+        this.artifact = Util.fixNull(artifact).trim();
+    }
+
+    /**
+     * @return the full name of the job archiving the artifact
+     */
+    @NonNull
+    public String getJob() {
+        return job;
+    }
+
+    /**
+     * @return the relative path of the artifact
+     */
+    @NonNull
+    public String getArtifact() {
+        return artifact;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDependingOnAuthentication() {
+        return true;
+    }
+
+    /**
+     * Lists nothing when the current user cannot read artifacts of the job.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    @NonNull
+    public List<String> getChoices() {
+        if (job.isEmpty() || artifact.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // resolved with the current authentication.
+        final Job<?, ?> upstream = Jenkins.get().getItemByFullName(job, Job.class);
+        if (upstream == null || !upstream.hasPermission(Run.ARTIFACTS)) {
+            return Collections.emptyList();
+        }
+        try {
+            return ArtifactChoiceCache.get().getLines(upstream, artifact);
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, String.format("Failed to read %s in %s", artifact, job), e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Descriptor for {@link ArtifactChoiceProvider}.
+     */
+    @Extension
+    @Symbol("upstreamArtifact")
+    public static class DescriptorImpl extends ChoiceProviderDescriptor {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return Messages.ArtifactChoiceProvider_DisplayName();
+        }
+    }
+}
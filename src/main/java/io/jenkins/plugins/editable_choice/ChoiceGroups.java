@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import net.sf.json.JSONObject;
+
+/**
+ * ChoiceGroups groups choices by paths delimited in values
+ * (e.g. {@code service-a/prod} and {@code service-a/staging} into {@code service-a/}).
+ *
+ * Only the children of a group are listed at once,
+ * so that pages can display groups first and expand them lazily.
+ * Choices are sorted by values to find members of a group with binary searches.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+@Restricted(NoExternalUse.class)
+public final class ChoiceGroups {
+    @NonNull
+    private final ChoiceIndex index;
+    @NonNull
+    private final String delimiter;
+
+    /**
+     * Values sorted.
+     */
+    @NonNull
+    private final String[] keys;
+
+    /**
+     * {@code positions[i]} is the position of the choice of {@code keys[i]}.
+     */
+    @NonNull
+    private final int[] positions;
+
+    @CheckForNull
+    private volatile List<Entry> topLevel;
+
+    /**
+     * A group or a choice in a group.
+     */
+    public static final class Entry {
+        @NonNull
+        private final String value;
+        @NonNull
+        private final String label;
+        private final boolean group;
+        private final int position;
+        private final int count;
+
+        Entry(@NonNull final String value, @NonNull final String label, final boolean group, final int position, final int count) {
+            this.value = value;
+            this.label = label;
+            this.group = group;
+            this.position = position;
+            this.count = count;
+        }
+
+        /**
+         * @param index the index of choices
+         * @param position the position of the choice
+         * @return the entry for the choice
+         */
+        @NonNull
+        static Entry ofChoice(@NonNull final ChoiceIndex index, final int position) {
+            return new Entry(index.get(position), index.getLabel(position), false, position, 1);
+        }
+
+        /**
+         * @return the path of the group ending with the delimiter, or the value of the choice
+         */
+        @NonNull
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * @return the name of the group, or the label of the choice
+         */
+        @NonNull
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * @return whether this is a group
+         */
+        public boolean isGroup() {
+            return group;
+        }
+
+        /**
+         * @return the number of choices in the group. {@code 1} for choices.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return JSON representation
+         */
+        @NonNull
+        public JSONObject toJson() {
+            final JSONObject json = new JSONObject();
+            json.put("value", value);
+            json.put("label", label);
+            json.put("group", group);
+            json.put("count", count);
+            return json;
+        }
+    }
+
+    /**
+     * ctor.
+     *
+     * @param index the index of choices
+     * @param delimiter the delimiter of paths
+     */
+    public ChoiceGroups(@NonNull final ChoiceIndex index, @NonNull final String delimiter) {
+        this.index = index;
+        this.delimiter = delimiter;
+        final Integer[] order = new Integer[index.size()];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        // stable, so positions of the same values are kept in ascending order.
+        Arrays.sort(order, Comparator.comparing(index::get));
+        this.keys = new String[order.length];
+        this.positions = new int[order.length];
+        for (int i = 0; i < order.length; ++i) {
+            keys[i] = index.get(order[i]);
+            positions[i] = order[i];
+        }
+    }
+
+    /**
+     * @param delimiter the delimiter to test
+     * @return whether this instance groups with the delimiter
+     */
+    public boolean isBuiltFor(@CheckForNull final String delimiter) {
+        return this.delimiter.equals(delimiter);
+    }
+
+    /**
+     * @return groups and choices not in any groups. Cached.
+     */
+    @NonNull
+    public List<Entry> getTopLevel() {
+        List<Entry> entries = topLevel;
+        if (entries == null) {
+            entries = Collections.unmodifiableList(getChildren(""));
+            topLevel = entries;
+        }
+        return entries;
+    }
+
+    /**
+     * List direct children of a group.
+     *
+     * Takes the time proportional to the number of choices in the group.
+     *
+     * @param path the path of the group ending with the delimiter. Empty for the top level.
+     * @return groups and choices in the group, ordered by the first position in choices
+     */
+    @NonNull
+    public List<Entry> getChildren(@NonNull final String path) {
+        final List<Entry> result = new ArrayList<>();
+        int from = lowerBound(path);
+        while (from < keys.length && keys[from].startsWith(path)) {
+            final int end = keys[from].indexOf(delimiter, path.length());
+            if (end < 0) {
+                result.add(Entry.ofChoice(index, positions[from]));
+                ++from;
+                continue;
+            }
+            final String group = keys[from].substring(0, end + delimiter.length());
+            int first = positions[from];
+            int to = from + 1;
+            while (to < keys.length && keys[to].startsWith(group)) {
+                first = Math.min(first, positions[to]);
+                ++to;
+            }
+            result.add(new Entry(group, group.substring(path.length()), true, first, to - from));
+            from = to;
+        }
+        result.sort(Comparator.comparingInt(e -> e.position));
+        return result;
+    }
+
+    private int lowerBound(@NonNull final String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,591 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * ChoiceIndex holds lookup structures built from choices.
+ *
+ * Choices can have labels to display, held in an array parallel to values.
+ * Values are used for validation, and labels are used for filtering.
+ * Choices are held sorted with {@link SortMode}, and positions are ones in the sorted order.
+ *
+ * Instances are immutable and built once for a list of choices,
+ * so they can be shared between threads without synchronization.
+ * Instances whose content hash is computed can be looked up with the hash,
+ * for values loaded from build.xml to share instances of choices.
+ */
+@Restricted(NoExternalUse.class)
+public final class ChoiceIndex {
+    /**
+     * Indices keyed by {@link #getContentHash()}. Held weakly not to keep indices no longer used.
+     */
+    private static final Map<String, WeakReference<ChoiceIndex>> INDICES_BY_CONTENT_HASH = new ConcurrentHashMap<>();
+
+    @NonNull
+    private final List<String> choices;
+    @CheckForNull
+    private final List<String> choiceLabels;
+    @NonNull
+    private final SortMode sortMode;
+    @NonNull
+    private final String[] values;
+
+    /**
+     * Labels of choices, the same instance as {@link #values} if no labels are specified.
+     */
+    @NonNull
+    private final String[] labels;
+    @NonNull
+    private final Map<String, Integer> positions;
+
+    /**
+     * {@link #getContentHash()}, computed on the first use.
+     */
+    @CheckForNull
+    private volatile String contentHash;
+
+    /**
+     * {@link #getSearchHash()}, computed on the first use.
+     */
+    @CheckForNull
+    private volatile String searchHash;
+
+    /**
+     * Choices keyed by {@link #fold(String)}. Built on the first use.
+     */
+    @CheckForNull
+    private volatile Map<String, String> foldedValues;
+
+    @CheckForNull
+    private volatile FuzzyIndex fuzzyIndex;
+    @CheckForNull
+    private volatile FuzzyIndex caseInsensitiveFuzzyIndex;
+    @CheckForNull
+    private volatile TokenIndex tokenIndex;
+    @CheckForNull
+    private volatile TokenIndex caseInsensitiveTokenIndex;
+    @CheckForNull
+    private volatile PrefixIndex prefixIndex;
+    @CheckForNull
+    private volatile PrefixIndex caseInsensitivePrefixIndex;
+    @CheckForNull
+    private volatile ChoiceGroups groups;
+
+    /**
+     * ctor.
+     *
+     * @param choices choices to index
+     */
+    public ChoiceIndex(@NonNull final List<String> choices) {
+        this(choices, null);
+    }
+
+    /**
+     * ctor.
+     *
+     * @param choices choices to index
+     * @param choiceLabels labels for each choice. Values are used for missing or empty labels.
+     */
+    public ChoiceIndex(@NonNull final List<String> choices, @CheckForNull final List<String> choiceLabels) {
+        this(choices, choiceLabels, SortMode.AS_CONFIGURED);
+    }
+
+    /**
+     * ctor.
+     *
+     * @param choices choices to index
+     * @param choiceLabels labels for each choice. Values are used for missing or empty labels.
+     * @param sortMode how to sort choices
+     */
+    public ChoiceIndex(
+        @NonNull final List<String> choices,
+        @CheckForNull final List<String> choiceLabels,
+        @NonNull final SortMode sortMode
+    ) {
+        this.choices = choices;
+        this.choiceLabels = choiceLabels;
+        this.sortMode = sortMode;
+        final String[] configured = choices.toArray(new String[0]);
+        final String[] configuredLabels = buildLabels(configured, choiceLabels);
+        final int[] order = sortMode.sort(configured);
+        if (order == null) {
+            this.values = configured;
+            this.labels = configuredLabels;
+        } else {
+            this.values = SortMode.apply(configured, order);
+            this.labels = (configuredLabels == configured) ? values : SortMode.apply(configuredLabels, order);
+        }
+        this.positions = new HashMap<>(values.length * 2);
+        for (int i = 0; i < values.length; ++i) {
+            // the first one wins for duplicated choices, just like List#indexOf.
+            positions.putIfAbsent(values[i], i);
+        }
+    }
+
+    @NonNull
+    private static String[] buildLabels(@NonNull final String[] values, @CheckForNull final List<String> choiceLabels) {
+        if (choiceLabels == null || choiceLabels.isEmpty()) {
+            return values;
+        }
+        final String[] labels = new String[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            final String label = (i < choiceLabels.size()) ? choiceLabels.get(i) : null;
+            labels[i] = (label != null && !label.isEmpty()) ? label : values[i];
+        }
+        return labels;
+    }
+
+    /**
+     * @param choices choices to test
+     * @param choiceLabels labels to test
+     * @param sortMode the sort mode to test
+     * @return whether this index is built from the specified lists
+     */
+    public boolean isBuiltFrom(
+        @CheckForNull final List<String> choices,
+        @CheckForNull final List<String> choiceLabels,
+        @NonNull final SortMode sortMode
+    ) {
+        return this.choices == choices && this.choiceLabels == choiceLabels && this.sortMode == sortMode;
+    }
+
+    /**
+     * @return the number of choices
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @param index the position of the choice
+     * @return the choice
+     */
+    @NonNull
+    public String get(final int index) {
+        return values[index];
+    }
+
+    /**
+     * @return choices in the sorted order
+     */
+    @NonNull
+    public List<String> getValues() {
+        return Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    /**
+     * The hash of choices, which is the same for choices with the same contents.
+     *
+     * @return SHA-256 of choices in hex
+     */
+    @NonNull
+    public String getContentHash() {
+        String hash = contentHash;
+        if (hash == null) {
+            final MessageDigest digest = newDigest();
+            update(digest, values);
+            hash = toHex(digest.digest());
+            contentHash = hash;
+            register(hash);
+        }
+        return hash;
+    }
+
+    private void register(@NonNull final String hash) {
+        // registered only once for each index, so sweeping here is not costly.
+        INDICES_BY_CONTENT_HASH.values().removeIf(ref -> ref.get() == null);
+        INDICES_BY_CONTENT_HASH.put(hash, new WeakReference<>(this));
+    }
+
+    /**
+     * @param hash {@link #getContentHash()} of the index
+     * @return the index whose content hash is already computed. {@code null} if not found.
+     */
+    @CheckForNull
+    static ChoiceIndex findByContentHash(@NonNull final String hash) {
+        final WeakReference<ChoiceIndex> ref = INDICES_BY_CONTENT_HASH.get(hash);
+        return (ref != null) ? ref.get() : null;
+    }
+
+    /**
+     * The hash of choices and labels, which is the same for indices returning the same search results.
+     *
+     * @return SHA-256 of choices and labels in hex. The same as {@link #getContentHash()} if no labels are specified.
+     */
+    @NonNull
+    public String getSearchHash() {
+        String hash = searchHash;
+        if (hash == null) {
+            if (hasLabels()) {
+                final MessageDigest digest = newDigest();
+                update(digest, values);
+                // never appears as a length, so that it's different from any choices without labels.
+                digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(-1).array());
+                update(digest, labels);
+                hash = toHex(digest.digest());
+            } else {
+                hash = getContentHash();
+            }
+            searchHash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * @return {@link #getSearchHash()} if already computed, otherwise {@code null}
+     */
+    @CheckForNull
+    String getSearchHashIfComputed() {
+        return searchHash;
+    }
+
+    @NonNull
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // SHA-256 is always available.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(@NonNull final MessageDigest digest, @NonNull final String[] strings) {
+        final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        for (final String value : strings) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            // prefix lengths so that boundaries of values are not ambiguous.
+            length.clear();
+            length.putInt(bytes.length);
+            digest.update(length.array());
+            digest.update(bytes);
+        }
+    }
+
+    @NonNull
+    private static String toHex(@NonNull final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder();
+        for (final byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param index the position of the choice
+     * @return the label of the choice. The value if no label is specified.
+     */
+    @NonNull
+    public String getLabel(final int index) {
+        return labels[index];
+    }
+
+    /**
+     * @return whether any labels are specified
+     */
+    public boolean hasLabels() {
+        return labels != values;
+    }
+
+    /**
+     * @param value the value
+     * @return the label for the value. {@code null} if the value is not in choices.
+     */
+    @CheckForNull
+    public String getLabelOf(@CheckForNull final String value) {
+        final int position = indexOf(value);
+        return (position >= 0) ? labels[position] : null;
+    }
+
+    /**
+     * @return labels keyed by values, a view backed by this index. {@code null} if no labels are specified.
+     */
+    @CheckForNull
+    public Map<String, String> getLabelMap() {
+        return hasLabels() ? new LabelMap() : null;
+    }
+
+    /**
+     * Labels keyed by values, looking up the parallel arrays without copying them.
+     */
+    private final class LabelMap extends AbstractMap<String, String> {
+        @Override
+        public String get(final Object key) {
+            return (key instanceof String) ? getLabelOf((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return (key instanceof String) && contains((String) key);
+        }
+
+        @Override
+        public Set<Map.Entry<String, String>> entrySet() {
+            final Set<Map.Entry<String, String>> entries = new LinkedHashSet<>();
+            for (int i = 0; i < values.length; ++i) {
+                if (positions.get(values[i]) == i) {
+                    entries.add(new SimpleImmutableEntry<>(values[i], labels[i]));
+                }
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * @param value the value to test
+     * @return whether the value is in choices
+     */
+    public boolean contains(@CheckForNull final String value) {
+        return value != null && positions.containsKey(value);
+    }
+
+    /**
+     * @param value the value to look up
+     * @return the instance of the choice equal to the value. The value itself if not in choices.
+     */
+    @NonNull
+    public String canonical(@NonNull final String value) {
+        final Integer position = positions.get(value);
+        return (position != null) ? values[position] : value;
+    }
+
+    /**
+     * @param value the value to look up
+     * @return the position of the value in choices. {@code -1} if not in choices.
+     */
+    public int indexOf(@CheckForNull final String value) {
+        if (value == null) {
+            return -1;
+        }
+        final Integer position = positions.get(value);
+        return (position != null) ? position : -1;
+    }
+
+    /**
+     * @param value a value
+     * @return the value normalized in NFC and lower-cased in {@link Locale#ROOT}
+     */
+    @NonNull
+    static String fold(@NonNull final String value) {
+        return Normalizer.normalize(value, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Find the choice same as the value ignoring cases and Unicode normalization.
+     *
+     * @param value the value to look up
+     * @return the choice as configured. {@code null} if not found.
+     */
+    @CheckForNull
+    public String findIgnoringCase(@CheckForNull final String value) {
+        if (value == null) {
+            return null;
+        }
+        final int position = indexOf(value);
+        if (position >= 0) {
+            return values[position];
+        }
+        return getFoldedValues().get(fold(value));
+    }
+
+    @NonNull
+    private Map<String, String> getFoldedValues() {
+        Map<String, String> folded = foldedValues;
+        if (folded == null) {
+            // building twice in a race is harmless.
+            folded = new HashMap<>(values.length * 2);
+            for (final String v : values) {
+                // the first one wins just like #indexOf.
+                folded.putIfAbsent(fold(v), v);
+            }
+            foldedValues = folded;
+        }
+        return folded;
+    }
+
+    /**
+     * Build the map used for {@link #findIgnoringCase(String)} in advance.
+     */
+    public void warmUpIgnoringCase() {
+        getFoldedValues();
+    }
+
+    /**
+     * @param caseInsensitive whether to match in case insensitive
+     * @return the index for fuzzy matching. Built on the first call.
+     */
+    @NonNull
+    public FuzzyIndex getFuzzyIndex(final boolean caseInsensitive) {
+        FuzzyIndex index = caseInsensitive ? caseInsensitiveFuzzyIndex : fuzzyIndex;
+        if (index == null) {
+            // building twice in a race is harmless.
+            index = new FuzzyIndex(this, caseInsensitive);
+            if (caseInsensitive) {
+                caseInsensitiveFuzzyIndex = index;
+            } else {
+                fuzzyIndex = index;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @param caseInsensitive whether to match in case insensitive
+     * @return the index for matching tokens. Built on the first call.
+     */
+    @NonNull
+    public TokenIndex getTokenIndex(final boolean caseInsensitive) {
+        TokenIndex index = caseInsensitive ? caseInsensitiveTokenIndex : tokenIndex;
+        if (index == null) {
+            // building twice in a race is harmless.
+            index = new TokenIndex(this, caseInsensitive);
+            if (caseInsensitive) {
+                caseInsensitiveTokenIndex = index;
+            } else {
+                tokenIndex = index;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @param caseInsensitive whether to match in case insensitive
+     * @return the index for matching prefixes. Built on the first call.
+     */
+    @NonNull
+    public PrefixIndex getPrefixIndex(final boolean caseInsensitive) {
+        PrefixIndex index = caseInsensitive ? caseInsensitivePrefixIndex : prefixIndex;
+        if (index == null) {
+            // building twice in a race is harmless.
+            index = new PrefixIndex(this, caseInsensitive);
+            if (caseInsensitive) {
+                caseInsensitivePrefixIndex = index;
+            } else {
+                prefixIndex = index;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @param delimiter the delimiter of paths in values
+     * @return choices grouped by paths. Built on the first call for the delimiter.
+     */
+    @NonNull
+    public ChoiceGroups getGroups(@NonNull final String delimiter) {
+        ChoiceGroups g = groups;
+        if (g == null || !g.isBuiltFor(delimiter)) {
+            // building twice in a race is harmless.
+            g = new ChoiceGroups(this, delimiter);
+            groups = g;
+        }
+        return g;
+    }
+
+    /**
+     * Build indices required for the filter in advance.
+     *
+     * @param filterConfig how to filter values. {@code null} not to filter.
+     */
+    public void warmUp(@CheckForNull final FilterConfig filterConfig) {
+        if (filterConfig == null) {
+            return;
+        }
+        switch (filterConfig.getMatchMode()) {
+        case FUZZY:
+            getFuzzyIndex(filterConfig.isCaseInsensitive());
+            break;
+        case TOKENS:
+            getTokenIndex(filterConfig.isCaseInsensitive());
+            break;
+        case REGEX:
+            getPrefixIndex(filterConfig.isCaseInsensitive());
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Search choices with labels matching the input.
+     *
+     * @param filterConfig how to filter values. {@code null} not to filter.
+     * @param input the input
+     * @param limit the maximum number of results
+     * @return positions of matching choices
+     */
+    @NonNull
+    public List<Integer> search(
+        @CheckForNull final FilterConfig filterConfig,
+        @NonNull final String input,
+        final int limit
+    ) {
+        if (filterConfig != null && !input.isEmpty()) {
+            switch (filterConfig.getMatchMode()) {
+            case FUZZY:
+                return getFuzzyIndex(filterConfig.isCaseInsensitive()).search(input, limit);
+            case TOKENS:
+                return getTokenIndex(filterConfig.isCaseInsensitive()).search(input, limit);
+            case REGEX:
+                return RegexSearch.search(this, input, filterConfig.isCaseInsensitive(), limit);
+            default:
+                break;
+            }
+        }
+        final boolean prefix = filterConfig != null && filterConfig.isPrefix();
+        final boolean caseInsensitive = filterConfig != null && filterConfig.isCaseInsensitive();
+        final String query = caseInsensitive ? input.toLowerCase(Locale.ROOT) : input;
+        final List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < values.length && result.size() < limit; ++i) {
+            final String value = caseInsensitive ? labels[i].toLowerCase(Locale.ROOT) : labels[i];
+            if (filterConfig == null || (prefix ? value.startsWith(query) : value.contains(query))) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Job;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+/**
+ * Builds indices of {@link EditableChoiceParameterDefinition} in background when Jenkins starts.
+ *
+ * Indices are built lazily, and it makes the first user opening a build page
+ * after restarting Jenkins wait for building them.
+ * This builds them in advance with a small fork-join pool of low priority threads,
+ * and doesn't block Jenkins from completing the startup.
+ * Indices are built as the system, and parameters with choices depending on the user
+ * are left to be built for each user.
+ */
+@Restricted(NoExternalUse.class)
+public final class ChoiceIndexWarmer {
+    private static final Logger LOGGER = Logger.getLogger(ChoiceIndexWarmer.class.getName());
+
+    /**
+     * Whether to build indices when Jenkins starts.
+     */
+    private static final boolean ENABLED = SystemProperties.getBoolean(
+        ChoiceIndexWarmer.class.getName() + ".enabled",
+        true
+    );
+
+    /**
+     * The number of threads to build indices.
+     */
+    private static final int PARALLELISM = SystemProperties.getInteger(
+        ChoiceIndexWarmer.class.getName() + ".parallelism",
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2)
+    );
+
+    /**
+     * The number of steps to report the progress.
+     */
+    private static final int PROGRESS_STEPS = 10;
+
+    private ChoiceIndexWarmer() {
+    }
+
+    /**
+     * Start building indices in background.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED, fatal = false)
+    public static void startWarmingUp() {
+        if (!ENABLED) {
+            LOGGER.log(Level.FINE, "Building indices for editable choice parameters at startup is disabled");
+            return;
+        }
+        final ForkJoinPool pool = new ForkJoinPool(
+            Math.max(1, PARALLELISM),
+            new LowPriorityThreadFactory(),
+            null,
+            false
+        );
+        pool.execute(() -> {
+            try {
+                warmUp(pool);
+            } catch (final RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to build indices for editable choice parameters", e);
+            } finally {
+                pool.shutdown();
+            }
+        });
+    }
+
+    /**
+     * Walk all jobs and build indices for editable choice parameters.
+     *
+     * @param pool the pool to build indices
+     */
+    private static void warmUp(@NonNull final ForkJoinPool pool) {
+        final long startedAt = System.nanoTime();
+        final List<EditableChoiceParameterDefinition> definitions = collectDefinitions();
+        LOGGER.log(
+            Level.INFO,
+            "Building indices for {0} editable choice parameters",
+            definitions.size()
+        );
+        if (definitions.isEmpty()) {
+            return;
+        }
+        final AtomicInteger done = new AtomicInteger();
+        final int reportEvery = Math.max(1, definitions.size() / PROGRESS_STEPS);
+        pool.invoke(new WarmUpTask(definitions, 0, definitions.size(), done, reportEvery));
+        LOGGER.log(
+            Level.INFO,
+            "Built indices for {0} editable choice parameters in {1} ms",
+            new Object[] {
+                done.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt),
+            }
+        );
+    }
+
+    /**
+     * @return all editable choice parameters defined in jobs, except ones with choices depending on users.
+     */
+    @NonNull
+    private static List<EditableChoiceParameterDefinition> collectDefinitions() {
+        final List<EditableChoiceParameterDefinition> definitions = new ArrayList<>();
+        try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+            for (final Job<?, ?> job : Jenkins.get().allItems(Job.class)) {
+                final ParametersDefinitionProperty prop = job.getProperty(ParametersDefinitionProperty.class);
+                if (prop == null) {
+                    continue;
+                }
+                for (final ParameterDefinition def : prop.getParameterDefinitions()) {
+                    if (!(def instanceof EditableChoiceParameterDefinition)) {
+                        continue;
+                    }
+                    final EditableChoiceParameterDefinition d = (EditableChoiceParameterDefinition) def;
+                    final ChoiceProvider provider = d.getChoiceProvider();
+                    if (provider != null && provider.isDependingOnAuthentication()) {
+                        // choices loaded as the system would be shared with users.
+                        continue;
+                    }
+                    definitions.add(d);
+                }
+            }
+        }
+        return definitions;
+    }
+
+    /**
+     * Builds indices for a range of definitions, splitting the range into halves.
+     */
+    private static final class WarmUpTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        @NonNull
+        private final List<EditableChoiceParameterDefinition> definitions;
+        private final int from;
+        private final int to;
+        @NonNull
+        private final AtomicInteger done;
+        private final int reportEvery;
+
+        WarmUpTask(
+            @NonNull final List<EditableChoiceParameterDefinition> definitions,
+            final int from,
+            final int to,
+            @NonNull final AtomicInteger done,
+            final int reportEvery
+        ) {
+            this.definitions = definitions;
+            this.from = from;
+            this.to = to;
+            this.done = done;
+            this.reportEvery = reportEvery;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(
+                    new WarmUpTask(definitions, from, mid, done, reportEvery),
+                    new WarmUpTask(definitions, mid, to, done, reportEvery)
+                );
+                return;
+            }
+            final EditableChoiceParameterDefinition def = definitions.get(from);
+            try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+                def.warmUp();
+            } catch (final RuntimeException e) {
+                LOGGER.log(
+                    Level.WARNING,
+                    String.format("Failed to build indices for the parameter %s", def.getName()),
+                    e
+                );
+            }
+            final int count = done.incrementAndGet();
+            if (count % reportEvery == 0) {
+                LOGGER.log(
+                    Level.INFO,
+                    "Built indices for {0} / {1} editable choice parameters",
+                    new Object[] {count, definitions.size()}
+                );
+            }
+        }
+    }
+
+    /**
+     * Creates daemon threads with the lowest priority not to disturb other startup tasks.
+     */
+    private static final class LowPriorityThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+            final ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+            };
+            thread.setName(String.format("EditableChoiceIndexWarmer-%d", count.incrementAndGet()));
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,550 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.XmlFile;
+import hudson.init.Terminator;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.util.XStream2;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Saves choices referred from {@link EditableMultiChoiceParameterValue}, keyed by {@link ChoiceIndex#getContentHash()}.
+ *
+ * Choices with the same contents are saved only once in JENKINS_HOME,
+ * so builds can refer choices with the hash instead of holding the copy.
+ * Values only keep choices in memory, and choices are recorded when builds recording the values start,
+ * and written with a background task in batch,
+ * so neither rendering build pages nor starting builds writes files.
+ * The number of builds referring choices is recorded for each job,
+ * and choices are deleted when no builds refer them any more.
+ *
+ * Values never depend on saved choices to be resolved, as they also hold selected choices.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class ChoiceListStore {
+    private static final Logger LOGGER = Logger.getLogger(ChoiceListStore.class.getName());
+
+    /**
+     * The name of the directory in JENKINS_HOME.
+     */
+    static final String DIRNAME = "editable-choice-lists";
+
+    /**
+     * The name of the file recording builds referring choices, in {@link #DIRNAME}.
+     */
+    static final String REFERENCES_FILENAME = "references.xml";
+
+    /**
+     * The maximum number of choice lists kept in memory.
+     */
+    private static final int CACHE_SIZE = SystemProperties.getInteger(
+        ChoiceListStore.class.getName() + ".cacheSize",
+        64
+    );
+
+    /**
+     * Delay to save references, to save changes by many builds at once.
+     */
+    private static final long FLUSH_DELAY_MILLIS = SystemProperties.getLong(
+        ChoiceListStore.class.getName() + ".flushDelayMillis",
+        5000L
+    );
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private static final XStream2 XSTREAM = new XStream2();
+
+    static {
+        XSTREAM.alias("choice-list", ChoiceList.class);
+        XSTREAM.alias("choice-list-references", References.class);
+    }
+
+    private final LruCache<String, List<String>> cache = new LruCache<>(CACHE_SIZE);
+
+    /**
+     * Choices to write, keyed by hashes. Guarded by this.
+     */
+    private final Map<String, List<String>> pending = new HashMap<>();
+
+    /**
+     * Serializes writing files.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Loaded on the first use. Guarded by this.
+     */
+    @CheckForNull
+    private References references;
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    /**
+     * @return the instance
+     */
+    @NonNull
+    public static ChoiceListStore get() {
+        return ExtensionList.lookupSingleton(ChoiceListStore.class);
+    }
+
+    /**
+     * Keep choices in memory to load them with the hash. Never writes files.
+     *
+     * @param index the index of choices
+     * @return the hash to load the choices
+     */
+    @NonNull
+    public String remember(@NonNull final ChoiceIndex index) {
+        final String hash = index.getContentHash();
+        cache.put(hash, index.getValues());
+        return hash;
+    }
+
+    /**
+     * Record a build of the job refers choices, and schedule to save choices if not saved yet.
+     *
+     * Choices saved before builds referring them were recorded are never deleted,
+     * as unknown builds may refer them.
+     *
+     * @param hash the hash of choices
+     * @param choices choices
+     * @param job the full name of the job
+     */
+    synchronized void save(@NonNull final String hash, @NonNull final List<String> choices, @NonNull final String job) {
+        cache.put(hash, choices);
+        final References refs = getReferences();
+        Map<String, Integer> jobs = refs.counts.get(hash);
+        if (jobs == null) {
+            if (getFile(hash).exists()) {
+                // saved by an older version.
+                return;
+            }
+            jobs = new HashMap<>();
+            refs.counts.put(hash, jobs);
+            pending.put(hash, choices);
+        }
+        jobs.merge(job, 1, Integer::sum);
+        scheduleFlush();
+    }
+
+    /**
+     * Record a build of the job no longer refers choices, and delete them if no builds refer them.
+     *
+     * @param hash the hash of choices
+     * @param job the full name of the job
+     */
+    synchronized void release(@NonNull final String hash, @NonNull final String job) {
+        final Map<String, Integer> jobs = getReferences().counts.get(hash);
+        if (jobs == null) {
+            return;
+        }
+        if (jobs.merge(job, -1, Integer::sum) <= 0) {
+            jobs.remove(job);
+        }
+        deleteIfUnreferenced(hash, jobs);
+        scheduleFlush();
+    }
+
+    /**
+     * Record no builds of jobs refer choices any more.
+     *
+     * @param filter tests full names of jobs
+     */
+    synchronized void releaseJobs(@NonNull final Predicate<String> filter) {
+        final Iterator<Map.Entry<String, Map<String, Integer>>> it = getReferences().counts.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, Map<String, Integer>> e = it.next();
+            if (e.getValue().keySet().removeIf(filter) && e.getValue().isEmpty()) {
+                it.remove();
+                delete(e.getKey());
+            }
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * @param oldName the old full name of the job
+     * @param newName the new full name of the job
+     */
+    synchronized void renameJob(@NonNull final String oldName, @NonNull final String newName) {
+        for (final Map<String, Integer> jobs : getReferences().counts.values()) {
+            final Integer count = jobs.remove(oldName);
+            if (count != null) {
+                jobs.merge(newName, count, Integer::sum);
+            }
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * @param hash the hash of choices
+     * @return the number of builds referring the choices. {@code -1} if not recorded.
+     */
+    synchronized int getReferenceCount(@NonNull final String hash) {
+        final Map<String, Integer> jobs = getReferences().counts.get(hash);
+        if (jobs == null) {
+            return -1;
+        }
+        int count = 0;
+        for (final int c : jobs.values()) {
+            count += c;
+        }
+        return count;
+    }
+
+    private void deleteIfUnreferenced(@NonNull final String hash, @NonNull final Map<String, Integer> jobs) {
+        if (jobs.isEmpty()) {
+            getReferences().counts.remove(hash);
+            delete(hash);
+        }
+    }
+
+    private void delete(@NonNull final String hash) {
+        pending.remove(hash);
+        cache.remove(hash);
+        try {
+            Files.deleteIfExists(getFile(hash).getFile().toPath());
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, String.format("Failed to delete choices %s", hash), e);
+        }
+    }
+
+    @NonNull
+    private References getReferences() {
+        if (references == null) {
+            final XmlFile file = getReferencesFile();
+            if (file.exists()) {
+                try {
+                    final Object o = file.read();
+                    if (o instanceof References) {
+                        references = (References) o;
+                    }
+                } catch (final IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to load references to choices", e);
+                }
+            }
+            if (references == null) {
+                references = new References();
+            }
+        }
+        return references;
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            Timer.get().schedule(this::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Save choices not written yet when Jenkins stops.
+     */
+    @Terminator
+    public static void shutdown() {
+        get().flush();
+    }
+
+    /**
+     * Save choices and references.
+     * Files are written out of the lock not to block starting builds.
+     */
+    void flush() {
+        flushScheduled.set(false);
+        synchronized (writeLock) {
+            final Map<String, List<String>> lists;
+            final References refs;
+            synchronized (this) {
+                lists = new HashMap<>(pending);
+                pending.clear();
+                refs = (references != null) ? references.copy() : null;
+            }
+            for (final Map.Entry<String, List<String>> e : lists.entrySet()) {
+                write(e.getKey(), e.getValue());
+            }
+            if (refs != null) {
+                try {
+                    getReferencesFile().write(refs);
+                } catch (final IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to save references to choices", e);
+                }
+            }
+        }
+    }
+
+    private void write(@NonNull final String hash, @NonNull final List<String> choices) {
+        try {
+            getFile(hash).write(new ChoiceList(choices));
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, String.format("Failed to save choices %s", hash), e);
+            return;
+        }
+        synchronized (this) {
+            if (!getReferences().counts.containsKey(hash)) {
+                // all builds referring choices are deleted while writing.
+                delete(hash);
+            }
+        }
+    }
+
+    /**
+     * @param hash the hash returned from {@link #remember(ChoiceIndex)}
+     * @return choices. {@code null} if not found.
+     */
+    @CheckForNull
+    public List<String> load(@NonNull final String hash) {
+        final List<String> cached = cache.get(hash);
+        if (cached != null) {
+            return cached;
+        }
+        synchronized (this) {
+            final List<String> unwritten = pending.get(hash);
+            if (unwritten != null) {
+                return unwritten;
+            }
+        }
+        if (!HASH_PATTERN.matcher(hash).matches()) {
+            return null;
+        }
+        final XmlFile file = getFile(hash);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            final Object o = file.read();
+            if (o instanceof ChoiceList) {
+                final List<String> choices = Collections.unmodifiableList(
+                    new ArrayList<>(((ChoiceList) o).choices)
+                );
+                cache.put(hash, choices);
+                return choices;
+            }
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, String.format("Failed to load choices %s", hash), e);
+        }
+        return null;
+    }
+
+    @NonNull
+    private static File getDir() {
+        return new File(Jenkins.get().getRootDir(), DIRNAME);
+    }
+
+    @NonNull
+    private static XmlFile getFile(@NonNull final String hash) {
+        return new XmlFile(XSTREAM, new File(getDir(), hash + ".xml"));
+    }
+
+    @NonNull
+    private static XmlFile getReferencesFile() {
+        return new XmlFile(XSTREAM, new File(getDir(), REFERENCES_FILENAME));
+    }
+
+    /**
+     * The saved form of choices.
+     */
+    private static final class ChoiceList {
+        @NonNull
+        private final List<String> choices;
+
+        private ChoiceList(@NonNull final List<String> choices) {
+            this.choices = new ArrayList<>(choices);
+        }
+    }
+
+    /**
+     * The number of builds referring choices for each job, keyed by hashes of choices.
+     */
+    private static final class References {
+        @NonNull
+        private Map<String, Map<String, Integer>> counts = new HashMap<>();
+
+        @NonNull
+        References copy() {
+            final References copied = new References();
+            for (final Map.Entry<String, Map<String, Integer>> e : counts.entrySet()) {
+                copied.counts.put(e.getKey(), new HashMap<>(e.getValue()));
+            }
+            return copied;
+        }
+
+        private Object readResolve() {
+            if (counts == null) {
+                counts = new HashMap<>();
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Saves choices referred from parameter values when builds start, and deletes them with builds.
+     */
+    @Extension
+    public static class RunListenerImpl extends RunListener<Run<?, ?>> {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onStarted(final Run<?, ?> run, final TaskListener listener) {
+            final ParametersAction action = run.getAction(ParametersAction.class);
+            if (action == null) {
+                return;
+            }
+            final ChoiceListStore store = get();
+            final Job<?, ?> job = run.getParent();
+            for (final ParameterValue value : action.getParameters()) {
+                // choices of single values are never saved, as the value itself is recorded.
+                if (!(value instanceof EditableMultiChoiceParameterValue)) {
+                    continue;
+                }
+                final EditableMultiChoiceParameterValue multi = (EditableMultiChoiceParameterValue) value;
+                final String hash = multi.getChoiceListHash();
+                if (hash == null) {
+                    continue;
+                }
+                List<String> choices = multi.takeUnsavedChoiceList();
+                if (choices == null) {
+                    // lost with a restart while the build was queued.
+                    choices = store.cache.get(hash);
+                }
+                if (choices == null) {
+                    choices = findCurrentChoices(job, value.getName(), hash);
+                }
+                if (choices == null) {
+                    // selected choices are still available in the value.
+                    LOGGER.warning(String.format(
+                        "Choices %s for parameter %s in %s are no longer available",
+                        hash,
+                        value.getName(),
+                        run.getFullDisplayName()
+                    ));
+                    continue;
+                }
+                store.save(hash, choices, job.getFullName());
+            }
+        }
+
+        @CheckForNull
+        private static List<String> findCurrentChoices(
+            @NonNull final Job<?, ?> job,
+            @NonNull final String name,
+            @NonNull final String hash
+        ) {
+            final ParametersDefinitionProperty prop = job.getProperty(ParametersDefinitionProperty.class);
+            if (prop == null) {
+                return null;
+            }
+            final ParameterDefinition def = prop.getParameterDefinition(name);
+            if (!(def instanceof EditableChoiceParameterDefinition)) {
+                return null;
+            }
+            final ChoiceIndex index = ((EditableChoiceParameterDefinition) def).getChoiceIndex();
+            return hash.equals(index.getContentHash()) ? index.getValues() : null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onDeleted(final Run<?, ?> run) {
+            final ParametersAction action = run.getAction(ParametersAction.class);
+            if (action == null) {
+                return;
+            }
+            for (final ParameterValue value : action.getParameters()) {
+                // references of single values saved by older versions are left,
+                // as hashes of single values are shared with multi values.
+                if (!(value instanceof EditableMultiChoiceParameterValue)) {
+                    continue;
+                }
+                final String hash = ((EditableMultiChoiceParameterValue) value).getChoiceListHash();
+                if (hash != null) {
+                    get().release(hash, run.getParent().getFullName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Follows renaming and deleting jobs.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLocationChanged(final Item item, final String oldFullName, final String newFullName) {
+            // also called for each item in moved folders.
+            if (item instanceof Job) {
+                get().renameJob(oldFullName, newFullName);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onDeleted(final Item item) {
+            // builds are deleted with the job without events for each build.
+            final String name = item.getFullName();
+            get().releaseJobs(job -> job.equals(name) || job.startsWith(name + "/"));
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.Terminator;
+import jenkins.util.SystemProperties;
+import net.sf.json.JSONObject;
+
+/**
+ * Runs loads of choices, that are usually blocking I/O, out of request threads and {@code Timer}.
+ *
+ * Uses virtual threads when the runtime supports them,
+ * limiting the number of concurrent loads with a semaphore.
+ * Otherwise uses a bounded pool of platform threads with a bounded queue.
+ * In both cases, rejects loads when too many loads are waiting.
+ * Counts loads for each source, that is the class of the provider.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class ChoiceLoadExecutor {
+    private static final Logger LOGGER = Logger.getLogger(ChoiceLoadExecutor.class.getName());
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 8;
+    private static final int DEFAULT_QUEUE_SIZE = 256;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * The maximum number of loads running at the same time.
+     */
+    static final int MAX_CONCURRENCY = SystemProperties.getInteger(
+        ChoiceLoadExecutor.class.getName() + ".maxConcurrency",
+        DEFAULT_MAX_CONCURRENCY
+    );
+
+    /**
+     * The maximum number of loads waiting to run.
+     */
+    static final int QUEUE_SIZE = SystemProperties.getInteger(
+        ChoiceLoadExecutor.class.getName() + ".queueSize",
+        DEFAULT_QUEUE_SIZE
+    );
+
+    /**
+     * Whether to use virtual threads if available.
+     */
+    static final boolean USE_VIRTUAL_THREADS = SystemProperties.getBoolean(
+        ChoiceLoadExecutor.class.getName() + ".useVirtualThreads",
+        true
+    );
+
+    private final int maxConcurrency;
+
+    @NonNull
+    private final ExecutorService executor;
+
+    /**
+     * Limits concurrent loads in virtual threads. {@code null} for platform threads.
+     */
+    @CheckForNull
+    private final Semaphore permits;
+
+    /**
+     * Limits loads running or waiting in virtual threads. {@code null} for platform threads.
+     */
+    @CheckForNull
+    private final Semaphore slots;
+
+    private final Map<String, SourceMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * ctor.
+     */
+    public ChoiceLoadExecutor() {
+        this(MAX_CONCURRENCY, QUEUE_SIZE, USE_VIRTUAL_THREADS);
+    }
+
+    /**
+     * ctor.
+     *
+     * @param maxConcurrency the maximum number of loads running at the same time
+     * @param queueSize the maximum number of loads waiting to run
+     * @param useVirtualThreads whether to use virtual threads if available
+     */
+    ChoiceLoadExecutor(final int maxConcurrency, final int queueSize, final boolean useVirtualThreads) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        final ExecutorService virtual = useVirtualThreads ? createVirtualThreadExecutor() : null;
+        if (virtual != null) {
+            this.executor = virtual;
+            this.permits = new Semaphore(this.maxConcurrency);
+            this.slots = new Semaphore(this.maxConcurrency + Math.max(1, queueSize));
+        } else {
+            final AtomicInteger count = new AtomicInteger();
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                this.maxConcurrency,
+                this.maxConcurrency,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                r -> {
+                    final Thread t = new Thread(r, "Editable choice loader #" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            );
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+            this.permits = null;
+            this.slots = null;
+        }
+    }
+
+    /**
+     * Creates an executor with virtual threads with reflection,
+     * as this plugin is compiled for runtimes without them.
+     *
+     * @return the executor. {@code null} if not supported.
+     */
+    @CheckForNull
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (final NoSuchMethodException e) {
+            return null;
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            // e.g. a preview feature not enabled.
+            LOGGER.log(Level.FINE, "Virtual threads are not available", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the instance
+     */
+    @NonNull
+    public static ChoiceLoadExecutor get() {
+        return ExtensionList.lookupSingleton(ChoiceLoadExecutor.class);
+    }
+
+    /**
+     * Stop threads when Jenkins stops.
+     */
+    @Terminator
+    public static void shutdown() {
+        get().close();
+    }
+
+    /**
+     * Stop threads.
+     */
+    void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return whether loads run in virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return permits != null;
+    }
+
+    /**
+     * @return the maximum number of loads running at the same time
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @param source the name of the source to count the load for
+     * @param task the load
+     * @param <T> the type of the result
+     * @return the future of the result.
+     *     Completed with {@link RejectedExecutionException} if too many loads are waiting.
+     */
+    @NonNull
+    public <T> CompletableFuture<T> submit(@NonNull final String source, @NonNull final Supplier<T> task) {
+        final SourceMetrics m = metrics.computeIfAbsent(source, k -> new SourceMetrics());
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final Semaphore s = slots;
+        if (s != null && !s.tryAcquire()) {
+            m.rejected.incrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("Too many loads are waiting"));
+            return future;
+        }
+        m.queued.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    run(m, task, future);
+                } finally {
+                    if (s != null) {
+                        s.release();
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            if (s != null) {
+                s.release();
+            }
+            m.queued.decrementAndGet();
+            m.rejected.incrementAndGet();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private <T> void run(
+        @NonNull final SourceMetrics m,
+        @NonNull final Supplier<T> task,
+        @NonNull final CompletableFuture<T> future
+    ) {
+        final Semaphore p = permits;
+        if (p != null) {
+            try {
+                p.acquire();
+            } catch (final InterruptedException e) {
+                m.queued.decrementAndGet();
+                m.failed.incrementAndGet();
+                future.completeExceptionally(e);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        m.queued.decrementAndGet();
+        m.running.incrementAndGet();
+        final long start = System.nanoTime();
+        T result = null;
+        Throwable error = null;
+        try {
+            result = task.get();
+        } catch (final RuntimeException | Error e) {
+            error = e;
+        }
+        // update counts before completing so that waiting callers see them.
+        m.totalNanos.addAndGet(System.nanoTime() - start);
+        m.running.decrementAndGet();
+        if (p != null) {
+            p.release();
+        }
+        if (error == null) {
+            m.completed.incrementAndGet();
+            future.complete(result);
+        } else {
+            m.failed.incrementAndGet();
+            future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * @return metrics keyed by names of sources, sorted by names
+     */
+    @NonNull
+    public Map<String, SourceMetrics> getMetrics() {
+        return Collections.unmodifiableMap(new TreeMap<>(metrics));
+    }
+
+    /**
+     * @return metrics as JSON
+     */
+    @NonNull
+    public JSONObject toJson() {
+        final JSONObject sources = new JSONObject();
+        for (final Map.Entry<String, SourceMetrics> e : getMetrics().entrySet()) {
+            sources.put(e.getKey(), e.getValue().toJson());
+        }
+        final JSONObject json = new JSONObject();
+        json.put("virtualThreads", isVirtualThreads());
+        json.put("maxConcurrency", getMaxConcurrency());
+        json.put("sources", sources);
+        return json;
+    }
+
+    /**
+     * Counts of loads of a source.
+     */
+    public static final class SourceMetrics {
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+
+        /**
+         * @return the number of loads waiting to run
+         */
+        public int getQueued() {
+            return queued.get();
+        }
+
+        /**
+         * @return the number of running loads
+         */
+        public int getRunning() {
+            return running.get();
+        }
+
+        /**
+         * @return the number of completed loads
+         */
+        public long getCompleted() {
+            return completed.get();
+        }
+
+        /**
+         * @return the number of loads failed with exceptions
+         */
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * @return the number of loads rejected as too many loads are waiting
+         */
+        public long getRejected() {
+            return rejected.get();
+        }
+
+        /**
+         * @return the total time running loads in milliseconds
+         */
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos.get());
+        }
+
+        @NonNull
+        JSONObject toJson() {
+            final JSONObject json = new JSONObject();
+            json.put("queued", getQueued());
+            json.put("running", getRunning());
+            json.put("completed", getCompleted());
+            json.put("failed", getFailed());
+            json.put("rejected", getRejected());
+            json.put("totalMillis", getTotalMillis());
+            return json;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.springframework.security.core.Authentication;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+/**
+ * Loads choices from {@link ChoiceProvider}s, coalescing concurrent loads.
+ *
+ * Choices loaded within {@link #REFRESH_AFTER_MILLIS} are returned without loading.
+ * Older choices loaded within {@link #MAX_STALENESS_MILLIS} are returned without waiting,
+ * starting a load in background to refresh them.
+ * Callers wait for a load only when no choices are loaded yet or they are too old,
+ * and only up to {@link #WAIT_TIMEOUT_MILLIS} not to block request threads with a hung source.
+ * The last choices regardless of the age, or no choices, are returned on timeout.
+ * Only one load runs for each provider at a time,
+ * and callers arriving while a load runs share it instead of starting another one,
+ * so a slow source never gets a burst of loads.
+ *
+ * Loads run in {@link ChoiceLoadExecutor} with the authentication of the caller starting the load.
+ * Loads are shared only among callers with the same authentication
+ * for providers listing choices depending on it,
+ * and choices are kept only for users used recently.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class ChoiceLoader {
+    private static final Logger LOGGER = Logger.getLogger(ChoiceLoader.class.getName());
+
+    /**
+     * The age of choices to start a load to refresh them.
+     */
+    static final long REFRESH_AFTER_MILLIS = SystemProperties.getLong(
+        ChoiceLoader.class.getName() + ".refreshAfterMillis",
+        TimeUnit.SECONDS.toMillis(10)
+    );
+
+    /**
+     * The maximum age of choices returned without waiting for a load.
+     */
+    static final long MAX_STALENESS_MILLIS = SystemProperties.getLong(
+        ChoiceLoader.class.getName() + ".maxStalenessMillis",
+        TimeUnit.MINUTES.toMillis(1)
+    );
+
+    /**
+     * The maximum time to wait for a load.
+     */
+    static final long WAIT_TIMEOUT_MILLIS = SystemProperties.getLong(
+        ChoiceLoader.class.getName() + ".waitTimeoutMillis",
+        TimeUnit.SECONDS.toMillis(10)
+    );
+
+    /**
+     * The maximum number of users to keep choices for each provider listing choices depending on users.
+     */
+    private static final int MAX_USERS = 64;
+
+    /**
+     * States keyed by providers, and by users for providers listing choices depending on users.
+     * Entries are removed with providers when definitions are replaced.
+     */
+    private final Map<ChoiceProvider, LruCache<String, State>> states = new WeakHashMap<>();
+
+    private final long refreshAfterMillis;
+
+    private final long maxStalenessMillis;
+
+    private final long waitTimeoutMillis;
+
+    @CheckForNull
+    private final ChoiceLoadExecutor executor;
+
+    /**
+     * ctor.
+     */
+    public ChoiceLoader() {
+        this(REFRESH_AFTER_MILLIS, MAX_STALENESS_MILLIS, WAIT_TIMEOUT_MILLIS, null);
+    }
+
+    /**
+     * ctor.
+     *
+     * @param refreshAfterMillis the age of choices to start a load to refresh them
+     * @param maxStalenessMillis the maximum age of choices returned without waiting for a load
+     * @param waitTimeoutMillis the maximum time to wait for a load
+     * @param executor the executor to run loads. {@code null} to use the instance of {@link ChoiceLoadExecutor}.
+     */
+    ChoiceLoader(
+        final long refreshAfterMillis,
+        final long maxStalenessMillis,
+        final long waitTimeoutMillis,
+        @CheckForNull final ChoiceLoadExecutor executor
+    ) {
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.executor = executor;
+    }
+
+    @NonNull
+    private ChoiceLoadExecutor getExecutor() {
+        return (executor != null) ? executor : ChoiceLoadExecutor.get();
+    }
+
+    /**
+     * @return the instance
+     */
+    @NonNull
+    public static ChoiceLoader get() {
+        return ExtensionList.lookupSingleton(ChoiceLoader.class);
+    }
+
+    /**
+     * @param provider the provider
+     * @return choices from the provider
+     */
+    @NonNull
+    public List<String> load(@NonNull final ChoiceProvider provider) {
+        final Authentication auth = Jenkins.getAuthentication2();
+        final String user = provider.isDependingOnAuthentication() ? auth.getName() : "";
+        final State state;
+        synchronized (states) {
+            state = states.computeIfAbsent(provider, p -> new LruCache<>(MAX_USERS)).computeIfAbsent(user, u -> new State());
+        }
+        final CompletableFuture<List<String>> future;
+        synchronized (state) {
+            final List<String> fresh = state.getIfFresh(refreshAfterMillis);
+            if (fresh != null) {
+                return fresh;
+            }
+            if (state.loading == null) {
+                final CompletableFuture<List<String>> started = start(provider, auth, state);
+                if (!started.isDone()) {
+                    // rejected loads complete immediately.
+                    state.loading = started;
+                }
+                future = started;
+            } else {
+                future = state.loading;
+            }
+            final List<String> stale = state.getIfFresh(maxStalenessMillis);
+            if (stale != null) {
+                // the load refreshes choices in background.
+                return stale;
+            }
+        }
+        try {
+            return future.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            LOGGER.warning(String.format(
+                "Loading choices from %s takes more than %d ms. Serving the last choices",
+                provider.getClass().getName(),
+                waitTimeoutMillis
+            ));
+            return state.getLast();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return state.getLast();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RejectedExecutionException) {
+                return loadRejected(provider, state);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Serves choices when too many loads are waiting.
+     *
+     * @param provider the provider
+     * @param state the state of loading the provider
+     * @return the last choices regardless of the age, or choices loaded in the thread of the caller
+     */
+    @NonNull
+    private List<String> loadRejected(@NonNull final ChoiceProvider provider, @NonNull final State state) {
+        synchronized (state) {
+            if (state.choices != null) {
+                return state.choices;
+            }
+        }
+        LOGGER.fine(String.format(
+            "Too many loads are waiting. Loading choices from %s in the current thread",
+            provider.getClass().getName()
+        ));
+        final List<String> choices = provider.getChoices();
+        synchronized (state) {
+            if (state.choices == null) {
+                state.choices = choices;
+                state.loadedAt = System.nanoTime();
+            }
+        }
+        return choices;
+    }
+
+    @NonNull
+    private CompletableFuture<List<String>> start(
+        @NonNull final ChoiceProvider provider,
+        @NonNull final Authentication auth,
+        @NonNull final State state
+    ) {
+        final CompletableFuture<List<String>> future = new CompletableFuture<>();
+        getExecutor().submit(provider.getClass().getName(), () -> {
+            try (ACLContext ctx = ACL.as2(auth)) {
+                return provider.getChoices();
+            }
+        }).whenComplete((choices, e) -> {
+            if (e != null && !(e instanceof RejectedExecutionException)) {
+                // callers waiting for the load get the exception, but background refreshes have none.
+                LOGGER.log(
+                    Level.FINE,
+                    String.format("Failed to load choices from %s", provider.getClass().getName()),
+                    e
+                );
+            }
+            synchronized (state) {
+                if (e == null) {
+                    state.choices = choices;
+                    state.loadedAt = System.nanoTime();
+                }
+                state.loading = null;
+            }
+            if (e == null) {
+                future.complete(choices);
+            } else {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * The state of loading a provider. Guarded by itself.
+     */
+    private static final class State {
+        @CheckForNull
+        private List<String> choices;
+
+        private long loadedAt;
+
+        @CheckForNull
+        private CompletableFuture<List<String>> loading;
+
+        @NonNull
+        synchronized List<String> getLast() {
+            return (choices != null) ? choices : Collections.emptyList();
+        }
+
+        @CheckForNull
+        List<String> getIfFresh(final long maxStalenessMillis) {
+            if (choices == null
+                    || TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadedAt) > maxStalenessMillis) {
+                return null;
+            }
+            return choices;
+        }
+    }
+}
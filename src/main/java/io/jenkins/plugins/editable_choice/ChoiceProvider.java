@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.io.Serializable;
+import java.util.List;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.ExtensionPoint;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+
+/**
+ * ChoiceProvider provides choices of {@link EditableChoiceParameterDefinition} instead of configured ones.
+ *
+ * {@link #getChoices()} is called for every build page and every validation,
+ * so implementations should keep choices in memory and update them only when the source changes.
+ */
+public abstract class ChoiceProvider extends AbstractDescribableImpl<ChoiceProvider>
+        implements ExtensionPoint, Serializable {
+    private static final long serialVersionUID = -3562218713474590473L;
+
+    /**
+     * Return the same instance while choices are unchanged,
+     * as indices of choices are rebuilt when the instance changes.
+     *
+     * @return choices
+     */
+    @NonNull
+    public abstract List<String> getChoices();
+
+    /**
+     * Tests values not in {@link #getChoices()} when restricted,
+     * e.g. to accept values added to the source after choices were listed.
+     *
+     * @param value the value to test
+     * @return whether the value is a choice
+     */
+    public boolean contains(@NonNull final String value) {
+        return false;
+    }
+
+    /**
+     * Choices are loaded with the authentication of the user requesting them.
+     * Providers listing choices depending on it should return {@code true}
+     * not to share choices loaded for a user with other users.
+     *
+     * @return whether choices depend on the current authentication
+     */
+    public boolean isDependingOnAuthentication() {
+        return false;
+    }
+
+    /**
+     * Descriptor for {@link ChoiceProvider}.
+     */
+    public abstract static class ChoiceProviderDescriptor extends Descriptor<ChoiceProvider> {
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.model.Item;
+import hudson.util.FormValidation;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+/**
+ * Restricts paths on the controller read by choice providers to directories allowed by administrators.
+ *
+ * Anyone configuring jobs could list files in any directory on the controller otherwise,
+ * like {@code $JENKINS_HOME/secrets}.
+ * Allowed directories are specified with the system property {@link #ALLOWED_DIRECTORIES}
+ * delimited with the path separator of the platform. No directories are allowed by default.
+ */
+@Restricted(NoExternalUse.class)
+public final class ControllerPaths {
+    private static final Logger LOGGER = Logger.getLogger(ControllerPaths.class.getName());
+
+    /**
+     * The name of the system property specifying allowed directories.
+     */
+    public static final String ALLOWED_DIRECTORIES = ControllerPaths.class.getName() + ".allowedDirectories";
+
+    private ControllerPaths() {
+    }
+
+    /**
+     * @return allowed directories resolving symbolic links
+     */
+    @NonNull
+    static List<Path> getAllowedDirectories() {
+        final List<Path> dirs = new ArrayList<>();
+        final String value = Util.fixEmptyAndTrim(SystemProperties.getString(ALLOWED_DIRECTORIES));
+        if (value == null) {
+            return dirs;
+        }
+        for (final String dir : value.split(File.pathSeparator)) {
+            final String d = Util.fixEmptyAndTrim(dir);
+            if (d == null) {
+                continue;
+            }
+            try {
+                dirs.add(toRealPath(Paths.get(d)));
+            } catch (final InvalidPathException e) {
+                LOGGER.log(Level.WARNING, String.format("Invalid path in %s: %s", ALLOWED_DIRECTORIES, d), e);
+            }
+        }
+        return dirs;
+    }
+
+    /**
+     * Resolves symbolic links not to escape from allowed directories with them.
+     * Links in the nearest existing ancestor are resolved for paths not existing yet.
+     *
+     * @param path the path
+     * @return the real path
+     */
+    @NonNull
+    static Path toRealPath(@NonNull final Path path) {
+        final Path absolute = path.toAbsolutePath().normalize();
+        for (Path existing = absolute; existing != null; existing = existing.getParent()) {
+            if (!Files.exists(existing)) {
+                continue;
+            }
+            try {
+                return existing.toRealPath().resolve(existing.relativize(absolute));
+            } catch (final IOException e) {
+                LOGGER.log(Level.FINE, String.format("Failed to resolve %s", existing), e);
+                break;
+            }
+        }
+        return absolute;
+    }
+
+    /**
+     * @param path the path to test
+     * @param dir the directory
+     * @return whether {@code path} is {@code dir} or in it, resolving symbolic links
+     */
+    static boolean isIn(@NonNull final Path path, @NonNull final Path dir) {
+        return toRealPath(path).startsWith(toRealPath(dir));
+    }
+
+    /**
+     * @param path the path specified in a configuration
+     * @return the real path if it is in an allowed directory. {@code null} otherwise.
+     * @throws InvalidPathException the path is malformed
+     */
+    @CheckForNull
+    public static Path resolve(@NonNull final String path) {
+        final Path real = toRealPath(Paths.get(path));
+        for (final Path dir : getAllowedDirectories()) {
+            if (real.startsWith(dir)) {
+                return real;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param item the job being configured. {@code null} if not configuring a job.
+     * @param path the path specified in a configuration
+     * @return error if the path is not in allowed directories
+     */
+    @NonNull
+    public static FormValidation check(@CheckForNull final Item item, @CheckForNull final String path) {
+        if (item != null) {
+            item.checkPermission(Item.CONFIGURE);
+        } else {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        }
+        final String p = Util.fixEmptyAndTrim(path);
+        if (p == null) {
+            return FormValidation.ok();
+        }
+        try {
+            if (resolve(p) == null) {
+                return FormValidation.error(Messages.ControllerPaths_NotAllowed(p, ALLOWED_DIRECTORIES));
+            }
+        } catch (final InvalidPathException e) {
+            return FormValidation.error(e.getMessage());
+        }
+        return FormValidation.ok();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import jenkins.util.SystemProperties;
+
+/**
+ * DependentChoiceIndex looks up choices for values of the parameter depended on.
+ *
+ * Choices for each value are found with a map built once,
+ * and their {@link ChoiceIndex} are built on demand and kept in an LRU cache,
+ * as only a few values are used at once even when many are configured.
+ *
+ * Instances are safe to share between threads.
+ */
+@Restricted(NoExternalUse.class)
+public final class DependentChoiceIndex {
+    /**
+     * The maximum number of indices kept for each parameter.
+     */
+    static final int CACHE_SIZE = SystemProperties.getInteger(
+        DependentChoiceIndex.class.getName() + ".cacheSize",
+        32
+    );
+
+    @NonNull
+    private final List<DependentChoices> dependentChoices;
+
+    @NonNull
+    private final SortMode sortMode;
+
+    @NonNull
+    private final Map<String, List<String>> choicesByValue;
+
+    /**
+     * All choices for any values, to validate values without knowing the value depended on.
+     */
+    @NonNull
+    private final Set<String> allChoices;
+
+    @NonNull
+    private final LruCache<String, ChoiceIndex> indices = new LruCache<>(CACHE_SIZE);
+
+    /**
+     * ctor.
+     *
+     * @param dependentChoices choices for each value
+     * @param sortMode how to sort choices
+     */
+    public DependentChoiceIndex(
+        @NonNull final List<DependentChoices> dependentChoices,
+        @NonNull final SortMode sortMode
+    ) {
+        this.dependentChoices = dependentChoices;
+        this.sortMode = sortMode;
+        this.choicesByValue = new HashMap<>(dependentChoices.size() * 2);
+        this.allChoices = new HashSet<>();
+        for (final DependentChoices c : dependentChoices) {
+            // the first one wins for duplicated values.
+            choicesByValue.putIfAbsent(c.getValue(), c.getChoices());
+            allChoices.addAll(c.getChoices());
+        }
+    }
+
+    /**
+     * @param dependentChoices choices to test
+     * @param sortMode the sort mode to test
+     * @return whether this index is built from the specified list
+     */
+    public boolean isBuiltFrom(
+        @CheckForNull final List<DependentChoices> dependentChoices,
+        @NonNull final SortMode sortMode
+    ) {
+        return this.dependentChoices == dependentChoices && this.sortMode == sortMode;
+    }
+
+    /**
+     * @param value the value of the parameter depended on
+     * @return choices for the value in the sorted order. {@code null} if not configured.
+     */
+    @CheckForNull
+    public List<String> getChoices(@CheckForNull final String value) {
+        final ChoiceIndex index = getIndex(value);
+        return (index != null) ? index.getValues() : null;
+    }
+
+    /**
+     * @param value the value of the parameter depended on
+     * @return the index for choices for the value. {@code null} if not configured.
+     */
+    @CheckForNull
+    public ChoiceIndex getIndex(@CheckForNull final String value) {
+        final List<String> choices = (value != null) ? choicesByValue.get(value) : null;
+        if (choices == null) {
+            return null;
+        }
+        return indices.computeIfAbsent(value, v -> new ChoiceIndex(choices, null, sortMode));
+    }
+
+    /**
+     * @param choice the value to test
+     * @return whether the value is in choices for any values
+     */
+    public boolean contains(@CheckForNull final String choice) {
+        return choice != null && allChoices.contains(choice);
+    }
+}
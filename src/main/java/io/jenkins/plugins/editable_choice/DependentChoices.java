@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+
+/**
+ * DependentChoices holds choices used when the parameter depended on has a specific value.
+ */
+public class DependentChoices extends AbstractDescribableImpl<DependentChoices> implements Serializable {
+    private static final long serialVersionUID = -1439584370593045187L;
+
+    @NonNull
+    private final String value;
+    @NonNull
+    private List<String> choices = new ArrayList<>();
+
+    /**
+     * ctor.
+     *
+     * @param value the value of the parameter depended on
+     */
+    @DataBoundConstructor
+    public DependentChoices(@NonNull final String value) {
+        this.value = Util.fixNull(value);
+    }
+
+    /**
+     * @return the value of the parameter depended on
+     */
+    @NonNull
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @param choices choices used for the value
+     */
+    @DataBoundSetter
+    public void setChoices(@NonNull final List<String> choices) {
+        this.choices = choices;
+    }
+
+    /**
+     * @return choices used for the value
+     */
+    @NonNull
+    public List<String> getChoices() {
+        return (choices != null) ? choices : new ArrayList<>();
+    }
+
+    /**
+     * @param choicesWithText choices delimited with new lines
+     */
+    @DataBoundSetter
+    public void setChoicesWithText(@NonNull final String choicesWithText) {
+        setChoices(EditableChoiceParameterDefinition.choicesFromText(choicesWithText));
+    }
+
+    /**
+     * @return choices delimited with new lines
+     */
+    @NonNull
+    public String getChoicesWithText() {
+        return EditableChoiceParameterDefinition.textFromChoices(getChoices());
+    }
+
+    /**
+     * @param choices choices used for the value
+     * @return this instance
+     */
+    public DependentChoices withChoices(@NonNull final List<String> choices) {
+        setChoices(choices);
+        return this;
+    }
+
+    /**
+     * Descriptor for {@link DependentChoices}.
+     */
+    @Symbol("dependentChoices")
+    @Extension
+    public static class DescriptorImpl extends Descriptor<DependentChoices> {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return Messages.DependentChoices_DisplayName();
+        }
+    }
+}
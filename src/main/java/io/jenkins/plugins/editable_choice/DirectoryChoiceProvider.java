@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.PatternSyntaxException;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.verb.POST;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Item;
+import hudson.util.FormValidation;
+
+/**
+ * Provides names of files in a directory on the controller.
+ *
+ * Names are listed from {@link DirectoryIndex}, updated when files are added or removed.
+ * The directory must be in directories allowed by the administrator. See {@link ControllerPaths}.
+ */
+public class DirectoryChoiceProvider extends ChoiceProvider {
+    private static final long serialVersionUID = 7725163024930716455L;
+    private static final Logger LOGGER = Logger.getLogger(DirectoryChoiceProvider.class.getName());
+
+    /**
+     * The glob used when not specified.
+     */
+    public static final String DEFAULT_GLOB = "*";
+
+    @NonNull
+    private final String directory;
+
+    @NonNull
+    private String glob = DEFAULT_GLOB;
+
+    /**
+     * ctor.
+     *
+     * @param directory the path to the directory on the controller
+     */
+    @DataBoundConstructor
+    public DirectoryChoiceProvider(@NonNull final String directory) {
+        this.directory = Util.fixNull(directory).trim();
+    }
+
+    /**
+     * @return the path to the directory on the controller
+     */
+    @NonNull
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param glob the glob pattern to match names of files, like {@code *.yaml}. Empty for all files.
+     */
+    @DataBoundSetter
+    public void setGlob(final String glob) {
+        final String g = Util.fixEmptyAndTrim(glob);
+        this.glob = (g != null) ? g : DEFAULT_GLOB;
+    }
+
+    /**
+     * @return the glob pattern to match names of files
+     */
+    @NonNull
+    public String getGlob() {
+        return glob;
+    }
+
+    /**
+     * @param glob the glob pattern to match names of files
+     * @return this instance
+     */
+    public DirectoryChoiceProvider withGlob(final String glob) {
+        setGlob(glob);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @NonNull
+    public List<String> getChoices() {
+        if (directory.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            final Path dir = ControllerPaths.resolve(directory);
+            if (dir == null) {
+                LOGGER.warning(String.format("%s is not in allowed directories", directory));
+                return Collections.emptyList();
+            }
+            return DirectoryIndex.get().getNames(dir, glob);
+        } catch (final InvalidPathException | PatternSyntaxException e) {
+            LOGGER.log(Level.WARNING, String.format("Failed to list %s in %s", glob, directory), e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Descriptor for {@link DirectoryChoiceProvider}.
+     */
+    @Extension
+    @Symbol("files")
+    public static class DescriptorImpl extends ChoiceProviderDescriptor {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return Messages.DirectoryChoiceProvider_DisplayName();
+        }
+
+        /**
+         * @param item the job being configured
+         * @param value the path to the directory
+         * @return error if the path is not in allowed directories
+         */
+        @POST
+        @Restricted(NoExternalUse.class)
+        public FormValidation doCheckDirectory(
+            @AncestorInPath final Item item,
+            @QueryParameter final String value
+        ) {
+            return ControllerPaths.check(item, value);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.Terminator;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Holds names of files in directories on the controller, for {@link DirectoryChoiceProvider}.
+ *
+ * A directory is listed when it's requested first, and then watched with a {@link WatchService}.
+ * Events are coalesced for {@link #COALESCE_MILLIS} and the directory is listed again once,
+ * so rendering pages and validating values never list directories.
+ * Directories not requested for {@link #IDLE_MILLIS} are no longer watched.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class DirectoryIndex {
+    private static final Logger LOGGER = Logger.getLogger(DirectoryIndex.class.getName());
+
+    /**
+     * Delay to list a directory again after it changed, to handle bursts of changes at once.
+     */
+    static final long COALESCE_MILLIS = SystemProperties.getLong(
+        DirectoryIndex.class.getName() + ".coalesceMillis",
+        500L
+    );
+
+    /**
+     * Time to keep watching a directory after it's requested last.
+     */
+    static final long IDLE_MILLIS = SystemProperties.getLong(
+        DirectoryIndex.class.getName() + ".idleMillis",
+        TimeUnit.MINUTES.toMillis(10)
+    );
+
+    private final Map<Path, Listing> listings = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Listing> listingsByKey = new ConcurrentHashMap<>();
+
+    @CheckForNull
+    private WatchService watchService;
+
+    @CheckForNull
+    private ScheduledFuture<?> expiration;
+
+    /**
+     * @return the instance
+     */
+    @NonNull
+    public static DirectoryIndex get() {
+        return ExtensionList.lookupSingleton(DirectoryIndex.class);
+    }
+
+    /**
+     * Stop watching directories when Jenkins stops.
+     */
+    @Terminator
+    public static void shutdown() {
+        get().close();
+    }
+
+    /**
+     * @param directory the directory
+     * @param glob the glob pattern to match names of files
+     * @return names of files sorted. The same instance while files are unchanged.
+     */
+    @NonNull
+    public List<String> getNames(@NonNull final Path directory, @NonNull final String glob) {
+        final Path dir = directory.toAbsolutePath().normalize();
+        Listing listing = listings.get(dir);
+        if (listing == null) {
+            if (!Files.isDirectory(dir)) {
+                return Collections.emptyList();
+            }
+            listing = watch(dir);
+        }
+        listing.lastRequested = System.currentTimeMillis();
+        return listing.getNames(glob);
+    }
+
+    @NonNull
+    private synchronized Listing watch(@NonNull final Path dir) {
+        final Listing existing = listings.get(dir);
+        if (existing != null) {
+            return existing;
+        }
+        final Listing listing = new Listing(dir);
+        final WatchKey key;
+        try {
+            key = dir.register(
+                getWatchService(),
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY
+            );
+        } catch (final IOException | ClosedWatchServiceException e) {
+            // list every time.
+            LOGGER.log(Level.WARNING, String.format("Failed to watch %s", dir), e);
+            listing.list();
+            return listing;
+        }
+        listing.key = key;
+        // changes while listing schedule listing again.
+        listingsByKey.put(key, listing);
+        // publish after listed, not to return the empty list to other threads.
+        listing.list();
+        listings.put(dir, listing);
+        return listing;
+    }
+
+    @NonNull
+    private WatchService getWatchService() throws IOException {
+        WatchService service = watchService;
+        if (service == null) {
+            service = FileSystems.getDefault().newWatchService();
+            final WatchService started = service;
+            final Thread thread = new Thread(() -> poll(started), "Editable choice directory watcher");
+            thread.setDaemon(true);
+            thread.start();
+            watchService = service;
+            expiration = Timer.get().scheduleWithFixedDelay(
+                this::expire,
+                IDLE_MILLIS,
+                IDLE_MILLIS,
+                TimeUnit.MILLISECONDS
+            );
+        }
+        return service;
+    }
+
+    private void poll(@NonNull final WatchService service) {
+        try {
+            while (true) {
+                final WatchKey key = service.take();
+                // only whether changed matters.
+                key.pollEvents();
+                final Listing listing = listingsByKey.get(key);
+                if (!key.reset()) {
+                    // the directory is removed.
+                    listingsByKey.remove(key);
+                    if (listing != null) {
+                        listings.remove(listing.dir, listing);
+                    }
+                    continue;
+                }
+                if (listing != null) {
+                    listing.scheduleList();
+                }
+            }
+        } catch (final InterruptedException | ClosedWatchServiceException e) {
+            // stopped.
+        }
+    }
+
+    /**
+     * Stops watching directories not requested for {@link #IDLE_MILLIS}.
+     */
+    void expire() {
+        expire(System.currentTimeMillis());
+    }
+
+    /**
+     * @param now the current time in milliseconds
+     */
+    synchronized void expire(final long now) {
+        final long threshold = now - IDLE_MILLIS;
+        for (final Listing listing : listings.values()) {
+            if (listing.lastRequested < threshold) {
+                listings.remove(listing.dir, listing);
+                final WatchKey key = listing.key;
+                if (key != null) {
+                    key.cancel();
+                    listingsByKey.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of watched directories
+     */
+    int getWatchedCount() {
+        return listingsByKey.size();
+    }
+
+    private synchronized void close() {
+        final WatchService service = watchService;
+        watchService = null;
+        if (expiration != null) {
+            expiration.cancel(false);
+            expiration = null;
+        }
+        listings.clear();
+        listingsByKey.clear();
+        if (service != null) {
+            try {
+                service.close();
+            } catch (final IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to stop watching directories", e);
+            }
+        }
+    }
+
+    /**
+     * Names of files in a directory.
+     */
+    private static final class Listing {
+        @NonNull
+        private final Path dir;
+
+        @NonNull
+        private volatile List<String> names = Collections.emptyList();
+
+        /**
+         * Names matching each glob, cached while {@link #names} is unchanged.
+         */
+        private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        @CheckForNull
+        private volatile WatchKey key;
+
+        private volatile long lastRequested = System.currentTimeMillis();
+
+        Listing(@NonNull final Path dir) {
+            this.dir = dir;
+        }
+
+        @NonNull
+        List<String> getNames(@NonNull final String glob) {
+            final List<String> all = names;
+            final Snapshot snapshot = snapshots.get(glob);
+            if (snapshot != null && snapshot.source == all) {
+                return snapshot.names;
+            }
+            final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            final List<String> matched = new ArrayList<>();
+            for (final String name : all) {
+                if (matcher.matches(dir.getFileSystem().getPath(name))) {
+                    matched.add(name);
+                }
+            }
+            final List<String> result = Collections.unmodifiableList(matched);
+            snapshots.put(glob, new Snapshot(all, result));
+            return result;
+        }
+
+        void scheduleList() {
+            if (scheduled.compareAndSet(false, true)) {
+                Timer.get().schedule(this::list, COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void list() {
+            // events after here schedule listing again.
+            scheduled.set(false);
+            final List<String> result = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (final Path entry : entries) {
+                    if (Files.isRegularFile(entry)) {
+                        result.add(entry.getFileName().toString());
+                    }
+                }
+            } catch (final NoSuchFileException e) {
+                // removed.
+            } catch (final IOException e) {
+                LOGGER.log(Level.WARNING, String.format("Failed to list %s", dir), e);
+                return;
+            }
+            Collections.sort(result);
+            if (!result.equals(names)) {
+                // keep the instance when only contents of files changed.
+                names = Collections.unmodifiableList(result);
+            }
+        }
+    }
+
+    /**
+     * Names matching a glob.
+     */
+    private static final class Snapshot {
+        @NonNull
+        private final List<String> source;
+        @NonNull
+        private final List<String> names;
+
+        Snapshot(@NonNull final List<String> source, @NonNull final List<String> names) {
+            this.source = source;
+            this.names = names;
+        }
+    }
+}
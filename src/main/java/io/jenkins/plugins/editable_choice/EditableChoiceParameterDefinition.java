@@ -25,27 +25,47 @@ package io.jenkins.plugins.editable_choice;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.servlet.ServletException;
 
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.Symbol;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.verb.GET;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.RelativePath;
 import hudson.Util;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.ParameterDefinition;
 import hudson.model.ParameterValue;
+import hudson.model.ParametersDefinitionProperty;
 import hudson.model.SimpleParameterDefinition;
 import hudson.model.StringParameterValue;
 import hudson.util.ComboBoxModel;
+import hudson.util.FormValidation;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
 /**
@@ -54,13 +74,47 @@ import net.sf.json.JSONObject;
 public class EditableChoiceParameterDefinition extends SimpleParameterDefinition {
     private static final long serialVersionUID = 4977304129086062036L;
 
+    /**
+     * The maximum number of choices returned for a suggestion request.
+     */
+    static final int MAX_SUGGESTIONS = 100;
+
+    /**
+     * The maximum number of choices suggested in an error message.
+     */
+    static final int MAX_DID_YOU_MEAN = 3;
+
     @NonNull
     private List<String> choices = new ArrayList<>();
     @CheckForNull
+    private List<String> labels = new ArrayList<>();
+    @CheckForNull
     private String defaultValue = null;
     private boolean restrict = false;
+    private boolean restrictIgnoringCase = false;
+    @CheckForNull
+    private List<String> allowedPatterns = new ArrayList<>();
     @CheckForNull
     private FilterConfig filterConfig = null;
+    private boolean orderByUsage = false;
+    @CheckForNull
+    private SortMode sortMode = null;
+    @CheckForNull
+    private ChoiceProvider choiceProvider = null;
+    @CheckForNull
+    private String groupDelimiter = null;
+    @CheckForNull
+    private String dependsOn = null;
+    @CheckForNull
+    private List<DependentChoices> dependentChoices = new ArrayList<>();
+    private int numberOfRecentValues = 0;
+
+    @CheckForNull
+    private transient volatile ChoiceIndex choiceIndex = null;
+    @CheckForNull
+    private transient volatile AllowedPatterns compiledAllowedPatterns = null;
+    @CheckForNull
+    private transient volatile DependentChoiceIndex dependentChoiceIndex = null;
 
     /**
      * ctor.
@@ -88,6 +142,7 @@ public class EditableChoiceParameterDefinition extends SimpleParameterDefinition
     @DataBoundSetter
     public void setChoices(@NonNull final List<String> choices) {
         this.choices = choices;
+        this.choiceIndex = null;
     }
 
     /**
@@ -98,6 +153,60 @@ public class EditableChoiceParameterDefinition extends SimpleParameterDefinition
         return choices;
     }
 
+    /**
+     * Returns the index for the current choices.
+     *
+     * The index is built lazily, and rebuilt when choices are replaced
+     * or {@link ChoiceProvider} provides new choices.
+     * Labels are not used for choices from {@link ChoiceProvider}.
+     * {@link ChoiceIndexWarmer} builds indices in background when Jenkins starts
+     * not to make the first request wait for building them.
+     *
+     * @return the index for the current choices
+     */
+    @Restricted(NoExternalUse.class)
+    @NonNull
+    public ChoiceIndex getChoiceIndex() {
+        final List<String> choices = getEffectiveChoices();
+        final List<String> labels = (getChoiceProvider() == null) ? getLabels() : null;
+        final SortMode mode = getSortMode();
+        ChoiceIndex index = choiceIndex;
+        if (index == null || !index.isBuiltFrom(choices, labels, mode)) {
+            if (index != null) {
+                SearchResultCache.get().invalidate(index);
+            }
+            index = new ChoiceIndex(choices, labels, mode);
+            choiceIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * @return the index built last. {@code null} if not built yet.
+     */
+    @CheckForNull
+    ChoiceIndex getBuiltChoiceIndex() {
+        return choiceIndex;
+    }
+
+    /**
+     * Build indices used for this parameter in advance.
+     */
+    @Restricted(NoExternalUse.class)
+    public void warmUp() {
+        final ChoiceIndex index = getChoiceIndex();
+        // for values of builds loaded later to share instances of choices.
+        index.getContentHash();
+        index.warmUp(getFilterConfig());
+        if (isRestrict() && isRestrictIgnoringCase()) {
+            index.warmUpIgnoringCase();
+        }
+        final ChoiceGroups groups = getChoiceGroups();
+        if (groups != null) {
+            groups.getTopLevel();
+        }
+    }
+
     /**
      * @param text choices delimited with new lines
      * @return choices
@@ -155,6 +264,96 @@ public class EditableChoiceParameterDefinition extends SimpleParameterDefinition
         return this;
     }
 
+    /**
+     * @param choiceProvider the source of choices used instead of configured choices.
+     *                       {@code null} to use configured choices.
+     */
+    @DataBoundSetter
+    public void setChoiceProvider(@CheckForNull final ChoiceProvider choiceProvider) {
+        this.choiceProvider = choiceProvider;
+    }
+
+    /**
+     * @return the source of choices used instead of configured choices. {@code null} if not configured.
+     */
+    @CheckForNull
+    public ChoiceProvider getChoiceProvider() {
+        return choiceProvider;
+    }
+
+    /**
+     * @param choiceProvider the source of choices used instead of configured choices
+     * @return this instance
+     */
+    public EditableChoiceParameterDefinition withChoiceProvider(@CheckForNull final ChoiceProvider choiceProvider) {
+        setChoiceProvider(choiceProvider);
+        return this;
+    }
+
+    /**
+     * Choices from {@link ChoiceProvider} are loaded with {@link ChoiceLoader},
+     * so concurrent requests share one load.
+     *
+     * @return choices from {@link #getChoiceProvider()} if configured, otherwise configured choices.
+     */
+    @NonNull
+    public List<String> getEffectiveChoices() {
+        final ChoiceProvider provider = getChoiceProvider();
+        return (provider != null) ? ChoiceLoader.get().load(provider) : getChoices();
+    }
+
+    /**
+     * @param labels labels to display for each choice, in the same order as choices.
+     *               Values are displayed for missing or empty labels.
+     */
+    @DataBoundSetter
+    public void setLabels(@NonNull final List<String> labels) {
+        this.labels = labels;
+        this.choiceIndex = null;
+    }
+
+    /**
+     * @return labels to display for each choice, in the same order as choices.
+     */
+    @NonNull
+    public List<String> getLabels() {
+        return (labels != null) ? labels : Collections.emptyList();
+    }
+
+    /**
+     * @param labelsWithText labels delimited with new lines
+     */
+    @DataBoundSetter
+    public void setLabelsWithText(@NonNull final String labelsWithText) {
+        setLabels(labelsWithText.isEmpty() ? new ArrayList<>() : choicesFromText(labelsWithText));
+    }
+
+    /**
+     * @return labels delimited with new lines
+     */
+    @NonNull
+    public String getLabelsWithText() {
+        return textFromChoices(getLabels());
+    }
+
+    /**
+     * @param labels labels to display for each choice, in the same order as choices.
+     * @return this instance
+     */
+    public EditableChoiceParameterDefinition withLabels(@NonNull final List<String> labels) {
+        setLabels(labels);
+        return this;
+    }
+
+    /**
+     * @return labels keyed by values. {@code null} if no labels are specified.
+     */
+    @Restricted(NoExternalUse.class) // used only for the view.
+    @CheckForNull
+    public Map<String, String> getLabelMap() {
+        return getChoiceIndex().getLabelMap();
+    }
+
     /**
      * @param defaultValue the default value. The top choice is used if
      *                     {@code null}.
@@ -236,6 +435,113 @@ public class EditableChoiceParameterDefinition extends SimpleParameterDefinition
         return this;
     }
 
+    /**
+     * @param restrictIgnoringCase whether to accept values different from choices
+     *                             only in cases or Unicode normalization when restricted.
+     *                             Those values are replaced with the choice.
+     */
+    @DataBoundSetter
+    public void setRestrictIgnoringCase(final boolean restrictIgnoringCase) {
+        this.restrictIgnoringCase = restrictIgnoringCase;
+    }
+
+    /**
+     * @return whether to accept values different from choices
+     *         only in cases or Unicode normalization when restricted.
+     */
+    public boolean isRestrictIgnoringCase() {
+        return restrictIgnoringCase;
+    }
+
+    /**
+     * @param restrictIgnoringCase whether to accept values different from choices
+     *                             only in cases or Unicode normalization when restricted.
+     * @return this instance
+     */
+    public EditableChoiceParameterDefinition withRestrictIgnoringCase(final boolean restrictIgnoringCase) {
+        setRestrictIgnoringCase(restrictIgnoringCase);
+        return this;
+    }
+
+    /**
+     * Patterns are compiled here, so that malformed ones are reported when saved.
+     *
+     * @param allowedPatterns regular expressions for values allowed in addition to choices when restricted
+     * @throws PatternSyntaxException any of patterns is malformed
+     */
+    @DataBoundSetter
+    public void setAllowedPatterns(@NonNull final List<String> allowedPatterns) throws PatternSyntaxException {
+        this.compiledAllowedPatterns = new AllowedPatterns(allowedPatterns);
+        this.allowedPatterns = allowedPatterns;
+    }
+
+    /**
+     * @return regular expressions for values allowed in addition to choices when restricted
+     */
+    @NonNull
+    public List<String> getAllowedPatterns() {
+        return (allowedPatterns != null) ? allowedPatterns : Collections.emptyList();
+    }
+
+    /**
+     * @param allowedPatternsWithText patterns delimited with new lines. Blank lines are ignored.
+     * @throws PatternSyntaxException any of patterns is malformed
+     */
+    @DataBoundSetter
+    public void setAllowedPatternsWithText(@NonNull final String allowedPatternsWithText)
+            throws PatternSyntaxException {
+        setAllowedPatterns(patternsFromText(allowedPatternsWithText));
+    }
+
+    /**
+     * @return patterns delimited with new lines
+     */
+    @NonNull
+    public String getAllowedPatternsWithText() {
+        return textFromChoices(getAllowedPatterns());
+    }
+
+    /**
+     * @param text patterns delimited with new lines
+     * @return patterns, excluding blank lines
+     */
+    @NonNull
+    private static List<String> patternsFromText(@NonNull final String text) {
+        return choicesFromText(text).stream()
+            .filter(StringUtils::isNotBlank)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @param allowedPatterns regular expressions for values allowed in addition to choices when restricted
+     * @return this instance
+     * @throws PatternSyntaxException any of patterns is malformed
+     */
+    public EditableChoiceParameterDefinition withAllowedPatterns(@NonNull final List<String> allowedPatterns)
+            throws PatternSyntaxException {
+        setAllowedPatterns(allowedPatterns);
+        return this;
+    }
+
+    /**
+     * Returns allowed patterns compiled.
+     *
+     * Compiled when configured, or on the first call for loaded configurations.
+     *
+     * @return allowed patterns compiled
+     */
+    @Restricted(NoExternalUse.class)
+    @NonNull
+    public AllowedPatterns getCompiledAllowedPatterns() {
+        final List<String> patterns = getAllowedPatterns();
+        AllowedPatterns compiled = compiledAllowedPatterns;
+        if (compiled == null || !compiled.isBuiltFrom(patterns)) {
+            compiled = new AllowedPatterns(patterns);
+            compiledAllowedPatterns = compiled;
+        }
+        return compiled;
+    }
+
     /**
      * @param filterConfig how to filter values for input. {@code null} not to filter.
      */
@@ -262,7 +568,366 @@ public class EditableChoiceParameterDefinition extends SimpleParameterDefinition
     }
 
     /**
-     * @return the default value. the top most value if not configured.
+     * @param orderByUsage whether to display frequently and recently used choices first
+     */
+    @DataBoundSetter
+    public void setOrderByUsage(final boolean orderByUsage) {
+        this.orderByUsage = orderByUsage;
+    }
+
+    /**
+     * @return whether to display frequently and recently used choices first
+     */
+    public boolean isOrderByUsage() {
+        return orderByUsage;
+    }
+
+    /**
+     * @param orderByUsage whether to display frequently and recently used choices first
+     * @return this instance
+     */
+    public EditableChoiceParameterDefinition withOrderByUsage(final boolean orderByUsage) {
+        setOrderByUsage(orderByUsage);
+        return this;
+    }
+
+    /**
+     * @param sortMode how to sort choices. {@code null} for {@link SortMode#AS_CONFIGURED}.
+     */
+    @DataBoundSetter
+    public void setSortMode(@CheckForNull final SortMode sortMode) {
+        this.sortMode = (sortMode != SortMode.AS_CONFIGURED) ? sortMode : null;
+    }
+
+    /**
+     * @return how to sort choices
+     */
+    @Exported
+    @NonNull
+    public SortMode getSortMode() {
+        return (sortMode != null) ? sortMode : SortMode.AS_CONFIGURED;
+    }
+
+    /**
+     * @param sortMode how to sort choices
+     * @return this instance
+     */
+    public EditableChoiceParameterDefinition withSortMode(@CheckForNull final SortMode sortMode) {
+        setSortMode(sortMode);
+        return this;
+    }
+
+    /**
+     * @param groupDelimiter the delimiter to group choices by paths in values (e.g. {@code /}).
+     *                       {@code null} or empty not to group.
+     */
+    @DataBoundSetter
+    public void setGroupDelimiter(@CheckForNull final String groupDelimiter) {
+        this.groupDelimiter = Util.fixEmpty(groupDelimiter);
+    }
+
+    /**
+     * @return the delimiter to group choices by paths in values. {@code null} not to group.
+     */
+    @CheckForNull
+    public String getGroupDelimiter() {
+        return groupDelimiter;
+    }
+
+    /**
+     * @param groupDelimiter the delimiter to group choices by paths in values (e.g. {@code /}).
+     *                       {@code null} or empty not to group.
+     * @return this instance
+     */
+    public EditableChoiceParameterDefinition withGroupDelimiter(@CheckForNull final String groupDelimiter) {
+        setGroupDelimiter(groupDelimiter);
+        return this;
+    }
+
+    /**
+     * @return choices grouped with {@link #getGroupDelimiter()}.
+     *     {@code null} if not grouped, or choices depend on another parameter.
+     */
+    @Restricted(NoExternalUse.class)
+    @CheckForNull
+    public ChoiceGroups getChoiceGroups() {
+        final String delimiter = getGroupDelimiter();
+        return (delimiter != null && getDependsOn() == null) ? getChoiceIndex().getGroups(delimiter) : null;
+    }
+
+    /**
+     * @param dependsOn the name of the parameter to switch choices with {@link #getDependentChoices()}.
+     *                  {@code null} or empty not to switch.
+     */
+    @DataBoundSetter
+    public void setDependsOn(@CheckForNull final String dependsOn) {
+        this.dependsOn = Util.fixEmptyAndTrim(dependsOn);
+    }
+
+    /**
+     * @return the name of the parameter to switch choices with {@link #getDependentChoices()}.
+     *         {@code null} not to switch.
+     */
+    @CheckForNull
+    public String getDependsOn() {
+        return dependsOn;
+    }
+
+    /**
+     * @param dependsOn the name of the parameter to switch choices with {@link #getDependentChoices()}.
+     * @return this instance
+     */
+    public EditableChoiceParameterDefinition withDependsOn(@CheckForNull final String dependsOn) {
+        setDependsOn(dependsOn);
+        return this;
+    }
+
+    /**
+     * @param dependentChoices choices for values of the parameter {@link #getDependsOn()}.
+     *                         {@link #getChoices()} are used for other values.
+     */
+    @DataBoundSetter
+    public void setDependentChoices(@CheckForNull final List<DependentChoices> dependentChoices) {
+        this.dependentChoices = (dependentChoices != null) ? dependentChoices : new ArrayList<>();
+        this.dependentChoiceIndex = null;
+    }
+
+    /**
+     * @return choices for values of the parameter {@link #getDependsOn()}
+     */
+    @NonNull
+    public List<DependentChoices> getDependentChoices() {
+        return (dependentChoices != null) ? dependentChoices : Collections.emptyList();
+    }
+
+    /**
+     * @param dependentChoices choices for values of the parameter {@link #getDependsOn()}
+     * @return this instance
+     */
+    public EditableChoiceParameterDefinition withDependentChoices(
+        @CheckForNull final List<DependentChoices> dependentChoices
+    ) {
+        setDependentChoices(dependentChoices);
+        return this;
+    }
+
+    /**
+     * @return the index for choices for values of the parameter depended on
+     */
+    @Restricted(NoExternalUse.class)
+    @NonNull
+    public DependentChoiceIndex getDependentChoiceIndex() {
+        final List<DependentChoices> dependentChoices = getDependentChoices();
+        final SortMode mode = getSortMode();
+        DependentChoiceIndex index = dependentChoiceIndex;
+        if (index == null || !index.isBuiltFrom(dependentChoices, mode)) {
+            index = new DependentChoiceIndex(dependentChoices, mode);
+            dependentChoiceIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * @param upstreamValue the value of the parameter depended on. {@code null} if not known.
+     * @return the index for choices used for the value
+     */
+    @Restricted(NoExternalUse.class)
+    @NonNull
+    public ChoiceIndex getChoiceIndexFor(@CheckForNull final String upstreamValue) {
+        if (getDependsOn() != null) {
+            final ChoiceIndex index = getDependentChoiceIndex().getIndex(upstreamValue);
+            if (index != null) {
+                return index;
+            }
+        }
+        return getChoiceIndex();
+    }
+
+    /**
+     * @return the default value of the parameter depended on in the current job.
+     *     {@code null} if not available.
+     */
+    @CheckForNull
+    private String getUpstreamDefaultValue() {
+        final String name = getDependsOn();
+        final Job<?, ?> job = getCurrentJob();
+        if (name == null || job == null) {
+            return null;
+        }
+        final ParametersDefinitionProperty prop = job.getProperty(ParametersDefinitionProperty.class);
+        final ParameterDefinition def = (prop != null) ? prop.getParameterDefinition(name) : null;
+        final ParameterValue value = (def != null) ? def.getDefaultParameterValue() : null;
+        return (value != null && value.getValue() != null) ? value.getValue().toString() : null;
+    }
+
+    /**
+     * @param numberOfRecentValues the number of values used in recent builds to display
+     *                             in addition to choices. {@code 0} not to display.
+     */
+    @DataBoundSetter
+    public void setNumberOfRecentValues(final int numberOfRecentValues) {
+        this.numberOfRecentValues = Math.max(0, Math.min(numberOfRecentValues, RecentValues.MAX_VALUES));
+    }
+
+    /**
+     * @return the number of values used in recent builds to display
+     *         in addition to choices. {@code 0} not to display.
+     */
+    public int getNumberOfRecentValues() {
+        return numberOfRecentValues;
+    }
+
+    /**
+     * @param numberOfRecentValues the number of values used in recent builds to display
+     *                             in addition to choices. {@code 0} not to display.
+     * @return this instance
+     */
+    public EditableChoiceParameterDefinition withNumberOfRecentValues(final int numberOfRecentValues) {
+        setNumberOfRecentValues(numberOfRecentValues);
+        return this;
+    }
+
+    /**
+     * @return whether values of this parameter should be recorded when builds start
+     */
+    @Restricted(NoExternalUse.class)
+    public boolean isUsageRecorded() {
+        return isOrderByUsage() || getNumberOfRecentValues() > 0;
+    }
+
+    /**
+     * @return the job rendering the current page. {@code null} if not available.
+     */
+    @CheckForNull
+    private static Job<?, ?> getCurrentJob() {
+        final StaplerRequest req = Stapler.getCurrentRequest();
+        return (req != null) ? req.findAncestorObject(Job.class) : null;
+    }
+
+    /**
+     * @return the URL to call methods of the descriptor for this parameter in the current job.
+     *     {@code null} if not available.
+     */
+    @Restricted(NoExternalUse.class) // used only for the view.
+    @CheckForNull
+    public String getEndpointUrl() {
+        final StaplerRequest req = Stapler.getCurrentRequest();
+        final Job<?, ?> job = getCurrentJob();
+        if (req == null || job == null) {
+            return null;
+        }
+        return String.format(
+            "%s/%sdescriptorByName/%s/",
+            req.getContextPath(),
+            job.getUrl(),
+            getDescriptor().getId()
+        );
+    }
+
+    /**
+     * Choices to display in the build page.
+     *
+     * Only choices not in any groups are displayed when grouped.
+     * Reordered with {@link UsageStatisticsStore} if {@link #isOrderByUsage()},
+     * which also brings frequently used choices in groups to the top.
+     *
+     * @return choices to display
+     */
+    @Restricted(NoExternalUse.class) // used only for the view.
+    @NonNull
+    public List<String> getSuggestedChoices() {
+        final String upstreamValue = getUpstreamDefaultValue();
+        final List<String> dependent = getDependentChoiceIndex().getChoices(upstreamValue);
+        if (dependent != null) {
+            return reorderByUsage(dependent, getChoiceIndexFor(upstreamValue));
+        }
+        final ChoiceGroups groups = getChoiceGroups();
+        final List<String> choices = (groups != null)
+            ? groups.getTopLevel().stream()
+                .filter(e -> !e.isGroup())
+                .map(ChoiceGroups.Entry::getValue)
+                .collect(Collectors.toList())
+            : getChoiceIndex().getValues();
+        return reorderByUsage(choices, getChoiceIndex());
+    }
+
+    @NonNull
+    private List<String> reorderByUsage(@NonNull final List<String> choices, @NonNull final ChoiceIndex index) {
+        if (!isOrderByUsage()) {
+            return choices;
+        }
+        final Job<?, ?> job = getCurrentJob();
+        if (job == null) {
+            return choices;
+        }
+        return UsageStatisticsStore.get().reorder(job, getName(), choices, index);
+    }
+
+    /**
+     * The value to enter in the build page at first.
+     *
+     * The top of choices for the default value of the parameter depended on
+     * if the default value is not configured.
+     *
+     * @return the value to enter at first
+     */
+    @Restricted(NoExternalUse.class) // used only for the view.
+    @CheckForNull
+    public String getSuggestedDefaultValue() {
+        if (getDefaultValue() == null) {
+            final List<String> dependent = getDependentChoiceIndex().getChoices(getUpstreamDefaultValue());
+            if (dependent != null && !dependent.isEmpty()) {
+                return dependent.get(0);
+            }
+        }
+        return createDefaultValue();
+    }
+
+    /**
+     * @return groups to display in the build page at first. Empty if not grouped.
+     */
+    @Restricted(NoExternalUse.class) // used only for the view.
+    @NonNull
+    public List<ChoiceGroups.Entry> getSuggestedGroups() {
+        final ChoiceGroups groups = getChoiceGroups();
+        if (groups == null) {
+            return Collections.emptyList();
+        }
+        return groups.getTopLevel().stream()
+            .filter(ChoiceGroups.Entry::isGroup)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Values used in recent builds to display in the build page in addition to choices.
+     *
+     * Values in choices are excluded as they are already displayed.
+     * Values not allowed are excluded when restricted.
+     *
+     * @return values used in recent builds, the most recent first
+     */
+    @Restricted(NoExternalUse.class) // used only for the view.
+    @NonNull
+    public List<String> getSuggestedRecentValues() {
+        if (getNumberOfRecentValues() <= 0 || (isRestrict() && getAllowedPatterns().isEmpty())) {
+            return Collections.emptyList();
+        }
+        final Job<?, ?> job = getCurrentJob();
+        if (job == null) {
+            return Collections.emptyList();
+        }
+        final ChoiceIndex index = getChoiceIndex();
+        return UsageStatisticsStore.get().getRecentValues(
+            job,
+            getName(),
+            getNumberOfRecentValues(),
+            v -> index.contains(v) || !checkValue(v)
+        );
+    }
+
+    /**
+     * @return the default value. the top most value in the sorted order if not configured
+     *     (e.g. the latest version for {@link SortMode#NATURAL_DESCENDING}).
      */
     @CheckForNull
     public String createDefaultValue() {
@@ -270,11 +935,11 @@ public class EditableChoiceParameterDefinition extends SimpleParameterDefinition
         if (defaultValue != null) {
             return defaultValue;
         }
-        final List<String> choices = getChoices();
-        if (choices.size() <= 0) {
+        final ChoiceIndex index = getChoiceIndex();
+        if (index.size() <= 0) {
             return null;
         }
-        return choices.get(0);
+        return index.get(0);
     }
 
     /**
@@ -295,13 +960,44 @@ public class EditableChoiceParameterDefinition extends SimpleParameterDefinition
 
     /**
      * @param value candidate input
-     * @return whether the value is allowed (e.g. value in choices)
+     * @return whether the value is allowed (e.g. value in choices or matching allowed patterns)
      */
     protected boolean checkValue(@NonNull final String value) {
+        return checkValue(value, null);
+    }
+
+    /**
+     * @param value candidate input
+     * @param upstreamValue the value of the parameter depended on.
+     *     {@code null} if not known, to allow choices for any values.
+     * @return whether the value is allowed (e.g. value in choices or matching allowed patterns)
+     */
+    protected boolean checkValue(@NonNull final String value, @CheckForNull final String upstreamValue) {
         if (!isRestrict()) {
             return true;
         }
-        return getChoices().contains(value);
+        final ChoiceIndex index = getChoiceIndex();
+        if (index.contains(value)) {
+            return true;
+        }
+        final ChoiceProvider provider = getChoiceProvider();
+        if (provider != null && provider.contains(value)) {
+            return true;
+        }
+        if (isRestrictIgnoringCase() && index.findIgnoringCase(value) != null) {
+            return true;
+        }
+        if (getDependsOn() != null) {
+            if (upstreamValue != null) {
+                final ChoiceIndex dependent = getDependentChoiceIndex().getIndex(upstreamValue);
+                if (dependent != null && dependent.contains(value)) {
+                    return true;
+                }
+            } else if (getDependentChoiceIndex().contains(value)) {
+                return true;
+            }
+        }
+        return getCompiledAllowedPatterns().matches(value);
     }
 
     /**
@@ -311,15 +1007,99 @@ public class EditableChoiceParameterDefinition extends SimpleParameterDefinition
      *                                  editable.
      */
     protected ParameterValue createValueCommon(final StringParameterValue value) throws IllegalArgumentException {
-        if (!checkValue(value.getValue())) {
-            throw new IllegalArgumentException(
+        return createValueCommon(value, null);
+    }
+
+    /**
+     * @param value the user input
+     * @param upstreamValue the value of the parameter depended on. {@code null} if not known.
+     * @return the value of this parameter.
+     * @throws IllegalArgumentException The value is not in choices even not
+     *                                  editable.
+     */
+    protected ParameterValue createValueCommon(
+        final StringParameterValue value,
+        @CheckForNull final String upstreamValue
+    ) throws IllegalArgumentException {
+        final ChoiceIndex index = getChoiceIndex();
+        if (!index.contains(value.getValue()) && isRestrict() && isRestrictIgnoringCase()) {
+            final String canonical = index.findIgnoringCase(value.getValue());
+            if (canonical != null) {
+                // use the spelling in choices.
+                return new EditableChoiceParameterValue(value.getName(), canonical, value.getDescription(), index);
+            }
+        }
+        if (!checkValue(value.getValue(), upstreamValue)) {
+            throw createIllegalChoiceException(value.getValue());
+        }
+        return new EditableChoiceParameterValue(value.getName(), value.getValue(), value.getDescription(), index);
+    }
+
+    /**
+     * @param request the request submitting parameters of a build
+     * @return the value of the parameter depended on submitted together.
+     *     {@code null} if not depending on any parameters or not submitted.
+     */
+    @CheckForNull
+    protected String getSubmittedUpstreamValue(@NonNull final StaplerRequest request) {
+        final String name = getDependsOn();
+        if (name == null) {
+            return null;
+        }
+        final JSONObject form;
+        try {
+            form = request.getSubmittedForm();
+        } catch (final ServletException | RuntimeException e) {
+            // e.g. not submitted as a form.
+            return null;
+        }
+        // the same structure as ParametersDefinitionProperty reads.
+        for (final Object o : JSONArray.fromObject(form.get("parameter"))) {
+            if (!(o instanceof JSONObject) || !name.equals(((JSONObject) o).optString("name"))) {
+                continue;
+            }
+            final Object value = ((JSONObject) o).opt("value");
+            return (value instanceof String) ? (String) value : null;
+        }
+        return null;
+    }
+
+    /**
+     * @param value the value not allowed
+     * @return the exception telling the value is not allowed, with similar choices if any.
+     */
+    @NonNull
+    protected IllegalArgumentException createIllegalChoiceException(@NonNull final String value) {
+        final List<String> similar = findSimilarChoices(value);
+        if (similar.isEmpty()) {
+            return new IllegalArgumentException(
                 Messages.EditableChoiceParameterDefinition_IllegalChoice(
-                    value.getValue(),
-                    value.getName()
+                    value,
+                    getName()
                 )
             );
         }
-        return value;
+        return new IllegalArgumentException(
+            Messages.EditableChoiceParameterDefinition_IllegalChoiceDidYouMean(
+                value,
+                getName(),
+                similar.stream().map(v -> String.format("'%s'", v)).collect(Collectors.joining(", "))
+            )
+        );
+    }
+
+    /**
+     * @param value a value not in choices
+     * @return choices similar to the value to tell in error messages
+     */
+    @NonNull
+    private List<String> findSimilarChoices(@NonNull final String value) {
+        final ChoiceIndex index = getChoiceIndex();
+        final List<String> similar = new ArrayList<>();
+        for (final int position : index.getFuzzyIndex(true).search(value, MAX_DID_YOU_MEAN)) {
+            similar.add(index.get(position));
+        }
+        return similar;
     }
 
     /**
@@ -332,7 +1112,7 @@ public class EditableChoiceParameterDefinition extends SimpleParameterDefinition
         final StringParameterValue value = request.bindJSON(StringParameterValue.class, jo);
         value.setDescription(getDescription());
 
-        return createValueCommon(value);
+        return createValueCommon(value, getSubmittedUpstreamValue(request));
     }
 
     /**
@@ -360,6 +1140,205 @@ public class EditableChoiceParameterDefinition extends SimpleParameterDefinition
             return Messages.EditableChoiceParameterDefinition_DisplayName();
         }
 
+        /**
+         * Find the parameter definition in the job.
+         *
+         * @param job the job
+         * @param name the name of the parameter
+         * @return the parameter definition
+         * @throws HttpResponses.HttpResponseException the parameter is not found
+         */
+        @NonNull
+        private static EditableChoiceParameterDefinition findDefinition(
+            @CheckForNull final Job<?, ?> job,
+            @CheckForNull final String name
+        ) throws HttpResponses.HttpResponseException {
+            if (job == null || name == null) {
+                throw HttpResponses.notFound();
+            }
+            job.checkPermission(Item.BUILD);
+            final ParametersDefinitionProperty prop = job.getProperty(ParametersDefinitionProperty.class);
+            if (prop == null) {
+                throw HttpResponses.notFound();
+            }
+            final ParameterDefinition def = prop.getParameterDefinition(name);
+            if (!(def instanceof EditableChoiceParameterDefinition)) {
+                throw HttpResponses.notFound();
+            }
+            return (EditableChoiceParameterDefinition) def;
+        }
+
+        /**
+         * Search choices matching the input in the server side.
+         *
+         * Used for match modes requiring indices in the server side.
+         * Results are cached in {@link SearchResultCache}.
+         *
+         * @param job the job
+         * @param name the name of the parameter
+         * @param value the current input
+         * @param limit the maximum number of choices to return
+         * @param upstream the value of the parameter depended on
+         * @return matching choices
+         */
+        @GET
+        @Restricted(NoExternalUse.class)
+        public HttpResponse doSuggest(
+            @AncestorInPath final Job<?, ?> job,
+            @QueryParameter final String name,
+            @QueryParameter final String value,
+            @QueryParameter final int limit,
+            @QueryParameter final String upstream
+        ) {
+            final EditableChoiceParameterDefinition def = findDefinition(job, name);
+            final ChoiceIndex index = def.getChoiceIndexFor(upstream);
+            final int effectiveLimit = (limit > 0) ? Math.min(limit, MAX_SUGGESTIONS) : MAX_SUGGESTIONS;
+            final List<Integer> positions = SearchResultCache.get().search(
+                index,
+                def.getFilterConfig(),
+                Util.fixNull(value),
+                effectiveLimit
+            );
+            return new StreamingJsonResponse(() -> positions.stream().map(index::get));
+        }
+
+        /**
+         * Choices for a value of the parameter depended on.
+         *
+         * Used to refresh choices when the parameter depended on is changed in the build page.
+         *
+         * @param job the job
+         * @param name the name of the parameter
+         * @param upstream the value of the parameter depended on
+         * @return choices
+         */
+        @GET
+        @Restricted(NoExternalUse.class)
+        public HttpResponse doDependentChoices(
+            @AncestorInPath final Job<?, ?> job,
+            @QueryParameter final String name,
+            @QueryParameter final String upstream
+        ) {
+            final EditableChoiceParameterDefinition def = findDefinition(job, name);
+            final List<String> dependent = def.getDependentChoiceIndex().getChoices(upstream);
+            final List<String> choices = (dependent != null) ? dependent : def.getChoiceIndex().getValues();
+            return new StreamingJsonResponse(choices::stream);
+        }
+
+        /**
+         * List groups and choices in a group, or search choices in all groups.
+         *
+         * Used to expand groups lazily in the build page.
+         *
+         * @param job the job
+         * @param name the name of the parameter
+         * @param path the path of the group. Empty for the top level.
+         * @param value the current input. Search choices in all groups if not empty.
+         * @return groups and choices
+         */
+        @GET
+        @Restricted(NoExternalUse.class)
+        public HttpResponse doChildren(
+            @AncestorInPath final Job<?, ?> job,
+            @QueryParameter final String name,
+            @QueryParameter final String path,
+            @QueryParameter final String value
+        ) {
+            final EditableChoiceParameterDefinition def = findDefinition(job, name);
+            final ChoiceGroups groups = def.getChoiceGroups();
+            if (groups == null) {
+                throw HttpResponses.notFound();
+            }
+            if (StringUtils.isEmpty(value)) {
+                final List<ChoiceGroups.Entry> children = groups.getChildren(Util.fixNull(path));
+                return new StreamingJsonResponse(() -> children.stream().map(ChoiceGroups.Entry::toJson));
+            }
+            final ChoiceIndex index = def.getChoiceIndex();
+            final FilterConfig filterConfig = (def.getFilterConfig() != null)
+                ? def.getFilterConfig()
+                : new FilterConfig();
+            final List<Integer> positions = SearchResultCache.get().search(index, filterConfig, value, MAX_SUGGESTIONS);
+            return new StreamingJsonResponse(
+                () -> positions.stream().map(position -> ChoiceGroups.Entry.ofChoice(index, position).toJson())
+            );
+        }
+
+        /**
+         * Export all choices with their labels, as {@code [{"value": ..., "label": ...}, ...]}.
+         *
+         * Choices are written one by one, so exporting a large number of choices doesn't use much memory.
+         *
+         * @param job the job
+         * @param name the name of the parameter
+         * @param upstream the value of the parameter depended on
+         * @return choices
+         */
+        @GET
+        @Restricted(NoExternalUse.class)
+        public HttpResponse doExport(
+            @AncestorInPath final Job<?, ?> job,
+            @QueryParameter final String name,
+            @QueryParameter final String upstream
+        ) {
+            final EditableChoiceParameterDefinition def = findDefinition(job, name);
+            final ChoiceIndex index = def.getChoiceIndexFor(upstream);
+            return new StreamingJsonResponse(
+                () -> IntStream.range(0, index.size()).boxed(),
+                (w, item) -> {
+                    final int position = (Integer) item;
+                    w.write("{\"value\":");
+                    StreamingJsonResponse.writeString(w, index.get(position));
+                    w.write(",\"label\":");
+                    StreamingJsonResponse.writeString(w, index.getLabel(position));
+                    w.write('}');
+                }
+            ).asAttachment(def.getName().replaceAll("[^A-Za-z0-9._-]", "_") + ".json");
+        }
+
+        /**
+         * Counts of loads of choices from providers, for administrators.
+         *
+         * @return counts for each source
+         * @see ChoiceLoadExecutor
+         */
+        @GET
+        @Restricted(NoExternalUse.class)
+        public HttpResponse doLoaderMetrics() {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            return HttpResponses.okJSON(ChoiceLoadExecutor.get().toJson());
+        }
+
+        /**
+         * Counts of lookups of cached search results, for administrators.
+         *
+         * @return counts of hits, misses and evictions
+         * @see SearchResultCache
+         */
+        @GET
+        @Restricted(NoExternalUse.class)
+        public HttpResponse doSearchCacheMetrics() {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            return HttpResponses.okJSON(SearchResultCache.get().toJson());
+        }
+
+        /**
+         * @param value allowed patterns delimited with new lines
+         * @return error if any of patterns is malformed
+         */
+        @Restricted(NoExternalUse.class)
+        public FormValidation doCheckAllowedPatternsWithText(@QueryParameter final String value) {
+            for (final String pattern : patternsFromText(Util.fixNull(value))) {
+                try {
+                    Pattern.compile(pattern);
+                } catch (final PatternSyntaxException e) {
+                    return FormValidation.error(
+                        Messages.EditableChoiceParameterDefinition_InvalidPattern(pattern, e.getDescription())
+                    );
+                }
+            }
+            return FormValidation.ok();
+        }
+
         /**
          * @param choicesWithText choices that the user inputing
          * @return choices
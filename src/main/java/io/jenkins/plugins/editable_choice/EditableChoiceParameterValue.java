@@ -0,0 +1,201 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.List;
+
+import org.kohsuke.stapler.export.Exported;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.StringParameterValue;
+
+/**
+ * The value of {@link EditableChoiceParameterDefinition}.
+ *
+ * Records the position of the value in choices and the hash of choices when triggered,
+ * so that whether the value was in choices is known without looking up choices.
+ * Choices themselves are not saved, as the value is recorded as it is.
+ *
+ * Values in choices share the instances of choices,
+ * also when loaded from build.xml if the index of the same choices is available.
+ */
+public class EditableChoiceParameterValue extends StringParameterValue {
+    private static final long serialVersionUID = 7413685017209612539L;
+
+    /**
+     * The position of the value in choices. {@code -1} if not in choices.
+     */
+    private final int choiceIndex;
+
+    /**
+     * The hash of choices, {@link ChoiceIndex#getContentHash()}. {@code null} if not recorded.
+     */
+    @CheckForNull
+    private final String choiceListHash;
+
+    /**
+     * ctor.
+     *
+     * @param name the name of the parameter
+     * @param value the value
+     */
+    public EditableChoiceParameterValue(@NonNull final String name, @CheckForNull final String value) {
+        this(name, value, null);
+    }
+
+    /**
+     * ctor.
+     *
+     * @param name the name of the parameter
+     * @param value the value
+     * @param description the description of the parameter
+     */
+    public EditableChoiceParameterValue(
+        @NonNull final String name,
+        @CheckForNull final String value,
+        @CheckForNull final String description
+    ) {
+        super(name, value, description);
+        this.choiceIndex = -1;
+        this.choiceListHash = null;
+    }
+
+    /**
+     * ctor to share the value with choices after unmarshalled.
+     *
+     * @param name the name of the parameter
+     * @param value the value, the instance of the choice
+     * @param description the description of the parameter
+     * @param choiceIndex the position of the value in choices
+     * @param choiceListHash the hash of choices
+     */
+    private EditableChoiceParameterValue(
+        @NonNull final String name,
+        @NonNull final String value,
+        @CheckForNull final String description,
+        final int choiceIndex,
+        @NonNull final String choiceListHash
+    ) {
+        super(name, value, description);
+        this.choiceIndex = choiceIndex;
+        this.choiceListHash = choiceListHash;
+    }
+
+    /**
+     * ctor.
+     *
+     * @param name the name of the parameter
+     * @param value the value
+     * @param description the description of the parameter
+     * @param index choices when triggered
+     */
+    public EditableChoiceParameterValue(
+        @NonNull final String name,
+        @CheckForNull final String value,
+        @CheckForNull final String description,
+        @NonNull final ChoiceIndex index
+    ) {
+        this(name, value, description, index, index.indexOf(value));
+    }
+
+    private EditableChoiceParameterValue(
+        @NonNull final String name,
+        @CheckForNull final String value,
+        @CheckForNull final String description,
+        @NonNull final ChoiceIndex index,
+        final int position
+    ) {
+        // share the instance with choices.
+        super(name, (position >= 0) ? index.get(position) : value, description);
+        this.choiceIndex = position;
+        this.choiceListHash = index.getContentHash();
+    }
+
+    /**
+     * @return the position of the value in choices when triggered. {@code -1} if not in choices.
+     */
+    @Exported
+    public int getChoiceIndex() {
+        // choiceIndex is 0 for records without it.
+        return (choiceListHash != null) ? choiceIndex : -1;
+    }
+
+    /**
+     * @return whether the value was in choices when triggered
+     */
+    @Exported
+    public boolean isListedValue() {
+        return getChoiceIndex() >= 0;
+    }
+
+    /**
+     * @return the hash of choices when triggered. {@code null} if not recorded.
+     */
+    @Exported
+    @CheckForNull
+    public String getChoiceListHash() {
+        return choiceListHash;
+    }
+
+    /**
+     * @return choices when triggered.
+     *     {@code null} if not recorded, or choices are no longer available.
+     */
+    @CheckForNull
+    public List<String> getChoiceList() {
+        if (choiceListHash == null) {
+            return null;
+        }
+        final ChoiceIndex index = ChoiceIndex.findByContentHash(choiceListHash);
+        if (index != null) {
+            return index.getValues();
+        }
+        // saved by older versions.
+        return ChoiceListStore.get().load(choiceListHash);
+    }
+
+    /**
+     * Share the value with choices after unmarshalled.
+     * Values not in choices are left as they are.
+     *
+     * @return the instance sharing the value with choices, or this instance
+     */
+    protected Object readResolve() {
+        final String v = getValue();
+        final String hash = choiceListHash;
+        if (v == null || hash == null || getChoiceIndex() < 0 || getClass() != EditableChoiceParameterValue.class) {
+            return this;
+        }
+        final ChoiceIndex index = ChoiceIndex.findByContentHash(hash);
+        if (index == null) {
+            return this;
+        }
+        final String canonical = index.canonical(v);
+        if (canonical == v) {
+            return this;
+        }
+        return new EditableChoiceParameterValue(getName(), canonical, getDescription(), choiceIndex, hash);
+    }
+}
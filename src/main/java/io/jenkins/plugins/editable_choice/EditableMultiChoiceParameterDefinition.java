@@ -0,0 +1,302 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.Symbol;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.export.Exported;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.ParameterValue;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * EditableMultiChoiceParameterDefinition provides a parameter to select multiple values from candidates.
+ *
+ * The value is {@link EditableMultiChoiceParameterValue}, exposed as values joined with the delimiter.
+ */
+public class EditableMultiChoiceParameterDefinition extends EditableChoiceParameterDefinition {
+    private static final long serialVersionUID = 6318259310488226527L;
+
+    /**
+     * The default delimiter.
+     */
+    public static final String DEFAULT_DELIMITER = ",";
+
+    /**
+     * The maximum number of rows of the list in the build page.
+     */
+    private static final int MAX_ROWS = 10;
+
+    @NonNull
+    private String delimiter = DEFAULT_DELIMITER;
+
+    /**
+     * ctor.
+     *
+     * @param name the name of the parameter
+     */
+    @DataBoundConstructor
+    public EditableMultiChoiceParameterDefinition(@NonNull final String name) {
+        super(name);
+    }
+
+    /**
+     * @param delimiter the delimiter to join and split values. {@link #DEFAULT_DELIMITER} if empty.
+     */
+    @DataBoundSetter
+    public void setDelimiter(@CheckForNull final String delimiter) {
+        this.delimiter = StringUtils.isEmpty(delimiter) ? DEFAULT_DELIMITER : delimiter;
+    }
+
+    /**
+     * @return the delimiter to join and split values
+     */
+    @Exported
+    @NonNull
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * @param delimiter the delimiter to join and split values
+     * @return this instance
+     */
+    public EditableMultiChoiceParameterDefinition withDelimiter(@CheckForNull final String delimiter) {
+        setDelimiter(delimiter);
+        return this;
+    }
+
+    /**
+     * @param text values joined with the delimiter
+     * @return values. Blank ones are dropped.
+     */
+    @NonNull
+    public List<String> splitValues(@CheckForNull final String text) {
+        final List<String> values = new ArrayList<>();
+        if (text == null) {
+            return values;
+        }
+        for (final String value : StringUtils.splitByWholeSeparatorPreserveAllTokens(text, delimiter)) {
+            final String trimmed = value.trim();
+            if (!trimmed.isEmpty()) {
+                values.add(trimmed);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Used in the build page.
+     *
+     * @return choices selected by default
+     */
+    @Restricted(NoExternalUse.class)
+    @NonNull
+    public Set<String> getSelectedByDefault() {
+        final ChoiceIndex index = getChoiceIndex();
+        final Set<String> selected = new HashSet<>();
+        for (final String value : splitValues(getDefaultValue())) {
+            if (index.contains(value)) {
+                selected.add(value);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Used in the build page.
+     *
+     * @return default values not in choices joined with the delimiter
+     */
+    @Restricted(NoExternalUse.class)
+    @NonNull
+    public String getExtrasByDefault() {
+        final ChoiceIndex index = getChoiceIndex();
+        final List<String> extras = new ArrayList<>();
+        for (final String value : splitValues(getDefaultValue())) {
+            if (!index.contains(value)) {
+                extras.add(value);
+            }
+        }
+        return String.join(delimiter, extras);
+    }
+
+    /**
+     * Used in the build page.
+     *
+     * @return whether values not in choices can be input
+     */
+    @Restricted(NoExternalUse.class)
+    public boolean isExtrasAllowed() {
+        return !isRestrict() || !getAllowedPatterns().isEmpty();
+    }
+
+    /**
+     * Used in the build page.
+     *
+     * @return the number of rows of the list
+     */
+    @Restricted(NoExternalUse.class)
+    public int getRows() {
+        return Math.max(1, Math.min(MAX_ROWS, getChoiceIndex().size()));
+    }
+
+    /**
+     * Create the value checking each value only once against the index of choices.
+     *
+     * @param inputs values to select
+     * @return the value of this parameter
+     * @throws IllegalArgumentException a value is not allowed when restricted
+     */
+    @NonNull
+    public EditableMultiChoiceParameterValue createMultiValue(@NonNull final List<String> inputs)
+            throws IllegalArgumentException {
+        return createMultiValue(inputs, null);
+    }
+
+    /**
+     * Create the value checking each value only once against the index of choices.
+     *
+     * @param inputs values to select
+     * @param upstreamValue the value of the parameter depended on. {@code null} if not known.
+     * @return the value of this parameter
+     * @throws IllegalArgumentException a value is not allowed when restricted
+     */
+    @NonNull
+    EditableMultiChoiceParameterValue createMultiValue(
+        @NonNull final List<String> inputs,
+        @CheckForNull final String upstreamValue
+    ) throws IllegalArgumentException {
+        final ChoiceIndex index = getChoiceIndex();
+        final BitSet selected = new BitSet(index.size());
+        final List<String> extras = new ArrayList<>();
+        for (final String input : inputs) {
+            int position = index.indexOf(input);
+            if (position < 0 && isRestrict() && isRestrictIgnoringCase()) {
+                // use the spelling in choices.
+                position = index.indexOf(index.findIgnoringCase(input));
+            }
+            if (position >= 0) {
+                selected.set(position);
+                continue;
+            }
+            if (!checkValue(input, upstreamValue)) {
+                throw createIllegalChoiceException(input);
+            }
+            if (!extras.contains(input)) {
+                extras.add(input);
+            }
+        }
+        return new EditableMultiChoiceParameterValue(
+            getName(),
+            index,
+            selected,
+            extras,
+            delimiter,
+            getDescription(),
+            // choices from providers can be large and change often.
+            getChoiceProvider() == null
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @CheckForNull
+    public String createDefaultValue() {
+        // nothing is selected by default.
+        return getDefaultValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @NonNull
+    public ParameterValue getDefaultParameterValue() {
+        return createMultiValue(splitValues(getDefaultValue()));
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException a value is not in choices when restricted.
+     */
+    @Override
+    public ParameterValue createValue(final StaplerRequest request, final JSONObject jo)
+            throws IllegalArgumentException {
+        final List<String> inputs = new ArrayList<>();
+        final Object value = jo.get("value");
+        if (value instanceof JSONArray) {
+            for (final Object v : (JSONArray) value) {
+                inputs.add(String.valueOf(v));
+            }
+        } else if (value instanceof String) {
+            // a single selection is sent as a string.
+            inputs.add((String) value);
+        }
+        inputs.addAll(splitValues(jo.optString("extras")));
+        return createMultiValue(inputs, getSubmittedUpstreamValue(request));
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException a value is not in choices when restricted.
+     */
+    @Override
+    public ParameterValue createValue(final String value) throws IllegalArgumentException {
+        return createMultiValue(splitValues(value));
+    }
+
+    /**
+     * Descriptor for {@link EditableMultiChoiceParameterDefinition}.
+     */
+    @Extension
+    @Symbol("editableMultiChoice")
+    public static class DescriptorImpl extends EditableChoiceParameterDefinition.DescriptorImpl {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return Messages.EditableMultiChoiceParameterDefinition_DisplayName();
+        }
+    }
+}
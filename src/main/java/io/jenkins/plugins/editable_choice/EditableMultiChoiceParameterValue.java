@@ -0,0 +1,327 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+import org.kohsuke.stapler.export.Exported;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
+import hudson.model.AbstractBuild;
+import hudson.model.ParameterValue;
+import hudson.model.Run;
+import hudson.util.VariableResolver;
+
+/**
+ * The value of {@link EditableMultiChoiceParameterDefinition}.
+ *
+ * Only selected choices are saved in build.xml, not the whole choices,
+ * so the build record is self-contained and still small.
+ * Positions of selected choices are also held as a bit set,
+ * referring choices saved only once in {@link ChoiceListStore} with the hash.
+ * Choices from {@link ChoiceProvider} are not saved, as they can be large and change often.
+ */
+public class EditableMultiChoiceParameterValue extends ParameterValue {
+    private static final long serialVersionUID = -2836045927370164451L;
+
+    private static final Logger LOGGER = Logger.getLogger(EditableMultiChoiceParameterValue.class.getName());
+
+    /**
+     * The hash of choices in {@link ChoiceListStore}. {@code null} if choices are not saved.
+     */
+    @CheckForNull
+    private final String choiceListHash;
+
+    /**
+     * The bit set of selected positions encoded in Base64.
+     */
+    @NonNull
+    private final String selection;
+
+    /**
+     * Selected choices in the order of choices.
+     * {@code null} for records without them, resolved with {@link ChoiceListStore}.
+     */
+    @CheckForNull
+    private final List<String> selected;
+
+    /**
+     * Values not in choices. {@code null} if none not to output to build.xml.
+     */
+    @CheckForNull
+    private final List<String> extras;
+
+    @NonNull
+    private final String delimiter;
+
+    /**
+     * Selected values, resolved on the first use.
+     */
+    @CheckForNull
+    private transient volatile List<String> values;
+
+    /**
+     * Choices not saved in {@link ChoiceListStore} yet.
+     */
+    @CheckForNull
+    private transient volatile List<String> unsavedChoiceList;
+
+    /**
+     * ctor.
+     *
+     * @param name the name of the parameter
+     * @param index choices
+     * @param selected positions of selected choices
+     * @param extras values not in choices
+     * @param delimiter the delimiter to join values
+     * @param description the description of the parameter
+     */
+    public EditableMultiChoiceParameterValue(
+        @NonNull final String name,
+        @NonNull final ChoiceIndex index,
+        @NonNull final BitSet selected,
+        @NonNull final List<String> extras,
+        @NonNull final String delimiter,
+        @CheckForNull final String description
+    ) {
+        this(name, index, selected, extras, delimiter, description, true);
+    }
+
+    /**
+     * ctor.
+     *
+     * @param name the name of the parameter
+     * @param index choices
+     * @param selected positions of selected choices
+     * @param extras values not in choices
+     * @param delimiter the delimiter to join values
+     * @param description the description of the parameter
+     * @param saveChoiceList whether to save choices in {@link ChoiceListStore}
+     */
+    EditableMultiChoiceParameterValue(
+        @NonNull final String name,
+        @NonNull final ChoiceIndex index,
+        @NonNull final BitSet selected,
+        @NonNull final List<String> extras,
+        @NonNull final String delimiter,
+        @CheckForNull final String description,
+        final boolean saveChoiceList
+    ) {
+        super(name, description);
+        if (saveChoiceList) {
+            this.choiceListHash = ChoiceListStore.get().remember(index);
+            this.unsavedChoiceList = index.getValues();
+        } else {
+            this.choiceListHash = null;
+        }
+        this.selection = Base64.getEncoder().encodeToString(selected.toByteArray());
+        this.selected = select(index.getValues(), selected);
+        this.extras = extras.isEmpty() ? null : Collections.unmodifiableList(new ArrayList<>(extras));
+        this.delimiter = delimiter;
+    }
+
+    @NonNull
+    private static List<String> select(@NonNull final List<String> choices, @NonNull final BitSet positions) {
+        final List<String> values = new ArrayList<>(positions.cardinality());
+        for (int i = positions.nextSetBit(0); i >= 0 && i < choices.size(); i = positions.nextSetBit(i + 1)) {
+            values.add(choices.get(i));
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * @return the hash of choices in {@link ChoiceListStore}. {@code null} if choices are not saved.
+     */
+    @CheckForNull
+    public String getChoiceListHash() {
+        return choiceListHash;
+    }
+
+    /**
+     * Returns choices to save when the build starts, and forgets them.
+     *
+     * @return choices not saved yet. {@code null} if saved or lost with a restart.
+     */
+    @CheckForNull
+    List<String> takeUnsavedChoiceList() {
+        final List<String> unsaved = unsavedChoiceList;
+        unsavedChoiceList = null;
+        return unsaved;
+    }
+
+    /**
+     * @return positions of selected choices
+     */
+    @NonNull
+    public BitSet getSelection() {
+        return BitSet.valueOf(Base64.getDecoder().decode(selection));
+    }
+
+    /**
+     * @return values not in choices
+     */
+    @NonNull
+    public List<String> getExtras() {
+        return (extras != null) ? extras : Collections.emptyList();
+    }
+
+    /**
+     * @return the delimiter to join values
+     */
+    @NonNull
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * @return selected choices in the order of choices, followed by values not in choices.
+     *     Only values not in choices for records without selected choices whose choices are lost.
+     */
+    @Exported
+    @NonNull
+    public List<String> getValues() {
+        List<String> resolved = values;
+        if (resolved == null) {
+            List<String> choices = (selected != null) ? selected : loadSelected();
+            if (choices == null) {
+                LOGGER.warning(String.format(
+                    "Choices %s for parameter %s are not found. Only values not in choices are available.",
+                    choiceListHash,
+                    getName()
+                ));
+                choices = Collections.emptyList();
+            }
+            final List<String> all = new ArrayList<>(choices);
+            all.addAll(getExtras());
+            resolved = Collections.unmodifiableList(all);
+            values = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * @return selected choices resolved with choices in {@link ChoiceListStore}. {@code null} if not found.
+     */
+    @CheckForNull
+    private List<String> loadSelected() {
+        if (choiceListHash == null) {
+            return null;
+        }
+        final List<String> choices = ChoiceListStore.get().load(choiceListHash);
+        return (choices != null) ? select(choices, getSelection()) : null;
+    }
+
+    /**
+     * @return values joined with the delimiter
+     * @throws IllegalStateException selected choices are lost
+     */
+    @NonNull
+    private String getValueForBuild() {
+        if (selected == null && !getSelection().isEmpty() && loadSelected() == null) {
+            // never run builds with wrong parameters.
+            throw new IllegalStateException(String.format(
+                "Choices %s selected for parameter %s are not found",
+                choiceListHash,
+                getName()
+            ));
+        }
+        return getValue();
+    }
+
+    /**
+     * @return values joined with the delimiter
+     */
+    @Override
+    @NonNull
+    public String getValue() {
+        return String.join(delimiter, getValues());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void buildEnvironment(final Run<?, ?> build, final EnvVars env) {
+        env.put(getName(), getValueForBuild());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VariableResolver<String> createVariableResolver(final AbstractBuild<?, ?> build) {
+        return name -> getName().equals(name) ? getValueForBuild() : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getShortDescription() {
+        return String.format("%s='%s'", getName(), getValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final EditableMultiChoiceParameterValue other = (EditableMultiChoiceParameterValue) o;
+        return Objects.equals(getName(), other.getName())
+            && Objects.equals(choiceListHash, other.choiceListHash)
+            && selection.equals(other.selection)
+            && getExtras().equals(other.getExtras())
+            && delimiter.equals(other.delimiter);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getName(), choiceListHash, selection, getExtras(), delimiter);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("(EditableMultiChoiceParameterValue) %s='%s'", getName(), getValue());
+    }
+}
@@ -31,6 +31,8 @@ import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
@@ -42,8 +44,74 @@ import hudson.model.Descriptor;
 public class FilterConfig extends AbstractDescribableImpl<FilterConfig> implements Serializable {
     private static final long serialVersionUID = 6989114009969654271L;
 
+    /**
+     * How to match values with the input.
+     */
+    public enum MatchMode {
+        /**
+         * Values containing the input.
+         */
+        CONTAINS(false),
+        /**
+         * Values starting with the input.
+         */
+        PREFIX(false),
+        /**
+         * Values containing the input allowing a few typos.
+         * Matched in the server side with {@link FuzzyIndex}.
+         */
+        FUZZY(true),
+        /**
+         * Values containing all words in the input.
+         * Matched in the server side with {@link TokenIndex}.
+         */
+        TOKENS(true),
+        /**
+         * Values matching the input as a regular expression.
+         * Matched in the server side with {@link RegexSearch}.
+         */
+        REGEX(true);
+
+        private final boolean serverSide;
+
+        MatchMode(final boolean serverSide) {
+            this.serverSide = serverSide;
+        }
+
+        /**
+         * @return whether values are matched in the server side
+         */
+        public boolean isServerSide() {
+            return serverSide;
+        }
+
+        /**
+         * @return the name to display
+         */
+        public String getDisplayName() {
+            switch (this) {
+            case PREFIX:
+                return Messages.FilterConfig_MatchMode_PREFIX();
+            case FUZZY:
+                return Messages.FilterConfig_MatchMode_FUZZY();
+            case TOKENS:
+                return Messages.FilterConfig_MatchMode_TOKENS();
+            case REGEX:
+                return Messages.FilterConfig_MatchMode_REGEX();
+            default:
+                return Messages.FilterConfig_MatchMode_CONTAINS();
+            }
+        }
+    }
+
+    /**
+     * Kept for the compatibility of saved configurations.
+     * {@link #matchMode} is used instead.
+     */
     private boolean prefix = false;
     private boolean caseInsensitive = false;
+    @CheckForNull
+    private MatchMode matchMode = MatchMode.CONTAINS;
 
     /**
      * ctor.
@@ -52,19 +120,33 @@ public class FilterConfig extends AbstractDescribableImpl<FilterConfig> implemen
     public FilterConfig() {
     }
 
+    /**
+     * @return this instance migrated from older configurations
+     */
+    private Object readResolve() {
+        if (matchMode == null) {
+            matchMode = prefix ? MatchMode.PREFIX : MatchMode.CONTAINS;
+        }
+        return this;
+    }
+
     /**
      * @param prefix whether to filter values only with prefixes
      */
     @DataBoundSetter
     public void setPrefix(final boolean prefix) {
-        this.prefix = prefix;
+        if (prefix) {
+            setMatchMode(MatchMode.PREFIX);
+        } else if (getMatchMode() == MatchMode.PREFIX) {
+            setMatchMode(MatchMode.CONTAINS);
+        }
     }
 
     /**
      * @return whether to filter values only with prefixes
      */
     public boolean isPrefix() {
-        return prefix;
+        return getMatchMode() == MatchMode.PREFIX;
     }
 
     /**
@@ -76,6 +158,32 @@ public class FilterConfig extends AbstractDescribableImpl<FilterConfig> implemen
         return this;
     }
 
+    /**
+     * @param matchMode how to match values with the input
+     */
+    @DataBoundSetter
+    public void setMatchMode(@CheckForNull final MatchMode matchMode) {
+        this.matchMode = (matchMode != null) ? matchMode : MatchMode.CONTAINS;
+        this.prefix = this.matchMode == MatchMode.PREFIX;
+    }
+
+    /**
+     * @return how to match values with the input
+     */
+    @NonNull
+    public MatchMode getMatchMode() {
+        return (matchMode != null) ? matchMode : MatchMode.CONTAINS;
+    }
+
+    /**
+     * @param matchMode how to match values with the input
+     * @return this instance
+     */
+    public FilterConfig withMatchMode(@CheckForNull final MatchMode matchMode) {
+        setMatchMode(matchMode);
+        return this;
+    }
+
     /**
      * @param caseInsensitive whether to match in case insensitive
      */
@@ -106,9 +214,11 @@ public class FilterConfig extends AbstractDescribableImpl<FilterConfig> implemen
     @Restricted(NoExternalUse.class) // used only for the view.
     public String toJson() {
         return String.format(
-            "{\"prefix\": %s, \"caseInsensitive\": %s}",
+            "{\"prefix\": %s, \"caseInsensitive\": %s, \"matchMode\": \"%s\", \"serverSide\": %s}",
             Boolean.toString(isPrefix()),
-            Boolean.toString(isCaseInsensitive())
+            Boolean.toString(isCaseInsensitive()),
+            getMatchMode().name(),
+            Boolean.toString(getMatchMode().isServerSide())
         );
     }
 
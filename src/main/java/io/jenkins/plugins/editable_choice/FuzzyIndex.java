@@ -0,0 +1,369 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * FuzzyIndex finds choices containing the input with a few typos.
+ *
+ * A choice matches when some part of it is within a bounded edit distance
+ * (Levenshtein distance) from the input.
+ * Choices are indexed with bigrams, and candidates are narrowed
+ * with the q-gram lemma before computing edit distances:
+ * a choice within edit distance k from the input shares
+ * at least (the number of bigrams in the input - 2k) bigrams with the input.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+@Restricted(NoExternalUse.class)
+public final class FuzzyIndex {
+    /**
+     * The maximum edit distance allowed.
+     */
+    static final int MAX_EDIT_DISTANCE = 2;
+
+    /**
+     * Inputs shorter than this must match exactly.
+     */
+    static final int MIN_LENGTH_FOR_ONE_TYPO = 4;
+
+    /**
+     * Inputs shorter than this can contain only one typo.
+     */
+    static final int MIN_LENGTH_FOR_TWO_TYPOS = 8;
+
+    private final boolean caseInsensitive;
+    @NonNull
+    private final String[] keys;
+
+    /**
+     * Choices containing each bigram.
+     */
+    @NonNull
+    private final PostingLists postings;
+
+    /**
+     * ctor.
+     *
+     * @param index the index of choices
+     * @param caseInsensitive whether to match in case insensitive
+     */
+    public FuzzyIndex(@NonNull final ChoiceIndex index, final boolean caseInsensitive) {
+        this.caseInsensitive = caseInsensitive;
+        this.keys = new String[index.size()];
+        int total = 0;
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = normalize(index.getLabel(i));
+            total += Math.max(0, keys[i].length() - 1);
+        }
+
+        final long[] pairs = new long[total];
+        int count = 0;
+        for (int i = 0; i < keys.length; ++i) {
+            for (final int gram : bigrams(keys[i])) {
+                pairs[count++] = PostingLists.pack(gram, i);
+            }
+        }
+        this.postings = new PostingLists(pairs, count);
+    }
+
+    @NonNull
+    private String normalize(@NonNull final String value) {
+        return caseInsensitive ? value.toLowerCase(Locale.ROOT) : value;
+    }
+
+    /**
+     * @param s a string
+     * @return distinct bigrams in the string, each packed into an int, sorted
+     */
+    @NonNull
+    static int[] bigrams(@NonNull final String s) {
+        if (s.length() < 2) {
+            return new int[0];
+        }
+        final int[] grams = new int[s.length() - 1];
+        for (int i = 0; i < grams.length; ++i) {
+            grams[i] = (s.charAt(i) << Character.SIZE) | s.charAt(i + 1);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; ++i) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * @param length the length of the input
+     * @return the maximum edit distance allowed for the input
+     */
+    static int maxDistanceFor(final int length) {
+        if (length < MIN_LENGTH_FOR_ONE_TYPO) {
+            return 0;
+        }
+        if (length < MIN_LENGTH_FOR_TWO_TYPOS) {
+            return 1;
+        }
+        return MAX_EDIT_DISTANCE;
+    }
+
+    /**
+     * Search choices.
+     *
+     * Results are ordered by the edit distance, and then by the difference of lengths
+     * and the position in choices.
+     *
+     * @param input the input
+     * @param limit the maximum number of results
+     * @return positions of matching choices
+     */
+    @NonNull
+    public List<Integer> search(@NonNull final String input, final int limit) {
+        final String query = normalize(input);
+        final List<Integer> result = new ArrayList<>();
+        if (query.isEmpty() || limit <= 0) {
+            return result;
+        }
+        final int maxDistance = maxDistanceFor(query.length());
+        final int[] queryGrams = bigrams(query);
+        final int threshold = queryGrams.length - maxDistance * 2;
+        final Matcher matcher = new Matcher(query);
+
+        final PriorityQueue<Match> top = new PriorityQueue<>(limit + 1, Comparator.reverseOrder());
+        if (threshold <= 0) {
+            // too short to narrow with bigrams.
+            for (int i = 0; i < keys.length; ++i) {
+                offer(top, limit, matcher, i, maxDistance);
+            }
+        } else {
+            final int[] counts = new int[keys.length];
+            for (final int gram : queryGrams) {
+                final int slot = postings.find(gram);
+                if (slot < 0) {
+                    continue;
+                }
+                for (int p = postings.start(slot); p < postings.end(slot); ++p) {
+                    final int id = postings.id(p);
+                    if (++counts[id] == threshold) {
+                        offer(top, limit, matcher, id, maxDistance);
+                    }
+                }
+            }
+        }
+
+        final List<Match> matches = new ArrayList<>(top);
+        matches.sort(null);
+        for (final Match m : matches) {
+            result.add(m.position);
+        }
+        return result;
+    }
+
+    private void offer(
+        @NonNull final PriorityQueue<Match> top,
+        final int limit,
+        @NonNull final Matcher matcher,
+        final int position,
+        final int maxDistance
+    ) {
+        final String key = keys[position];
+        if (key.length() < matcher.query.length() - maxDistance) {
+            return;
+        }
+        final int distance = (maxDistance == 0)
+            ? (key.contains(matcher.query) ? 0 : 1)
+            : matcher.distance(key);
+        if (distance > maxDistance) {
+            return;
+        }
+        final Match m = new Match(position, distance, Math.abs(key.length() - matcher.query.length()));
+        if (top.size() < limit) {
+            top.add(m);
+        } else if (m.compareTo(top.peek()) < 0) {
+            top.poll();
+            top.add(m);
+        }
+    }
+
+    /**
+     * Computes the minimum edit distance between the query and any substrings of the text
+     * with the dynamic programming.
+     *
+     * @param query the query
+     * @param text the text
+     * @param row working buffer with the length of query + 1
+     * @return the edit distance
+     */
+    static int substringDistance(
+        @NonNull final String query,
+        @NonNull final String text,
+        @NonNull final int[] row
+    ) {
+        final int m = query.length();
+        // row[i]: the distance between query[0, i) and the best substring of text ending here.
+        for (int i = 0; i <= m; ++i) {
+            row[i] = i;
+        }
+        int best = row[m];
+        for (int j = 1; j <= text.length(); ++j) {
+            final char c = text.charAt(j - 1);
+            // a match can start at any position of text.
+            int diagonal = 0;
+            row[0] = 0;
+            for (int i = 1; i <= m; ++i) {
+                final int above = row[i];
+                final int cost = (query.charAt(i - 1) == c) ? 0 : 1;
+                row[i] = Math.min(Math.min(row[i - 1] + 1, above + 1), diagonal + cost);
+                diagonal = above;
+            }
+            best = Math.min(best, row[m]);
+            if (best == 0) {
+                return 0;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Computes the minimum edit distance between the query and any substrings of texts.
+     *
+     * Uses the bit-parallel algorithm by Myers for queries up to 64 characters,
+     * which computes a column of the dynamic programming table with a few operations on longs.
+     */
+    static final class Matcher {
+        @NonNull
+        private final String query;
+        @CheckForNull
+        private final Map<Character, Long> peq;
+
+        /**
+         * ctor.
+         *
+         * @param query the query
+         */
+        Matcher(@NonNull final String query) {
+            this.query = query;
+            if (query.isEmpty() || query.length() > Long.SIZE) {
+                this.peq = null;
+                return;
+            }
+            this.peq = new HashMap<>();
+            for (int i = 0; i < query.length(); ++i) {
+                peq.merge(query.charAt(i), 1L << i, (a, b) -> a | b);
+            }
+        }
+
+        /**
+         * @param text the text
+         * @return the minimum edit distance between the query and any substrings of the text
+         */
+        int distance(@NonNull final String text) {
+            if (peq == null) {
+                return substringDistance(query, text, new int[query.length() + 1]);
+            }
+            final int m = query.length();
+            final long last = 1L << (m - 1);
+            long pv = -1L;
+            long mv = 0L;
+            int score = m;
+            int best = m;
+            for (int j = 0; j < text.length(); ++j) {
+                final long eq = peq.getOrDefault(text.charAt(j), 0L);
+                final long xv = eq | mv;
+                final long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+                if ((ph & last) != 0) {
+                    ++score;
+                } else if ((mh & last) != 0) {
+                    --score;
+                }
+                // a match can start at any position of the text: no carry from the top row.
+                ph <<= 1;
+                mh <<= 1;
+                pv = mh | ~(xv | ph);
+                mv = ph & xv;
+                if (score < best) {
+                    best = score;
+                    if (best == 0) {
+                        break;
+                    }
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * A matching choice.
+     */
+    private static final class Match implements Comparable<Match> {
+        private final int position;
+        private final int distance;
+        private final int lengthDiff;
+
+        Match(final int position, final int distance, final int lengthDiff) {
+            this.position = position;
+            this.distance = distance;
+            this.lengthDiff = lengthDiff;
+        }
+
+        @Override
+        public int compareTo(final Match o) {
+            if (distance != o.distance) {
+                return Integer.compare(distance, o.distance);
+            }
+            if (lengthDiff != o.lengthDiff) {
+                return Integer.compare(lengthDiff, o.lengthDiff);
+            }
+            return Integer.compare(position, o.position);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Match && compareTo((Match) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return position;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.verb.POST;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Item;
+import hudson.util.FormValidation;
+
+/**
+ * Provides names of tags and branches in a git repository on the controller.
+ *
+ * Refs are read from {@code packed-refs} and loose refs without running git,
+ * and cached until they change. See {@link GitRefIndex}.
+ * The repository must be in directories allowed by the administrator. See {@link ControllerPaths}.
+ */
+public class GitRefChoiceProvider extends ChoiceProvider {
+    private static final long serialVersionUID = 4811960351925174624L;
+    private static final Logger LOGGER = Logger.getLogger(GitRefChoiceProvider.class.getName());
+
+    private static final String TAGS = "refs/tags/";
+    private static final String BRANCHES = "refs/heads/";
+
+    @NonNull
+    private final String repository;
+
+    private boolean includeTags = true;
+
+    private boolean includeBranches;
+
+    /**
+     * ctor.
+     *
+     * @param repository the path to a bare repository or a working tree on the controller
+     */
+    @DataBoundConstructor
+    public GitRefChoiceProvider(@NonNull final String repository) {
+        this.repository = Util.fixNull(repository).trim();
+    }
+
+    /**
+     * @return the path to a bare repository or a working tree on the controller
+     */
+    @NonNull
+    public String getRepository() {
+        return repository;
+    }
+
+    /**
+     * @param includeTags whether to list tags
+     */
+    @DataBoundSetter
+    public void setIncludeTags(final boolean includeTags) {
+        this.includeTags = includeTags;
+    }
+
+    /**
+     * @return whether to list tags
+     */
+    public boolean isIncludeTags() {
+        return includeTags;
+    }
+
+    /**
+     * @param includeTags whether to list tags
+     * @return this instance
+     */
+    public GitRefChoiceProvider withIncludeTags(final boolean includeTags) {
+        setIncludeTags(includeTags);
+        return this;
+    }
+
+    /**
+     * @param includeBranches whether to list branches
+     */
+    @DataBoundSetter
+    public void setIncludeBranches(final boolean includeBranches) {
+        this.includeBranches = includeBranches;
+    }
+
+    /**
+     * @return whether to list branches
+     */
+    public boolean isIncludeBranches() {
+        return includeBranches;
+    }
+
+    /**
+     * @param includeBranches whether to list branches
+     * @return this instance
+     */
+    public GitRefChoiceProvider withIncludeBranches(final boolean includeBranches) {
+        setIncludeBranches(includeBranches);
+        return this;
+    }
+
+    @NonNull
+    private List<String> getPrefixes() {
+        final List<String> prefixes = new ArrayList<>();
+        if (includeBranches) {
+            prefixes.add(BRANCHES);
+        }
+        if (includeTags) {
+            prefixes.add(TAGS);
+        }
+        return prefixes;
+    }
+
+    @CheckForNull
+    private GitRefIndex getIndex() {
+        if (repository.isEmpty()) {
+            return null;
+        }
+        final Path path;
+        try {
+            path = ControllerPaths.resolve(repository);
+        } catch (final InvalidPathException e) {
+            LOGGER.log(Level.WARNING, String.format("Invalid path to a git repository: %s", repository), e);
+            return null;
+        }
+        if (path == null) {
+            LOGGER.warning(String.format("%s is not in allowed directories", repository));
+            return null;
+        }
+        return GitRefIndex.get(path);
+    }
+
+    /**
+     * Branches are listed before tags when both are included.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    @NonNull
+    public List<String> getChoices() {
+        final GitRefIndex index = getIndex();
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        try {
+            return index.getNames(getPrefixes());
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, String.format("Failed to read refs in %s", repository), e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(@NonNull final String value) {
+        final GitRefIndex index = getIndex();
+        if (index == null) {
+            return false;
+        }
+        try {
+            for (final String prefix : getPrefixes()) {
+                if (index.contains(prefix + value)) {
+                    return true;
+                }
+            }
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, String.format("Failed to read refs in %s", repository), e);
+        }
+        return false;
+    }
+
+    /**
+     * Descriptor for {@link GitRefChoiceProvider}.
+     */
+    @Extension
+    @Symbol("gitRefs")
+    public static class DescriptorImpl extends ChoiceProviderDescriptor {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return Messages.GitRefChoiceProvider_DisplayName();
+        }
+
+        /**
+         * @param item the job being configured
+         * @param value the path to the repository
+         * @return error if the path is not in allowed directories
+         */
+        @POST
+        @Restricted(NoExternalUse.class)
+        public FormValidation doCheckRepository(
+            @AncestorInPath final Item item,
+            @QueryParameter final String value
+        ) {
+            return ControllerPaths.check(item, value);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Holds names of refs in a local git repository, read from {@code packed-refs} and loose refs.
+ *
+ * Files are read again only when they changed:
+ * {@code packed-refs} is parsed again when its modification time or size changes,
+ * and a directory of loose refs is listed again when its modification time changes.
+ * Otherwise refreshing costs only one {@code stat} for each of {@code packed-refs} and directories.
+ *
+ * As file systems record modification times in coarse ticks,
+ * files modified just before they were read are read again next time
+ * not to miss changes made in the same tick.
+ */
+@Restricted(NoExternalUse.class)
+final class GitRefIndex {
+    private static final int CACHE_SIZE = 32;
+    private static final LruCache<Path, GitRefIndex> CACHE = new LruCache<>(CACHE_SIZE);
+
+    private static final String PACKED_REFS = "packed-refs";
+    private static final String REFS = "refs";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final long RACY_MILLIS = 2000;
+
+    @NonNull
+    private final Path gitDir;
+
+    @CheckForNull
+    private FileTime packedRefsTime;
+    private long packedRefsSize = -1;
+    @NonNull
+    private Set<String> packedRefs = Collections.emptySet();
+
+    /**
+     * Loose refs in each directory.
+     */
+    @NonNull
+    private Map<Path, LooseDirectory> looseDirectories = new HashMap<>();
+
+    /**
+     * All refs sorted. {@code null} when refs changed.
+     */
+    @CheckForNull
+    private NavigableSet<String> refs;
+
+    @NonNull
+    private final Map<List<String>, List<String>> snapshots = new HashMap<>();
+
+    /**
+     * ctor.
+     *
+     * @param gitDir the git directory, that is a bare repository or {@code .git} of a working tree
+     */
+    GitRefIndex(@NonNull final Path gitDir) {
+        this.gitDir = gitDir;
+    }
+
+    /**
+     * @param repository the path to a bare repository or a working tree
+     * @return the index shared for the repository
+     */
+    @NonNull
+    static GitRefIndex get(@NonNull final Path repository) {
+        final Path dotGit = repository.resolve(".git");
+        final Path gitDir = (Files.isDirectory(dotGit) ? dotGit : repository).toAbsolutePath().normalize();
+        return CACHE.computeIfAbsent(gitDir, GitRefIndex::new);
+    }
+
+    /**
+     * Returns names of refs starting with the prefixes, without the prefix.
+     * Names are sorted for each prefix, and listed in the order of prefixes.
+     *
+     * @param prefixes prefixes like {@code refs/tags/}
+     * @return names of refs. The same instance while refs are unchanged.
+     * @throws IOException failed to read refs
+     */
+    @NonNull
+    synchronized List<String> getNames(@NonNull final List<String> prefixes) throws IOException {
+        refresh();
+        final List<String> cached = snapshots.get(prefixes);
+        if (cached != null) {
+            return cached;
+        }
+        final List<String> names = new ArrayList<>();
+        for (final String prefix : prefixes) {
+            for (final String ref : getRefs().subSet(prefix, true, prefix + Character.MAX_VALUE, false)) {
+                names.add(ref.substring(prefix.length()));
+            }
+        }
+        final List<String> result = Collections.unmodifiableList(names);
+        snapshots.put(new ArrayList<>(prefixes), result);
+        return result;
+    }
+
+    /**
+     * @param ref the full name of a ref like {@code refs/tags/v1.0.0}
+     * @return whether the ref exists
+     * @throws IOException failed to read refs
+     */
+    synchronized boolean contains(@NonNull final String ref) throws IOException {
+        refresh();
+        return getRefs().contains(ref);
+    }
+
+    @NonNull
+    private NavigableSet<String> getRefs() {
+        NavigableSet<String> all = refs;
+        if (all == null) {
+            all = new TreeSet<>(packedRefs);
+            for (final LooseDirectory dir : looseDirectories.values()) {
+                all.addAll(dir.refs);
+            }
+            refs = all;
+        }
+        return all;
+    }
+
+    private void refresh() throws IOException {
+        boolean changed = refreshPackedRefs();
+        final Map<Path, LooseDirectory> newDirectories = new HashMap<>();
+        changed |= refreshLooseDirectory(gitDir.resolve(REFS), REFS + "/", newDirectories);
+        changed |= newDirectories.size() != looseDirectories.size();
+        looseDirectories = newDirectories;
+        if (changed) {
+            refs = null;
+            snapshots.clear();
+        }
+    }
+
+    private boolean refreshPackedRefs() throws IOException {
+        final Path file = gitDir.resolve(PACKED_REFS);
+        final BasicFileAttributes attrs = readAttributes(file);
+        if (attrs == null) {
+            if (packedRefsTime == null) {
+                return false;
+            }
+            packedRefsTime = null;
+            packedRefsSize = -1;
+            packedRefs = Collections.emptySet();
+            return true;
+        }
+        if (attrs.lastModifiedTime().equals(packedRefsTime) && attrs.size() == packedRefsSize) {
+            return false;
+        }
+        packedRefs = parsePackedRefs(file);
+        packedRefsTime = attrs.lastModifiedTime();
+        // never matches to read it again.
+        packedRefsSize = isRacy(packedRefsTime) ? -1 : attrs.size();
+        return true;
+    }
+
+    /**
+     * Parse {@code packed-refs}.
+     *
+     * Lines are {@code <object id> <ref name>}. Lines starting with {@code #} (headers)
+     * and {@code ^} (peeled objects of annotated tags) are skipped.
+     *
+     * @param file {@code packed-refs}
+     * @return names of refs
+     * @throws IOException failed to read the file
+     */
+    @NonNull
+    static Set<String> parsePackedRefs(@NonNull final Path file) throws IOException {
+        final Set<String> result = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#' || line.charAt(0) == '^') {
+                    continue;
+                }
+                final int pos = line.indexOf(' ');
+                if (pos >= 0 && line.startsWith(REFS + "/", pos + 1)) {
+                    result.add(line.substring(pos + 1));
+                }
+            }
+        } catch (final NoSuchFileException e) {
+            // removed just now.
+        }
+        return result;
+    }
+
+    private boolean refreshLooseDirectory(
+        @NonNull final Path dir,
+        @NonNull final String prefix,
+        @NonNull final Map<Path, LooseDirectory> newDirectories
+    ) throws IOException {
+        final BasicFileAttributes attrs = readAttributes(dir);
+        if (attrs == null || !attrs.isDirectory()) {
+            return false;
+        }
+        boolean changed = false;
+        LooseDirectory loose = looseDirectories.get(dir);
+        if (loose == null || !attrs.lastModifiedTime().equals(loose.modified)) {
+            loose = listLooseDirectory(dir, prefix, attrs.lastModifiedTime());
+            changed = true;
+        }
+        newDirectories.put(dir, loose);
+        for (final String sub : loose.subdirectories) {
+            changed |= refreshLooseDirectory(dir.resolve(sub), prefix + sub + "/", newDirectories);
+        }
+        return changed;
+    }
+
+    @NonNull
+    private static LooseDirectory listLooseDirectory(
+        @NonNull final Path dir,
+        @NonNull final String prefix,
+        @NonNull final FileTime modified
+    ) throws IOException {
+        final List<String> refs = new ArrayList<>();
+        final List<String> subdirectories = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (final Path entry : entries) {
+                final String name = entry.getFileName().toString();
+                if (Files.isDirectory(entry)) {
+                    subdirectories.add(name);
+                } else if (!name.endsWith(LOCK_SUFFIX)) {
+                    refs.add(prefix + name);
+                }
+            }
+        } catch (final NoSuchFileException e) {
+            // removed just now.
+        }
+        return new LooseDirectory(isRacy(modified) ? null : modified, refs, subdirectories);
+    }
+
+    /**
+     * @param modified the modification time of a file just read
+     * @return whether the file can be modified again without changing the modification time
+     */
+    private static boolean isRacy(@NonNull final FileTime modified) {
+        return modified.toMillis() > System.currentTimeMillis() - RACY_MILLIS;
+    }
+
+    @CheckForNull
+    private static BasicFileAttributes readAttributes(@NonNull final Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (final NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Loose refs in a directory.
+     */
+    private static final class LooseDirectory {
+        /**
+         * {@code null} to list again.
+         */
+        @CheckForNull
+        private final FileTime modified;
+        @NonNull
+        private final List<String> refs;
+        @NonNull
+        private final List<String> subdirectories;
+
+        LooseDirectory(
+            @CheckForNull final FileTime modified,
+            @NonNull final List<String> refs,
+            @NonNull final List<String> subdirectories
+        ) {
+            this.modified = modified;
+            this.refs = refs;
+            this.subdirectories = subdirectories;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.List;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+
+/**
+ * Provides full names of jobs as choices.
+ *
+ * Names are listed from {@link JobNameIndex}, without walking all items.
+ * Only jobs the requesting user can read are listed.
+ */
+public class JobNameChoiceProvider extends ChoiceProvider {
+    private static final long serialVersionUID = 2493470164213458713L;
+
+    @CheckForNull
+    private String folder;
+
+    @CheckForNull
+    private String type;
+
+    /**
+     * ctor.
+     */
+    @DataBoundConstructor
+    public JobNameChoiceProvider() {
+    }
+
+    /**
+     * @param folder the full name of the folder to list jobs in. Empty for all jobs.
+     */
+    @DataBoundSetter
+    public void setFolder(@CheckForNull final String folder) {
+        final String f = Util.fixEmptyAndTrim(folder);
+        this.folder = (f != null && f.endsWith("/")) ? f.substring(0, f.length() - 1) : f;
+    }
+
+    /**
+     * @return the full name of the folder to list jobs in. {@code null} for all jobs.
+     */
+    @CheckForNull
+    public String getFolder() {
+        return folder;
+    }
+
+    /**
+     * @param folder the full name of the folder to list jobs in
+     * @return this instance
+     */
+    public JobNameChoiceProvider withFolder(@CheckForNull final String folder) {
+        setFolder(folder);
+        return this;
+    }
+
+    /**
+     * @param type the class name of jobs to list (e.g. {@code WorkflowJob}). Empty for all types.
+     */
+    @DataBoundSetter
+    public void setType(@CheckForNull final String type) {
+        this.type = Util.fixEmptyAndTrim(type);
+    }
+
+    /**
+     * @return the class name of jobs to list. {@code null} for all types.
+     */
+    @CheckForNull
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @param type the class name of jobs to list
+     * @return this instance
+     */
+    public JobNameChoiceProvider withType(@CheckForNull final String type) {
+        setType(type);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @NonNull
+    public List<String> getChoices() {
+        return JobNameIndex.get().getJobNames(folder, type);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(@NonNull final String value) {
+        return JobNameIndex.get().contains(folder, type, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDependingOnAuthentication() {
+        return true;
+    }
+
+    /**
+     * Descriptor for {@link JobNameChoiceProvider}.
+     */
+    @Extension
+    @Symbol("jobNames")
+    public static class DescriptorImpl extends ChoiceProviderDescriptor {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return Messages.JobNameChoiceProvider_DisplayName();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.springframework.security.core.Authentication;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.listeners.ItemListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+
+/**
+ * Holds full names of all jobs sorted, for {@link JobNameChoiceProvider}.
+ *
+ * Built once when Jenkins loads jobs, and updated with {@link ItemListener} events,
+ * so listing jobs never walks all items.
+ * Jobs matching each filter are cached until jobs change,
+ * and only jobs the current user can read are picked from them for each request,
+ * so changes of permissions take effect immediately.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class JobNameIndex {
+    private static final int MAX_SNAPSHOTS = 256;
+
+    /**
+     * Jobs keyed by full names.
+     */
+    private final NavigableMap<String, Job<?, ?>> jobs = new ConcurrentSkipListMap<>();
+
+    /**
+     * Incremented every time jobs change.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    private final LruCache<Filter, Snapshot> snapshots = new LruCache<>(MAX_SNAPSHOTS);
+
+    /**
+     * @return the instance
+     */
+    @NonNull
+    public static JobNameIndex get() {
+        return ExtensionList.lookupSingleton(JobNameIndex.class);
+    }
+
+    /**
+     * @param folder the full name of the folder to list jobs in. {@code null} for all jobs.
+     * @param type the name of the type of jobs. {@code null} for all types.
+     * @return full names of jobs the current user can read.
+     *     The same instance while jobs are unchanged if the user can read all of them.
+     */
+    @NonNull
+    public List<String> getJobNames(@CheckForNull final String folder, @CheckForNull final String type) {
+        final Snapshot snapshot = getSnapshot(new Filter(folder, type));
+        final Authentication auth = Jenkins.getAuthentication2();
+        List<String> readable = null;
+        for (int i = 0; i < snapshot.jobs.size(); ++i) {
+            final boolean canRead = snapshot.jobs.get(i).hasPermission2(auth, Item.READ);
+            if (readable == null && !canRead) {
+                readable = new ArrayList<>(snapshot.names.subList(0, i));
+            } else if (readable != null && canRead) {
+                readable.add(snapshot.names.get(i));
+            }
+        }
+        return (readable != null) ? Collections.unmodifiableList(readable) : snapshot.names;
+    }
+
+    /**
+     * @param filter the filter
+     * @return jobs matching the filter regardless of permissions
+     */
+    @NonNull
+    private Snapshot getSnapshot(@NonNull final Filter filter) {
+        final long current = version.get();
+        final Snapshot snapshot = snapshots.get(filter);
+        if (snapshot != null && snapshot.version == current) {
+            return snapshot;
+        }
+        final List<String> names = new ArrayList<>();
+        final List<Job<?, ?>> matched = new ArrayList<>();
+        for (final Map.Entry<String, Job<?, ?>> e : filter.range(jobs).entrySet()) {
+            if (filter.matchesType(e.getValue().getClass())) {
+                names.add(e.getKey());
+                matched.add(e.getValue());
+            }
+        }
+        final Snapshot created = new Snapshot(current, Collections.unmodifiableList(names), matched);
+        snapshots.put(filter, created);
+        return created;
+    }
+
+    /**
+     * @param folder the full name of the folder to list jobs in. {@code null} for all jobs.
+     * @param type the name of the type of jobs. {@code null} for all types.
+     * @param name the full name of the job
+     * @return whether the job exists, matches the filter and the current user can read it
+     */
+    public boolean contains(
+        @CheckForNull final String folder,
+        @CheckForNull final String type,
+        @NonNull final String name
+    ) {
+        final Filter filter = new Filter(folder, type);
+        final Job<?, ?> job = jobs.get(name);
+        return job != null
+            && filter.isInFolder(name)
+            && filter.matchesType(job.getClass())
+            && job.hasPermission2(Jenkins.getAuthentication2(), Item.READ);
+    }
+
+    private void add(@NonNull final Item item) {
+        if (item instanceof Job) {
+            jobs.put(item.getFullName(), (Job<?, ?>) item);
+            version.incrementAndGet();
+        }
+    }
+
+    private void remove(@NonNull final String fullName) {
+        jobs.remove(fullName);
+        // items in the folder
+        jobs.subMap(fullName + "/", true, fullName + "/\uffff", true).clear();
+        version.incrementAndGet();
+    }
+
+    private void rebuild() {
+        jobs.clear();
+        try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+            for (final Job<?, ?> job : Jenkins.get().allItems(Job.class)) {
+                jobs.put(job.getFullName(), job);
+            }
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * Filter of jobs.
+     */
+    private static final class Filter {
+        @CheckForNull
+        private final String folder;
+        @CheckForNull
+        private final String type;
+
+        Filter(@CheckForNull final String folder, @CheckForNull final String type) {
+            this.folder = folder;
+            this.type = type;
+        }
+
+        @NonNull
+        NavigableMap<String, Job<?, ?>> range(@NonNull final NavigableMap<String, Job<?, ?>> jobs) {
+            if (folder == null) {
+                return jobs;
+            }
+            return jobs.subMap(folder + "/", true, folder + "/\uffff", true);
+        }
+
+        boolean isInFolder(@NonNull final String name) {
+            return folder == null || name.startsWith(folder + "/");
+        }
+
+        boolean matchesType(@NonNull final Class<?> clazz) {
+            if (type == null) {
+                return true;
+            }
+            for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+                if (type.equals(c.getSimpleName()) || type.equals(c.getName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Filter)) {
+                return false;
+            }
+            final Filter other = (Filter) o;
+            return Objects.equals(folder, other.folder) && Objects.equals(type, other.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(folder, type);
+        }
+    }
+
+    /**
+     * Jobs matching a filter, regardless of permissions.
+     */
+    private static final class Snapshot {
+        private final long version;
+        @NonNull
+        private final List<String> names;
+
+        /**
+         * {@code jobs.get(i)} is the job of {@code names.get(i)}.
+         */
+        @NonNull
+        private final List<Job<?, ?>> jobs;
+
+        Snapshot(final long version, @NonNull final List<String> names, @NonNull final List<Job<?, ?>> jobs) {
+            this.version = version;
+            this.names = names;
+            this.jobs = jobs;
+        }
+    }
+
+    /**
+     * Updates {@link JobNameIndex} with events of items.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLoaded() {
+            get().rebuild();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onCreated(final Item item) {
+            get().add(item);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onCopied(final Item src, final Item item) {
+            get().add(item);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onDeleted(final Item item) {
+            get().remove(item.getFullName());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLocationChanged(final Item item, final String oldFullName, final String newFullName) {
+            // also called for each item in moved folders.
+            final JobNameIndex index = get();
+            index.jobs.remove(oldFullName);
+            index.add(item);
+        }
+    }
+}
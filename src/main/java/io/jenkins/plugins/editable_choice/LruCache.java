@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * LruCache is a thread safe map bounded in size, evicting the least recently used entry.
+ *
+ * It can be also bounded in the total weight of values, like the total length of cached lists.
+ * Hits, misses and evictions are counted.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+@Restricted(NoExternalUse.class)
+public final class LruCache<K, V> {
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int INITIAL_CAPACITY = 16;
+
+    @NonNull
+    private final Map<K, V> map;
+
+    private final int maxSize;
+
+    private final long maxWeight;
+
+    @CheckForNull
+    private final ToLongFunction<? super V> weigher;
+
+    // guarded by map
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * ctor.
+     *
+     * @param maxSize the maximum number of entries
+     */
+    public LruCache(final int maxSize) {
+        this(maxSize, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * ctor.
+     *
+     * @param maxSize the maximum number of entries
+     * @param maxWeight the maximum total weight of values
+     * @param weigher computes the weight of a value. {@code null} not to bound weights.
+     */
+    public LruCache(final int maxSize, final long maxWeight, @CheckForNull final ToLongFunction<? super V> weigher) {
+        this.map = new LinkedHashMap<>(Math.min(maxSize, INITIAL_CAPACITY), LOAD_FACTOR, true);
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    private long weigh(@CheckForNull final V value) {
+        return (weigher != null && value != null) ? weigher.applyAsLong(value) : 0;
+    }
+
+    /**
+     * @param key the key
+     * @return the cached value. {@code null} if not cached.
+     */
+    @CheckForNull
+    public V get(@NonNull final K key) {
+        synchronized (map) {
+            final V value = map.get(key);
+            if (value != null) {
+                ++hits;
+            } else {
+                ++misses;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * @param key the key
+     * @param value the value to cache
+     */
+    public void put(@NonNull final K key, @NonNull final V value) {
+        synchronized (map) {
+            weight += weigh(value) - weigh(map.put(key, value));
+            final Iterator<V> eldest = map.values().iterator();
+            // never evicts the entry just put.
+            while ((map.size() > maxSize || weight > maxWeight) && map.size() > 1) {
+                weight -= weigh(eldest.next());
+                eldest.remove();
+                ++evictions;
+            }
+        }
+    }
+
+    /**
+     * Returns the cached value, or computes and caches it.
+     *
+     * The value is computed out of the lock not to block other threads,
+     * so it can be computed more than once in races.
+     *
+     * @param key the key
+     * @param loader computes the value
+     * @return the value
+     */
+    @NonNull
+    public V computeIfAbsent(@NonNull final K key, @NonNull final Function<? super K, ? extends V> loader) {
+        final V cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final V value = loader.apply(key);
+        put(key, value);
+        return value;
+    }
+
+    /**
+     * @param key the key to remove
+     */
+    public void remove(@NonNull final K key) {
+        synchronized (map) {
+            weight -= weigh(map.remove(key));
+        }
+    }
+
+    /**
+     * @param filter tests keys to remove
+     */
+    public void removeIf(@NonNull final Predicate<? super K> filter) {
+        synchronized (map) {
+            final Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<K, V> e = it.next();
+                if (filter.test(e.getKey())) {
+                    weight -= weigh(e.getValue());
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    /**
+     * @return the total weight of cached values
+     */
+    public long getWeight() {
+        synchronized (map) {
+            return weight;
+        }
+    }
+
+    /**
+     * @return the number of lookups finding values
+     */
+    public long getHitCount() {
+        synchronized (map) {
+            return hits;
+        }
+    }
+
+    /**
+     * @return the number of lookups not finding values
+     */
+    public long getMissCount() {
+        synchronized (map) {
+            return misses;
+        }
+    }
+
+    /**
+     * @return the number of entries evicted to bound the size or the weight
+     */
+    public long getEvictionCount() {
+        synchronized (map) {
+            return evictions;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.verb.POST;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Item;
+import hudson.util.FormValidation;
+
+/**
+ * Provides versions of an artifact in a maven repository on the controller, newest first.
+ *
+ * Versions are read from {@code maven-metadata.xml} and cached until it changes.
+ * See {@link MavenMetadataIndex}.
+ * The repository must be in directories allowed by the administrator. See {@link ControllerPaths}.
+ */
+public class MavenMetadataChoiceProvider extends ChoiceProvider {
+    private static final long serialVersionUID = -6203179541887531062L;
+    private static final Logger LOGGER = Logger.getLogger(MavenMetadataChoiceProvider.class.getName());
+
+    @NonNull
+    private final String repository;
+
+    @NonNull
+    private final String groupId;
+
+    @NonNull
+    private final String artifactId;
+
+    private boolean excludeSnapshots;
+
+    /**
+     * ctor.
+     *
+     * @param repository the path to the root directory of a maven repository on the controller
+     * @param groupId the group id of the artifact
+     * @param artifactId the artifact id
+     */
+    @DataBoundConstructor
+    public MavenMetadataChoiceProvider(
+        @NonNull final String repository,
+        @NonNull final String groupId,
+        @NonNull final String artifactId
+    ) {
+        this.repository = Util.fixNull(repository).trim();
+        this.groupId = Util.fixNull(groupId).trim();
+        this.artifactId = Util.fixNull(artifactId).trim();
+    }
+
+    /**
+     * @return the path to the root directory of a maven repository on the controller
+     */
+    @NonNull
+    public String getRepository() {
+        return repository;
+    }
+
+    /**
+     * @return the group id of the artifact
+     */
+    @NonNull
+    public String getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * @return the artifact id
+     */
+    @NonNull
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    /**
+     * @param excludeSnapshots whether to exclude versions ending with {@code -SNAPSHOT}
+     */
+    @DataBoundSetter
+    public void setExcludeSnapshots(final boolean excludeSnapshots) {
+        this.excludeSnapshots = excludeSnapshots;
+    }
+
+    /**
+     * @return whether to exclude versions ending with {@code -SNAPSHOT}
+     */
+    public boolean isExcludeSnapshots() {
+        return excludeSnapshots;
+    }
+
+    /**
+     * @param excludeSnapshots whether to exclude versions ending with {@code -SNAPSHOT}
+     * @return this instance
+     */
+    public MavenMetadataChoiceProvider withExcludeSnapshots(final boolean excludeSnapshots) {
+        setExcludeSnapshots(excludeSnapshots);
+        return this;
+    }
+
+    @CheckForNull
+    private MavenMetadataIndex getIndex() {
+        if (repository.isEmpty() || groupId.isEmpty() || artifactId.isEmpty()) {
+            return null;
+        }
+        final Path root;
+        try {
+            root = ControllerPaths.resolve(repository);
+        } catch (final InvalidPathException e) {
+            LOGGER.log(Level.WARNING, String.format("Invalid path to a maven repository: %s", repository), e);
+            return null;
+        }
+        if (root == null) {
+            LOGGER.warning(String.format("%s is not in allowed directories", repository));
+            return null;
+        }
+        final MavenMetadataIndex index;
+        try {
+            index = MavenMetadataIndex.get(root, groupId, artifactId);
+        } catch (final InvalidPathException e) {
+            LOGGER.log(Level.WARNING, String.format("Invalid artifact %s:%s", groupId, artifactId), e);
+            return null;
+        }
+        if (index == null) {
+            LOGGER.warning(String.format("%s:%s is out of %s", groupId, artifactId, repository));
+        }
+        return index;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @NonNull
+    public List<String> getChoices() {
+        final MavenMetadataIndex index = getIndex();
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        try {
+            return index.getVersions(excludeSnapshots);
+        } catch (final IOException e) {
+            LOGGER.log(
+                Level.WARNING,
+                String.format("Failed to read versions of %s:%s in %s", groupId, artifactId, repository),
+                e
+            );
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Descriptor for {@link MavenMetadataChoiceProvider}.
+     */
+    @Extension
+    @Symbol("mavenVersions")
+    public static class DescriptorImpl extends ChoiceProviderDescriptor {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return Messages.MavenMetadataChoiceProvider_DisplayName();
+        }
+
+        /**
+         * @param item the job being configured
+         * @param value the path to the repository
+         * @return error if the path is not in allowed directories
+         */
+        @POST
+        @Restricted(NoExternalUse.class)
+        public FormValidation doCheckRepository(
+            @AncestorInPath final Item item,
+            @QueryParameter final String value
+        ) {
+            return ControllerPaths.check(item, value);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Holds versions listed in a {@code maven-metadata.xml}, newest first.
+ *
+ * The file is parsed again only when its modification time or size changes.
+ * Indices are shared for each file, so parameters referring the same artifact parse it only once.
+ */
+@Restricted(NoExternalUse.class)
+final class MavenMetadataIndex {
+    private static final int CACHE_SIZE = 64;
+    private static final LruCache<Path, MavenMetadataIndex> CACHE = new LruCache<>(CACHE_SIZE);
+
+    private static final String METADATA = "maven-metadata.xml";
+    private static final String SNAPSHOT_SUFFIX = "-SNAPSHOT";
+    private static final List<String> VERSION_PATH = Arrays.asList("metadata", "versioning", "versions", "version");
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    @NonNull
+    private final Path file;
+
+    @CheckForNull
+    private FileTime modified;
+    private long size = -1;
+
+    @NonNull
+    private List<String> versions = Collections.emptyList();
+    @NonNull
+    private List<String> releases = Collections.emptyList();
+
+    /**
+     * ctor.
+     *
+     * @param file {@code maven-metadata.xml}
+     */
+    MavenMetadataIndex(@NonNull final Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @param repository the root directory of a maven repository
+     * @param groupId the group id like {@code org.jenkins-ci.plugins}
+     * @param artifactId the artifact id
+     * @return the index shared for the artifact. {@code null} if the path escapes from the repository.
+     */
+    @CheckForNull
+    static MavenMetadataIndex get(
+        @NonNull final Path repository,
+        @NonNull final String groupId,
+        @NonNull final String artifactId
+    ) {
+        final Path metadata = repository.resolve(groupId.replace('.', '/')).resolve(artifactId).resolve(METADATA);
+        if (!ControllerPaths.isIn(metadata, repository)) {
+            return null;
+        }
+        return CACHE.computeIfAbsent(ControllerPaths.toRealPath(metadata), MavenMetadataIndex::new);
+    }
+
+    @NonNull
+    private static XMLInputFactory createFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        // metadata never needs DTDs. Disable them not to resolve external entities.
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * @param excludeSnapshots whether to exclude versions ending with {@code -SNAPSHOT}
+     * @return versions newest first. The same instance while the file is unchanged.
+     * @throws IOException failed to read the file
+     */
+    @NonNull
+    synchronized List<String> getVersions(final boolean excludeSnapshots) throws IOException {
+        refresh();
+        return excludeSnapshots ? releases : versions;
+    }
+
+    private void refresh() throws IOException {
+        final BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (final NoSuchFileException e) {
+            modified = null;
+            size = -1;
+            versions = Collections.emptyList();
+            releases = Collections.emptyList();
+            return;
+        }
+        if (attrs.lastModifiedTime().equals(modified) && attrs.size() == size) {
+            return;
+        }
+        final String[] parsed;
+        try (InputStream in = Files.newInputStream(file)) {
+            parsed = parse(in).toArray(new String[0]);
+        }
+        final String[] sorted = SortMode.apply(parsed, SortMode.NATURAL_DESCENDING.sort(parsed));
+        final List<String> newReleases = new ArrayList<>();
+        for (final String version : sorted) {
+            if (!version.endsWith(SNAPSHOT_SUFFIX)) {
+                newReleases.add(version);
+            }
+        }
+        versions = Collections.unmodifiableList(Arrays.asList(sorted));
+        releases = Collections.unmodifiableList(newReleases);
+        modified = attrs.lastModifiedTime();
+        size = attrs.size();
+    }
+
+    /**
+     * Read {@code /metadata/versioning/versions/version} with a streaming parser.
+     *
+     * @param in the content of {@code maven-metadata.xml}
+     * @return versions in the order in the file, without duplicates
+     * @throws IOException failed to read or parse the content
+     */
+    @NonNull
+    static Set<String> parse(@NonNull final InputStream in) throws IOException {
+        final Set<String> result = new LinkedHashSet<>();
+        try {
+            final XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+            try {
+                // elements from the root
+                final List<String> path = new ArrayList<>();
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        path.add(reader.getLocalName());
+                        if (VERSION_PATH.equals(path)) {
+                            final String version = reader.getElementText().trim();
+                            if (!version.isEmpty()) {
+                                result.add(version);
+                            }
+                            // getElementText() consumes the end element.
+                            path.remove(path.size() - 1);
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        path.remove(path.size() - 1);
+                        break;
+                    default:
+                        break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException e) {
+            throw new IOException(e);
+        }
+        return result;
+    }
+}
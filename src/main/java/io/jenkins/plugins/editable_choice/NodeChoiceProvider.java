@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.List;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+
+/**
+ * Provides names of nodes and labels as choices.
+ *
+ * Names are listed from {@link NodeIndex}, without walking all nodes.
+ */
+public class NodeChoiceProvider extends ChoiceProvider {
+    private static final long serialVersionUID = -3108735316958720941L;
+
+    private boolean includeNodes = true;
+
+    private boolean includeLabels;
+
+    private boolean onlineOnly;
+
+    /**
+     * ctor.
+     */
+    @DataBoundConstructor
+    public NodeChoiceProvider() {
+    }
+
+    /**
+     * @param includeNodes whether to list names of nodes
+     */
+    @DataBoundSetter
+    public void setIncludeNodes(final boolean includeNodes) {
+        this.includeNodes = includeNodes;
+    }
+
+    /**
+     * @return whether to list names of nodes
+     */
+    public boolean isIncludeNodes() {
+        return includeNodes;
+    }
+
+    /**
+     * @param includeNodes whether to list names of nodes
+     * @return this instance
+     */
+    public NodeChoiceProvider withIncludeNodes(final boolean includeNodes) {
+        setIncludeNodes(includeNodes);
+        return this;
+    }
+
+    /**
+     * @param includeLabels whether to list labels
+     */
+    @DataBoundSetter
+    public void setIncludeLabels(final boolean includeLabels) {
+        this.includeLabels = includeLabels;
+    }
+
+    /**
+     * @return whether to list labels
+     */
+    public boolean isIncludeLabels() {
+        return includeLabels;
+    }
+
+    /**
+     * @param includeLabels whether to list labels
+     * @return this instance
+     */
+    public NodeChoiceProvider withIncludeLabels(final boolean includeLabels) {
+        setIncludeLabels(includeLabels);
+        return this;
+    }
+
+    /**
+     * @param onlineOnly whether to list only online nodes
+     */
+    @DataBoundSetter
+    public void setOnlineOnly(final boolean onlineOnly) {
+        this.onlineOnly = onlineOnly;
+    }
+
+    /**
+     * @return whether to list only online nodes
+     */
+    public boolean isOnlineOnly() {
+        return onlineOnly;
+    }
+
+    /**
+     * @param onlineOnly whether to list only online nodes
+     * @return this instance
+     */
+    public NodeChoiceProvider withOnlineOnly(final boolean onlineOnly) {
+        setOnlineOnly(onlineOnly);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @NonNull
+    public List<String> getChoices() {
+        return NodeIndex.get().getChoices(includeNodes, includeLabels, onlineOnly);
+    }
+
+    /**
+     * Also accepts label expressions like {@code linux && docker} when labels are included.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(@NonNull final String value) {
+        final NodeIndex index = NodeIndex.get();
+        return (includeNodes && index.containsNode(value, onlineOnly))
+            || (includeLabels && index.isValidLabelExpression(value));
+    }
+
+    /**
+     * Descriptor for {@link NodeChoiceProvider}.
+     */
+    @Extension
+    @Symbol("nodes")
+    public static class DescriptorImpl extends ChoiceProviderDescriptor {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getDisplayName() {
+            return Messages.NodeChoiceProvider_DisplayName();
+        }
+    }
+}
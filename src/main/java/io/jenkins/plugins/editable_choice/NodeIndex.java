@@ -0,0 +1,393 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.model.labels.LabelAtom;
+import hudson.slaves.ComputerListener;
+import hudson.slaves.OfflineCause;
+import jenkins.model.Jenkins;
+import jenkins.model.NodeListener;
+
+/**
+ * Holds names of nodes and labels sorted, for {@link NodeChoiceProvider}.
+ *
+ * Built once when Jenkins starts, and updated with {@link NodeListener} and {@link ComputerListener} events
+ * only for the affected node, so listing nodes never walks all nodes.
+ * Lists for each filter are cached until nodes change.
+ * Updates never remove entries of nodes and labels still existing even temporarily,
+ * so readers never miss them without locks.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class NodeIndex {
+    /**
+     * Replaced at once when rebuilt, and updated in place for each node.
+     */
+    @NonNull
+    private volatile State state = new State();
+
+    /**
+     * Incremented every time nodes change.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    private final Map<Filter, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * @return the instance
+     */
+    @NonNull
+    public static NodeIndex get() {
+        return ExtensionList.lookupSingleton(NodeIndex.class);
+    }
+
+    /**
+     * Build the index when Jenkins starts.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void init() {
+        get().rebuild();
+    }
+
+    /**
+     * @param includeNodes whether to list nodes
+     * @param includeLabels whether to list labels
+     * @param onlineOnly whether to list only online nodes
+     * @return names of nodes followed by labels, the same instance while nodes are unchanged
+     */
+    @NonNull
+    public List<String> getChoices(final boolean includeNodes, final boolean includeLabels, final boolean onlineOnly) {
+        final Filter filter = new Filter(includeNodes, includeLabels, onlineOnly);
+        final long currentVersion = version.get();
+        final Snapshot snapshot = snapshots.get(filter);
+        if (snapshot != null && snapshot.version == currentVersion) {
+            return snapshot.choices;
+        }
+        final State current = state;
+        final Set<String> choices = new LinkedHashSet<>();
+        if (includeNodes) {
+            choices.addAll(onlineOnly ? current.onlineNodes : current.nodes);
+        }
+        if (includeLabels) {
+            choices.addAll(current.labels.keySet());
+        }
+        final List<String> result = Collections.unmodifiableList(new ArrayList<>(choices));
+        snapshots.put(filter, new Snapshot(currentVersion, result));
+        return result;
+    }
+
+    /**
+     * @param name the name of a node
+     * @param onlineOnly whether to test only online nodes
+     * @return whether the node exists
+     */
+    public boolean containsNode(@NonNull final String name, final boolean onlineOnly) {
+        final State current = state;
+        return (onlineOnly ? current.onlineNodes : current.nodes).contains(name);
+    }
+
+    /**
+     * @param expression a label expression like {@code linux && docker}
+     * @return whether the expression is valid and consists of labels of existing nodes
+     */
+    public boolean isValidLabelExpression(@NonNull final String expression) {
+        final State current = state;
+        if (current.labels.containsKey(expression)) {
+            return true;
+        }
+        final Set<LabelAtom> atoms;
+        try {
+            atoms = Label.parseExpression(expression).listAtoms();
+        } catch (final IllegalArgumentException e) {
+            return false;
+        }
+        if (atoms.isEmpty()) {
+            return false;
+        }
+        for (final LabelAtom atom : atoms) {
+            if (!current.labels.containsKey(atom.getName()) && !current.nodes.contains(atom.getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NonNull
+    private static String getName(@NonNull final Node node) {
+        // the built-in node has an empty node name.
+        return node.getSelfLabel().getName();
+    }
+
+    private synchronized void put(@NonNull final Node node) {
+        state.put(node);
+        version.incrementAndGet();
+    }
+
+    private synchronized void update(@NonNull final Node oldOne, @NonNull final Node newOne) {
+        final State current = state;
+        // add the new one first not to miss labels kept.
+        current.put(newOne);
+        if (!getName(oldOne).equals(getName(newOne))) {
+            current.remove(getName(oldOne));
+        }
+        version.incrementAndGet();
+    }
+
+    private synchronized void remove(@NonNull final Node node) {
+        state.remove(getName(node));
+        version.incrementAndGet();
+    }
+
+    private synchronized void setOnline(@NonNull final Computer computer, final boolean online) {
+        final Node node = computer.getNode();
+        if (node == null) {
+            return;
+        }
+        final State current = state;
+        final String name = getName(node);
+        if (online && current.nodes.contains(name)) {
+            current.onlineNodes.add(name);
+        } else {
+            current.onlineNodes.remove(name);
+        }
+        version.incrementAndGet();
+    }
+
+    private synchronized void rebuild() {
+        final State rebuilt = new State();
+        final Jenkins jenkins = Jenkins.get();
+        rebuilt.put(jenkins);
+        for (final Node node : jenkins.getNodes()) {
+            rebuilt.put(node);
+        }
+        state = rebuilt;
+        version.incrementAndGet();
+    }
+
+    /**
+     * Nodes and labels. Updated in {@link NodeIndex} synchronized.
+     */
+    private static final class State {
+        private final NavigableSet<String> nodes = new ConcurrentSkipListSet<>();
+        private final NavigableSet<String> onlineNodes = new ConcurrentSkipListSet<>();
+
+        /**
+         * Labels with the number of nodes having them.
+         */
+        private final NavigableMap<String, Integer> labels = new ConcurrentSkipListMap<>();
+
+        /**
+         * Labels of each node.
+         */
+        private final Map<String, Set<String>> labelsByNode = new HashMap<>();
+
+        void put(@NonNull final Node node) {
+            final String name = getName(node);
+            final Set<String> nodeLabels = new HashSet<>();
+            for (final LabelAtom atom : Label.parse(node.getLabelString())) {
+                nodeLabels.add(atom.getName());
+            }
+            // count new labels before discounting old ones not to drop labels kept.
+            for (final String label : nodeLabels) {
+                labels.merge(label, 1, Integer::sum);
+            }
+            removeLabels(name);
+            labelsByNode.put(name, nodeLabels);
+            nodes.add(name);
+            final Computer computer = node.toComputer();
+            if (computer != null && computer.isOnline() && !computer.isTemporarilyOffline()) {
+                onlineNodes.add(name);
+            } else {
+                onlineNodes.remove(name);
+            }
+        }
+
+        void remove(@NonNull final String name) {
+            removeLabels(name);
+            labelsByNode.remove(name);
+            nodes.remove(name);
+            onlineNodes.remove(name);
+        }
+
+        private void removeLabels(@NonNull final String name) {
+            final Set<String> old = labelsByNode.get(name);
+            if (old == null) {
+                return;
+            }
+            for (final String label : old) {
+                labels.computeIfPresent(label, (k, count) -> (count > 1) ? count - 1 : null);
+            }
+        }
+    }
+
+    /**
+     * Filter of nodes and labels.
+     */
+    private static final class Filter {
+        private final boolean includeNodes;
+        private final boolean includeLabels;
+        private final boolean onlineOnly;
+
+        Filter(final boolean includeNodes, final boolean includeLabels, final boolean onlineOnly) {
+            this.includeNodes = includeNodes;
+            this.includeLabels = includeLabels;
+            this.onlineOnly = onlineOnly;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Filter)) {
+                return false;
+            }
+            final Filter other = (Filter) o;
+            return includeNodes == other.includeNodes
+                && includeLabels == other.includeLabels
+                && onlineOnly == other.onlineOnly;
+        }
+
+        @Override
+        public int hashCode() {
+            return (includeNodes ? 1 : 0) | (includeLabels ? 2 : 0) | (onlineOnly ? 4 : 0);
+        }
+    }
+
+    /**
+     * Choices listed for a filter.
+     */
+    private static final class Snapshot {
+        private final long version;
+        @NonNull
+        private final List<String> choices;
+
+        Snapshot(final long version, @NonNull final List<String> choices) {
+            this.version = version;
+            this.choices = choices;
+        }
+    }
+
+    /**
+     * Updates {@link NodeIndex} when nodes are added, updated or removed.
+     */
+    @Extension
+    public static class NodeListenerImpl extends NodeListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void onCreated(final Node node) {
+            get().put(node);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void onUpdated(final Node oldOne, final Node newOne) {
+            get().update(oldOne, newOne);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void onDeleted(final Node node) {
+            get().remove(node);
+        }
+    }
+
+    /**
+     * Updates {@link NodeIndex} when nodes get online or offline.
+     */
+    @Extension
+    public static class ComputerListenerImpl extends ComputerListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onOnline(final Computer c, final TaskListener listener) {
+            get().setOnline(c, true);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onOffline(final Computer c, final OfflineCause cause) {
+            get().setOnline(c, false);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onTemporarilyOnline(final Computer c) {
+            get().setOnline(c, c.isOnline());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onTemporarilyOffline(final Computer c, final OfflineCause cause) {
+            get().setOnline(c, false);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onConfigurationChange() {
+            // e.g. labels of the built-in node are changed.
+            // other nodes are updated with NodeListener.
+            get().put(Jenkins.get());
+        }
+    }
+}
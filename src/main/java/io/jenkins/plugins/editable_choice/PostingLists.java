@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.Arrays;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * PostingLists maps int keys to sorted positions of choices.
+ *
+ * All lists are stored in flat arrays,
+ * which is much smaller and faster to build than maps of boxed values.
+ * Instances are immutable.
+ */
+final class PostingLists {
+    /**
+     * Keys, sorted.
+     */
+    @NonNull
+    private final int[] keys;
+
+    /**
+     * The posting list of {@code keys[i]} is {@code ids[offsets[i]]} to {@code ids[offsets[i + 1] - 1]}.
+     */
+    @NonNull
+    private final int[] offsets;
+
+    @NonNull
+    private final int[] ids;
+
+    /**
+     * ctor.
+     *
+     * @param pairs pairs of a key and a position packed with {@link #pack(int, int)}.
+     *              Sorted in place.
+     * @param count the number of pairs in {@code pairs}
+     */
+    PostingLists(@NonNull final long[] pairs, final int count) {
+        Arrays.sort(pairs, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; ++i) {
+            if (i == 0 || keyOf(pairs[i]) != keyOf(pairs[i - 1])) {
+                ++distinct;
+            }
+        }
+        this.keys = new int[distinct];
+        this.offsets = new int[distinct + 1];
+        this.ids = new int[count];
+        int slot = -1;
+        for (int i = 0; i < count; ++i) {
+            final int key = keyOf(pairs[i]);
+            if (slot < 0 || keys[slot] != key) {
+                ++slot;
+                keys[slot] = key;
+                offsets[slot] = i;
+            }
+            ids[i] = (int) pairs[i];
+        }
+        offsets[distinct] = count;
+    }
+
+    /**
+     * @param key the key
+     * @param position the position of a choice
+     * @return the pair packed into a long, sorted by the key and then by the position
+     */
+    static long pack(final int key, final int position) {
+        return ((long) key << Integer.SIZE) | position;
+    }
+
+    private static int keyOf(final long pair) {
+        return (int) (pair >>> Integer.SIZE);
+    }
+
+    /**
+     * @param key the key
+     * @return the slot of the key. Negative if not found.
+     */
+    int find(final int key) {
+        return Arrays.binarySearch(keys, key);
+    }
+
+    /**
+     * @param slot the slot
+     * @return the start of the posting list in {@link #id(int)}
+     */
+    int start(final int slot) {
+        return offsets[slot];
+    }
+
+    /**
+     * @param slot the slot
+     * @return the end (exclusive) of the posting list in {@link #id(int)}
+     */
+    int end(final int slot) {
+        return offsets[slot + 1];
+    }
+
+    /**
+     * @param p the index between {@link #start(int)} and {@link #end(int)}
+     * @return the position of the choice
+     */
+    int id(final int p) {
+        return ids[p];
+    }
+}
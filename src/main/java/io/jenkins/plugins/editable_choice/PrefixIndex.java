@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * PrefixIndex finds choices starting with a string with binary searches
+ * over choices sorted in lexicographic order.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+@Restricted(NoExternalUse.class)
+public final class PrefixIndex {
+    private final boolean caseInsensitive;
+
+    /**
+     * Choices sorted, lower-cased when case insensitive.
+     */
+    @NonNull
+    private final String[] keys;
+
+    /**
+     * {@code positions[i]} is the position of the choice of {@code keys[i]}.
+     */
+    @NonNull
+    private final int[] positions;
+
+    /**
+     * ctor.
+     *
+     * @param index the index of choices
+     * @param caseInsensitive whether to match in case insensitive
+     */
+    public PrefixIndex(@NonNull final ChoiceIndex index, final boolean caseInsensitive) {
+        this.caseInsensitive = caseInsensitive;
+        final String[] normalized = new String[index.size()];
+        final Integer[] order = new Integer[normalized.length];
+        for (int i = 0; i < normalized.length; ++i) {
+            normalized[i] = normalize(index.getLabel(i));
+            order[i] = i;
+        }
+        // stable, so positions of the same keys are kept in ascending order.
+        Arrays.sort(order, (a, b) -> normalized[a].compareTo(normalized[b]));
+        this.keys = new String[normalized.length];
+        this.positions = new int[normalized.length];
+        for (int i = 0; i < order.length; ++i) {
+            keys[i] = normalized[order[i]];
+            positions[i] = order[i];
+        }
+    }
+
+    @NonNull
+    private String normalize(@NonNull final String value) {
+        return caseInsensitive ? value.toLowerCase(Locale.ROOT) : value;
+    }
+
+    /**
+     * @param prefix the prefix
+     * @return positions of choices starting with the prefix, sorted
+     */
+    @NonNull
+    public int[] find(@NonNull final String prefix) {
+        final String key = normalize(prefix);
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int end = low;
+        while (end < keys.length && keys[end].startsWith(key)) {
+            ++end;
+        }
+        final int[] result = Arrays.copyOfRange(positions, low, end);
+        Arrays.sort(result);
+        return result;
+    }
+}
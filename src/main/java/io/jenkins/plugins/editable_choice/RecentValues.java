@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * RecentValues holds values of a parameter used in recent builds, the most recent first.
+ *
+ * Values are distinct, and the number of values is bounded with {@link #MAX_VALUES},
+ * so looking up values used in past builds doesn't require loading builds.
+ *
+ * Not thread safe. {@link UsageStatisticsStore} guards accesses.
+ */
+@Restricted(NoExternalUse.class)
+public final class RecentValues {
+    /**
+     * The maximum number of values to hold.
+     */
+    static final int MAX_VALUES = 50;
+
+    @NonNull
+    private List<String> values = new ArrayList<>();
+
+    private Object readResolve() {
+        if (values == null) {
+            values = new ArrayList<>();
+        }
+        return this;
+    }
+
+    /**
+     * Record that the value is used.
+     *
+     * @param value the used value
+     */
+    public void record(@NonNull final String value) {
+        values.remove(value);
+        values.add(0, value);
+        while (values.size() > MAX_VALUES) {
+            values.remove(values.size() - 1);
+        }
+    }
+
+    /**
+     * @return values, the most recent first
+     */
+    @NonNull
+    public List<String> getValues() {
+        return Collections.unmodifiableList(values);
+    }
+}
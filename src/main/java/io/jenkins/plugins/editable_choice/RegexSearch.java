@@ -0,0 +1,341 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import jenkins.util.SystemProperties;
+
+/**
+ * RegexSearch finds choices matching a regular expression.
+ *
+ * Compiled patterns are cached in a bounded LRU cache.
+ * When the pattern starts with {@code ^} and a literal string,
+ * only choices starting with the literal are tested with {@link PrefixIndex}.
+ * Each search is given a time budget, and stops with results found so far
+ * when the budget runs out, so that a pathological pattern cannot block a request thread.
+ */
+@Restricted(NoExternalUse.class)
+public final class RegexSearch {
+    private static final Logger LOGGER = Logger.getLogger(RegexSearch.class.getName());
+
+    /**
+     * The maximum number of compiled patterns to cache.
+     */
+    static final int CACHE_SIZE = SystemProperties.getInteger(
+        RegexSearch.class.getName() + ".cacheSize",
+        256
+    );
+
+    /**
+     * The time budget for a search.
+     */
+    static final long TIMEOUT_MILLIS = SystemProperties.getLong(
+        RegexSearch.class.getName() + ".timeoutMillis",
+        200L
+    );
+
+    /**
+     * Check the clock once for this number of characters read by matchers.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /**
+     * Characters having special meanings in regular expressions.
+     */
+    private static final String META_CHARS = ".[]{}()*+?^$|\\";
+
+    /**
+     * Quantifiers making the preceding character optional.
+     */
+    private static final String OPTIONAL_QUANTIFIERS = "?*{";
+
+    private static final LruCache<PatternKey, Pattern> CACHE = new LruCache<>(CACHE_SIZE);
+
+    private RegexSearch() {
+    }
+
+    /**
+     * The key of the pattern cache.
+     */
+    private static final class PatternKey {
+        @NonNull
+        private final String regex;
+        private final int flags;
+
+        PatternKey(@NonNull final String regex, final int flags) {
+            this.regex = regex;
+            this.flags = flags;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof PatternKey)) {
+                return false;
+            }
+            final PatternKey other = (PatternKey) o;
+            return regex.equals(other.regex) && flags == other.flags;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(regex, flags);
+        }
+    }
+
+    /**
+     * @param regex the regular expression
+     * @param caseInsensitive whether to match in case insensitive
+     * @return the compiled pattern, cached
+     * @throws PatternSyntaxException the regular expression is malformed
+     */
+    @NonNull
+    static Pattern compile(@NonNull final String regex, final boolean caseInsensitive) {
+        final int flags = caseInsensitive ? (Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE) : 0;
+        return CACHE.computeIfAbsent(new PatternKey(regex, flags), k -> Pattern.compile(k.regex, k.flags));
+    }
+
+    /**
+     * Extract the literal string every matching value starts with.
+     *
+     * @param regex the regular expression
+     * @return the literal prefix. Empty if the pattern is not anchored or doesn't start with literals.
+     */
+    @NonNull
+    static String literalPrefix(@NonNull final String regex) {
+        if (!regex.startsWith("^") || hasTopLevelAlternation(regex)) {
+            return "";
+        }
+        final StringBuilder sb = new StringBuilder();
+        int i = 1;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            final char literal;
+            final int next;
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    // character classes like \d, back references or \Q.
+                    break;
+                }
+                literal = regex.charAt(i + 1);
+                next = i + 2;
+            } else if (META_CHARS.indexOf(c) >= 0) {
+                break;
+            } else {
+                literal = c;
+                next = i + 1;
+            }
+            if (next < regex.length() && OPTIONAL_QUANTIFIERS.indexOf(regex.charAt(next)) >= 0) {
+                break;
+            }
+            sb.append(literal);
+            if (next < regex.length() && regex.charAt(next) == '+') {
+                break;
+            }
+            i = next;
+        }
+        return sb.toString();
+    }
+
+    private static boolean hasTopLevelAlternation(@NonNull final String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); ++i) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    // quoted sections are too complicated to parse here.
+                    return true;
+                }
+                ++i;
+            } else if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                }
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                ++depth;
+            } else if (c == ')') {
+                --depth;
+            } else if (c == '|' && depth <= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Search choices.
+     *
+     * Results are ordered by the position in choices.
+     * Malformed regular expressions match nothing.
+     *
+     * @param index the index of choices
+     * @param regex the regular expression
+     * @param caseInsensitive whether to match in case insensitive
+     * @param limit the maximum number of results
+     * @return positions of matching choices
+     */
+    @NonNull
+    public static List<Integer> search(
+        @NonNull final ChoiceIndex index,
+        @NonNull final String regex,
+        final boolean caseInsensitive,
+        final int limit
+    ) {
+        final List<Integer> result = new ArrayList<>();
+        final Pattern pattern;
+        try {
+            pattern = compile(regex, caseInsensitive);
+        } catch (final PatternSyntaxException e) {
+            return result;
+        }
+        final String prefix = literalPrefix(regex);
+        // lower-casing in Locale.ROOT is the same as the regex only for ASCII.
+        final int[] candidates = (prefix.isEmpty() || (caseInsensitive && !isAscii(prefix)))
+            ? null
+            : index.getPrefixIndex(caseInsensitive).find(prefix);
+        final int size = (candidates != null) ? candidates.length : index.size();
+
+        final Deadline deadline = new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS));
+        final Matcher matcher = pattern.matcher("");
+        try {
+            for (int i = 0; i < size && result.size() < limit; ++i) {
+                final int position = (candidates != null) ? candidates[i] : i;
+                deadline.check();
+                if (matcher.reset(new DeadlineCharSequence(index.getLabel(position), deadline)).find()) {
+                    result.add(position);
+                }
+            }
+        } catch (final TimeoutException e) {
+            LOGGER.log(
+                Level.FINE,
+                "Stopped matching with {0} as it took more than {1} ms",
+                new Object[] {regex, TIMEOUT_MILLIS}
+            );
+        }
+        return result;
+    }
+
+    private static boolean isAscii(@NonNull final String s) {
+        for (int i = 0; i < s.length(); ++i) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Thrown when a search runs out of its time budget.
+     */
+    static final class TimeoutException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TimeoutException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * The time a search must finish by.
+     */
+    static final class Deadline {
+        private final long deadlineNanos;
+        private int count;
+
+        Deadline(final long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * @throws TimeoutException the deadline has passed
+         */
+        void check() {
+            if (System.nanoTime() - deadlineNanos > 0) {
+                throw new TimeoutException();
+            }
+        }
+
+        /**
+         * Same as {@link #check()}, but reads the clock only once in a while.
+         */
+        void tick() {
+            if (++count % CHECK_INTERVAL == 0) {
+                check();
+            }
+        }
+    }
+
+    /**
+     * CharSequence checking the deadline while a matcher reads it,
+     * as matchers can backtrack for long even over a short value.
+     */
+    static final class DeadlineCharSequence implements CharSequence {
+        @NonNull
+        private final CharSequence value;
+        @NonNull
+        private final Deadline deadline;
+
+        DeadlineCharSequence(@NonNull final CharSequence value, @NonNull final Deadline deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int length() {
+            return value.length();
+        }
+
+        @Override
+        public char charAt(final int index) {
+            deadline.tick();
+            return value.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return new DeadlineCharSequence(value.subSequence(start, end), deadline);
+        }
+
+        @Override
+        @NonNull
+        public String toString() {
+            return value.toString();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import jenkins.util.SystemProperties;
+import net.sf.json.JSONObject;
+
+/**
+ * Caches results of searching choices in the server side.
+ *
+ * Results are keyed by {@link ChoiceIndex#getSearchHash()}, the normalized input,
+ * how to filter choices and the limit,
+ * so the same input for the same choices is looked up without searching
+ * even across jobs with the same choices.
+ * Bounded both in the number of results and the total number of positions in results.
+ * Searches with regular expressions are not cached, as {@link RegexSearch} can stop them by the time budget.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class SearchResultCache {
+    private static final int DEFAULT_MAX_ENTRIES = 1024;
+    private static final long DEFAULT_MAX_POSITIONS = 256 * 1024;
+
+    /**
+     * The maximum number of cached results.
+     */
+    static final int MAX_ENTRIES = SystemProperties.getInteger(
+        SearchResultCache.class.getName() + ".maxEntries",
+        DEFAULT_MAX_ENTRIES
+    );
+
+    /**
+     * The maximum total number of positions in cached results.
+     */
+    static final long MAX_POSITIONS = SystemProperties.getLong(
+        SearchResultCache.class.getName() + ".maxPositions",
+        DEFAULT_MAX_POSITIONS
+    );
+
+    @NonNull
+    private final LruCache<Key, int[]> cache;
+
+    /**
+     * ctor.
+     */
+    public SearchResultCache() {
+        this(MAX_ENTRIES, MAX_POSITIONS);
+    }
+
+    /**
+     * ctor.
+     *
+     * @param maxEntries the maximum number of cached results
+     * @param maxPositions the maximum total number of positions in cached results
+     */
+    SearchResultCache(final int maxEntries, final long maxPositions) {
+        // count empty results as one not to cache unlimited number of them.
+        this.cache = new LruCache<>(maxEntries, maxPositions, positions -> Math.max(positions.length, 1));
+    }
+
+    /**
+     * @return the instance
+     */
+    @NonNull
+    public static SearchResultCache get() {
+        return ExtensionList.lookupSingleton(SearchResultCache.class);
+    }
+
+    /**
+     * Search choices, or return the cached result.
+     *
+     * @param index the index of choices
+     * @param filterConfig how to filter values. {@code null} not to filter.
+     * @param input the input
+     * @param limit the maximum number of results
+     * @return positions of matching choices
+     * @see ChoiceIndex#search(FilterConfig, String, int)
+     */
+    @NonNull
+    public List<Integer> search(
+        @NonNull final ChoiceIndex index,
+        @CheckForNull final FilterConfig filterConfig,
+        @NonNull final String input,
+        final int limit
+    ) {
+        if (filterConfig != null && filterConfig.getMatchMode() == FilterConfig.MatchMode.REGEX) {
+            // results can be cut short by the time budget.
+            return index.search(filterConfig, input, limit);
+        }
+        final Key key = new Key(index.getSearchHash(), filterConfig, input, limit);
+        int[] positions = cache.get(key);
+        if (positions == null) {
+            positions = index.search(filterConfig, input, limit).stream().mapToInt(Integer::intValue).toArray();
+            cache.put(key, positions);
+        }
+        return new Positions(positions);
+    }
+
+    /**
+     * Remove results for choices no longer used.
+     *
+     * @param index the index of choices replaced
+     */
+    public void invalidate(@NonNull final ChoiceIndex index) {
+        final String hash = index.getSearchHashIfComputed();
+        if (hash != null) {
+            cache.removeIf(key -> key.hash.equals(hash));
+        }
+    }
+
+    /**
+     * @return counts of lookups as JSON
+     */
+    @NonNull
+    public JSONObject toJson() {
+        final JSONObject json = new JSONObject();
+        json.put("entries", cache.size());
+        json.put("positions", cache.getWeight());
+        json.put("hits", cache.getHitCount());
+        json.put("misses", cache.getMissCount());
+        json.put("evictions", cache.getEvictionCount());
+        return json;
+    }
+
+    /**
+     * @return the number of lookups finding cached results
+     */
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * @return the number of lookups not finding cached results
+     */
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * @return the number of results evicted
+     */
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    /**
+     * The key of a search.
+     */
+    private static final class Key {
+        @NonNull
+        private final String hash;
+        @NonNull
+        private final String mode;
+        @NonNull
+        private final String input;
+        private final int limit;
+
+        Key(
+            @NonNull final String hash,
+            @CheckForNull final FilterConfig filterConfig,
+            @NonNull final String input,
+            final int limit
+        ) {
+            this.hash = hash;
+            if (filterConfig == null) {
+                // choices are not filtered with the input.
+                this.mode = "";
+                this.input = "";
+            } else {
+                this.mode = String.format(
+                    "%s:%s:%s",
+                    filterConfig.getMatchMode(),
+                    filterConfig.isPrefix(),
+                    filterConfig.isCaseInsensitive()
+                );
+                this.input = filterConfig.isCaseInsensitive() ? input.toLowerCase(Locale.ROOT) : input;
+            }
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return limit == other.limit
+                && hash.equals(other.hash)
+                && mode.equals(other.mode)
+                && input.equals(other.input);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hash, mode, input, limit);
+        }
+    }
+
+    /**
+     * Read only view of cached positions.
+     */
+    private static final class Positions extends AbstractList<Integer> implements RandomAccess {
+        @NonNull
+        private final int[] positions;
+
+        Positions(@NonNull final int[] positions) {
+            this.positions = positions;
+        }
+
+        @Override
+        public Integer get(final int index) {
+            return positions[index];
+        }
+
+        @Override
+        public int size() {
+            return positions.length;
+        }
+    }
+}
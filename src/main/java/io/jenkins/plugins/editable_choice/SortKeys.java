@@ -0,0 +1,310 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Sorts values comparing keys computed once for each value.
+ *
+ * The first characters or version numbers are packed into a {@code long},
+ * so that most comparisons are done with a single numeric comparison,
+ * and values are compared fully only when packed keys are the same.
+ */
+final class SortKeys {
+    /**
+     * The number of characters or version numbers packed into a key.
+     */
+    private static final int PACKED = 4;
+
+    /**
+     * Bits for each character or version number in a key.
+     */
+    private static final int BITS = Long.SIZE / PACKED;
+
+    private static final long MAX_PACKED_NUMBER = (1L << BITS) - 1;
+
+    /**
+     * Numbers with more digits than this are never packed.
+     */
+    private static final int MAX_PACKED_DIGITS = Long.toString(MAX_PACKED_NUMBER).length();
+
+    private SortKeys() {
+    }
+
+    /**
+     * @param values values to sort
+     * @return positions of values sorted in the order of characters
+     */
+    @NonNull
+    static Integer[] sortLexical(@NonNull final String[] values) {
+        final long[] keys = new long[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            keys[i] = lexicalKey(values[i]);
+        }
+        final Integer[] order = positions(values.length);
+        Arrays.sort(order, (a, b) -> {
+            final int c = Long.compareUnsigned(keys[a], keys[b]);
+            return (c != 0) ? c : values[a].compareTo(values[b]);
+        });
+        return order;
+    }
+
+    /**
+     * @param values values to sort
+     * @return positions of values sorted in the natural order
+     */
+    @NonNull
+    static Integer[] sortNatural(@NonNull final String[] values) {
+        final NaturalKey[] keys = new NaturalKey[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            keys[i] = new NaturalKey(values[i]);
+        }
+        final Integer[] order = positions(values.length);
+        Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+        return order;
+    }
+
+    @NonNull
+    private static Integer[] positions(final int size) {
+        final Integer[] positions = new Integer[size];
+        for (int i = 0; i < size; ++i) {
+            positions[i] = i;
+        }
+        return positions;
+    }
+
+    /**
+     * @param value a value
+     * @return the first characters packed in the order of {@link String#compareTo(String)}
+     */
+    static long lexicalKey(@NonNull final String value) {
+        long key = 0;
+        for (int i = 0; i < PACKED; ++i) {
+            key = (key << BITS) | ((i < value.length()) ? value.charAt(i) : 0);
+        }
+        return key;
+    }
+
+    /**
+     * Compare numbers in digits without parsing them not to overflow.
+     *
+     * @param a digits without leading zeros
+     * @param b digits without leading zeros
+     * @return the result of comparison
+     */
+    private static int compareDigits(@NonNull final String a, @NonNull final String b) {
+        if (a.length() != b.length()) {
+            return Integer.compare(a.length(), b.length());
+        }
+        return a.compareTo(b);
+    }
+
+    @NonNull
+    private static String stripZeros(@NonNull final String digits) {
+        int i = 0;
+        while (i < digits.length() - 1 && digits.charAt(i) == '0') {
+            ++i;
+        }
+        return digits.substring(i);
+    }
+
+    /**
+     * Compare values treating runs of digits as numbers.
+     *
+     * @param a a value
+     * @param b another value
+     * @return the result of comparison
+     */
+    static int compareNatural(@NonNull final String a, @NonNull final String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            final char ca = a.charAt(i);
+            final char cb = b.charAt(j);
+            if (isDigit(ca) && isDigit(cb)) {
+                final int ei = endOfDigits(a, i);
+                final int ej = endOfDigits(b, j);
+                final int c = compareDigits(stripZeros(a.substring(i, ei)), stripZeros(b.substring(j, ej)));
+                if (c != 0) {
+                    return c;
+                }
+                i = ei;
+                j = ej;
+                continue;
+            }
+            if (ca != cb) {
+                return Character.compare(ca, cb);
+            }
+            ++i;
+            ++j;
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int endOfDigits(@NonNull final String value, final int start) {
+        int i = start;
+        while (i < value.length() && isDigit(value.charAt(i))) {
+            ++i;
+        }
+        return i;
+    }
+
+    /**
+     * The key to sort a value in the natural order.
+     *
+     * Values starting with version numbers like {@code 1.2.3} or {@code v1.2.3}
+     * are compared like semantic versions:
+     * numbers are compared one by one, missing numbers are treated as 0,
+     * pre-releases like {@code 1.2.3-rc1} precede the release,
+     * and build metadata like {@code +build1} is ignored.
+     * Versions precede other values,
+     * and other values are compared with {@link SortKeys#compareNatural(String, String)}.
+     */
+    static final class NaturalKey implements Comparable<NaturalKey> {
+        @NonNull
+        private final String value;
+
+        /**
+         * Version numbers without leading zeros. Empty if not a version.
+         */
+        @NonNull
+        private final List<String> numbers;
+
+        /**
+         * The part following version numbers.
+         */
+        @NonNull
+        private final String rest;
+
+        /**
+         * Version numbers packed. Valid only when {@link #packed}.
+         */
+        private final long key;
+
+        private final boolean packed;
+
+        NaturalKey(@NonNull final String value) {
+            this.value = value;
+            this.numbers = new ArrayList<>();
+            int i = 0;
+            if (value.length() > 1 && (value.charAt(0) == 'v' || value.charAt(0) == 'V') && isDigit(value.charAt(1))) {
+                i = 1;
+            }
+            int restStart = 0;
+            while (i < value.length() && isDigit(value.charAt(i))) {
+                final int end = endOfDigits(value, i);
+                numbers.add(stripZeros(value.substring(i, end)));
+                restStart = end;
+                if (end + 1 < value.length() && value.charAt(end) == '.' && isDigit(value.charAt(end + 1))) {
+                    i = end + 1;
+                } else {
+                    break;
+                }
+            }
+            String r = numbers.isEmpty() ? value : value.substring(restStart);
+            if (!numbers.isEmpty() && r.startsWith("+")) {
+                // build metadata
+                r = "";
+            }
+            this.rest = r;
+
+            long k = 0;
+            boolean p = !numbers.isEmpty() && numbers.size() <= PACKED;
+            for (int n = 0; n < PACKED && p; ++n) {
+                final long number = (n < numbers.size()) ? parse(numbers.get(n)) : 0;
+                if (number < 0 || number > MAX_PACKED_NUMBER) {
+                    p = false;
+                }
+                k = (k << BITS) | number;
+            }
+            this.key = k;
+            this.packed = p;
+        }
+
+        /**
+         * @param digits digits without leading zeros
+         * @return the number. {@code -1} if too large.
+         */
+        private static long parse(@NonNull final String digits) {
+            return (digits.length() <= MAX_PACKED_DIGITS) ? Long.parseLong(digits) : -1;
+        }
+
+        private boolean isVersion() {
+            return !numbers.isEmpty();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compareTo(@NonNull final NaturalKey other) {
+            if (packed && other.packed && key != other.key) {
+                return Long.compareUnsigned(key, other.key);
+            }
+            return compareFully(other);
+        }
+
+        /**
+         * Compare without packed keys.
+         *
+         * @param other the key to compare with
+         * @return the result of comparison
+         */
+        int compareFully(@NonNull final NaturalKey other) {
+            final int c = compareParts(other);
+            return (c != 0) ? c : value.compareTo(other.value);
+        }
+
+        private int compareParts(@NonNull final NaturalKey other) {
+            if (isVersion() != other.isVersion()) {
+                return isVersion() ? -1 : 1;
+            }
+            if (!isVersion()) {
+                return compareNatural(value, other.value);
+            }
+            for (int n = 0; n < Math.max(numbers.size(), other.numbers.size()); ++n) {
+                final String a = (n < numbers.size()) ? numbers.get(n) : "0";
+                final String b = (n < other.numbers.size()) ? other.numbers.get(n) : "0";
+                final int c = compareDigits(a, b);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            if (rest.isEmpty() != other.rest.isEmpty()) {
+                // pre-releases precede the release.
+                return rest.isEmpty() ? 1 : -1;
+            }
+            return compareNatural(rest, other.rest);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.Arrays;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * How to sort choices.
+ *
+ * Choices are sorted once when {@link ChoiceIndex} is built,
+ * comparing {@link SortKeys} computed in advance.
+ */
+public enum SortMode {
+    /**
+     * As configured.
+     */
+    AS_CONFIGURED,
+    /**
+     * In the order of characters.
+     */
+    LEXICAL,
+    /**
+     * In the reverse order of characters.
+     */
+    LEXICAL_DESCENDING,
+    /**
+     * Numbers in values are compared as numbers, and versions are compared like semantic versions.
+     */
+    NATURAL,
+    /**
+     * Reverse of {@link #NATURAL}, the latest version first.
+     */
+    NATURAL_DESCENDING;
+
+    /**
+     * @return the name to display
+     */
+    public String getDisplayName() {
+        switch (this) {
+        case LEXICAL:
+            return Messages.SortMode_LEXICAL();
+        case LEXICAL_DESCENDING:
+            return Messages.SortMode_LEXICAL_DESCENDING();
+        case NATURAL:
+            return Messages.SortMode_NATURAL();
+        case NATURAL_DESCENDING:
+            return Messages.SortMode_NATURAL_DESCENDING();
+        default:
+            return Messages.SortMode_AS_CONFIGURED();
+        }
+    }
+
+    /**
+     * @param values values to sort
+     * @return positions of values in the sorted order. {@code null} for {@link #AS_CONFIGURED}.
+     */
+    @CheckForNull
+    int[] sort(@NonNull final String[] values) {
+        final Integer[] order;
+        switch (this) {
+        case LEXICAL:
+        case LEXICAL_DESCENDING:
+            order = SortKeys.sortLexical(values);
+            break;
+        case NATURAL:
+        case NATURAL_DESCENDING:
+            order = SortKeys.sortNatural(values);
+            break;
+        default:
+            return null;
+        }
+        final boolean descending = (this == LEXICAL_DESCENDING || this == NATURAL_DESCENDING);
+        final int[] result = new int[order.length];
+        for (int i = 0; i < order.length; ++i) {
+            result[i] = descending ? order[order.length - 1 - i] : order[i];
+        }
+        return result;
+    }
+
+    /**
+     * @param values values to reorder
+     * @param order positions returned from {@link #sort(String[])}
+     * @return reordered values
+     */
+    @NonNull
+    static String[] apply(@NonNull final String[] values, @NonNull final int[] order) {
+        final String[] result = Arrays.copyOf(values, values.length);
+        for (int i = 0; i < order.length; ++i) {
+            result[i] = values[order[i]];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.servlet.ServletException;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import net.sf.json.JSON;
+
+/**
+ * Writes a JSON array to the response item by item,
+ * in the same format as {@link org.kohsuke.stapler.HttpResponses#okJSON(JSON)}.
+ *
+ * The whole JSON is never built in memory, so the memory used doesn't grow with the number of items.
+ * The response is compressed with gzip when the client accepts it.
+ */
+@Restricted(NoExternalUse.class)
+public final class StreamingJsonResponse implements HttpResponse {
+    private static final String HEX = "0123456789abcdef";
+    private static final int HEX_DIGITS = 4;
+    private static final int BITS_PER_HEX_DIGIT = 4;
+    private static final int HEX_MASK = 0xf;
+
+    /**
+     * Line terminators in JavaScript, escaped for clients parsing JSON as scripts.
+     */
+    private static final char LINE_SEPARATOR = 0x2028;
+    private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+    @NonNull
+    private final Supplier<Stream<?>> items;
+
+    @NonNull
+    private final ItemWriter itemWriter;
+
+    @CheckForNull
+    private String filename;
+
+    /**
+     * Writes an item.
+     */
+    @FunctionalInterface
+    public interface ItemWriter {
+        /**
+         * @param writer the writer to write to
+         * @param item the item to write
+         * @throws IOException failed to write
+         */
+        void write(@NonNull Writer writer, @NonNull Object item) throws IOException;
+    }
+
+    /**
+     * ctor.
+     *
+     * @param items supplies items of the array, evaluated lazily while writing
+     * @param itemWriter writes an item
+     */
+    public StreamingJsonResponse(@NonNull final Supplier<Stream<?>> items, @NonNull final ItemWriter itemWriter) {
+        this.items = items;
+        this.itemWriter = itemWriter;
+    }
+
+    /**
+     * ctor writing strings as JSON strings and {@link JSON} as is.
+     *
+     * @param items supplies items of the array, evaluated lazily while writing
+     */
+    public StreamingJsonResponse(@NonNull final Supplier<Stream<?>> items) {
+        this(items, StreamingJsonResponse::writeItem);
+    }
+
+    /**
+     * @param filename the name of the file to download the response as
+     * @return this instance
+     */
+    @NonNull
+    public StreamingJsonResponse asAttachment(@NonNull final String filename) {
+        this.filename = filename;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void generateResponse(final StaplerRequest req, final StaplerResponse rsp, final Object node)
+            throws IOException, ServletException {
+        rsp.setContentType("application/json;charset=UTF-8");
+        if (filename != null) {
+            rsp.setHeader("Content-Disposition", String.format("attachment; filename=\"%s\"", filename));
+        }
+        try (Writer w = new BufferedWriter(
+            new OutputStreamWriter(rsp.getCompressedOutputStream(req), StandardCharsets.UTF_8)
+        )) {
+            write(w);
+        }
+    }
+
+    /**
+     * @param w the writer to write the whole response to
+     * @throws IOException failed to write
+     */
+    void write(@NonNull final Writer w) throws IOException {
+        w.write("{\"status\":\"ok\",\"data\":[");
+        boolean first = true;
+        final Iterator<?> it = items.get().iterator();
+        while (it.hasNext()) {
+            if (!first) {
+                w.write(',');
+            }
+            first = false;
+            itemWriter.write(w, it.next());
+        }
+        w.write("]}");
+    }
+
+    private static void writeItem(@NonNull final Writer w, @NonNull final Object item) throws IOException {
+        if (item instanceof JSON) {
+            ((JSON) item).write(w);
+        } else {
+            writeString(w, item.toString());
+        }
+    }
+
+    /**
+     * @param w the writer
+     * @param value the string to write as a JSON string
+     * @throws IOException failed to write
+     */
+    public static void writeString(@NonNull final Writer w, @NonNull final String value) throws IOException {
+        w.write('"');
+        for (int i = 0; i < value.length(); ++i) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                w.write("\\\"");
+                break;
+            case '\\':
+                w.write("\\\\");
+                break;
+            case '\n':
+                w.write("\\n");
+                break;
+            case '\r':
+                w.write("\\r");
+                break;
+            case '\t':
+                w.write("\\t");
+                break;
+            default:
+                if (c < ' ' || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR) {
+                    w.write("\\u");
+                    for (int shift = (HEX_DIGITS - 1) * BITS_PER_HEX_DIGIT; shift >= 0; shift -= BITS_PER_HEX_DIGIT) {
+                        w.write(HEX.charAt((c >> shift) & HEX_MASK));
+                    }
+                } else {
+                    w.write(c);
+                }
+                break;
+            }
+        }
+        w.write('"');
+    }
+}
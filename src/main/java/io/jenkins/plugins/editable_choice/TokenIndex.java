@@ -0,0 +1,331 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * TokenIndex finds choices containing all tokens in the input.
+ *
+ * Choices are split into tokens of letters, digits and dots
+ * (e.g. {@code service-eu-prod-4.2.1} to {@code service}, {@code eu}, {@code prod} and {@code 4.2.1}),
+ * and each token in the input matches the prefix of tokens in choices.
+ * Posting lists of tokens are intersected from the smallest one,
+ * and larger ones are tested against tokens of the few remaining candidates instead of being merged.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+@Restricted(NoExternalUse.class)
+public final class TokenIndex {
+    private final boolean caseInsensitive;
+
+    /**
+     * Distinct tokens in choices, sorted.
+     * The position in this array is the id of the token.
+     */
+    @NonNull
+    private final String[] tokens;
+
+    /**
+     * Choices containing each token, keyed by the id of the token.
+     */
+    @NonNull
+    private final PostingLists postings;
+
+    /**
+     * Ids of tokens in {@code i}-th choice are
+     * {@code choiceTokens[choiceOffsets[i]]} to {@code choiceTokens[choiceOffsets[i + 1] - 1]}.
+     */
+    @NonNull
+    private final int[] choiceOffsets;
+
+    @NonNull
+    private final int[] choiceTokens;
+
+    /**
+     * ctor.
+     *
+     * @param index the index of choices
+     * @param caseInsensitive whether to match in case insensitive
+     */
+    public TokenIndex(@NonNull final ChoiceIndex index, final boolean caseInsensitive) {
+        this.caseInsensitive = caseInsensitive;
+        final String[][] tokensOfChoices = new String[index.size()][];
+        int total = 0;
+        for (int i = 0; i < tokensOfChoices.length; ++i) {
+            tokensOfChoices[i] = tokenize(normalize(index.getLabel(i)));
+            total += tokensOfChoices[i].length;
+        }
+
+        final String[] all = new String[total];
+        int count = 0;
+        for (final String[] t : tokensOfChoices) {
+            System.arraycopy(t, 0, all, count, t.length);
+            count += t.length;
+        }
+        Arrays.sort(all);
+        int distinct = 0;
+        for (int i = 0; i < all.length; ++i) {
+            if (i == 0 || !all[i].equals(all[i - 1])) {
+                all[distinct++] = all[i];
+            }
+        }
+        this.tokens = Arrays.copyOf(all, distinct);
+
+        this.choiceOffsets = new int[tokensOfChoices.length + 1];
+        this.choiceTokens = new int[total];
+        final long[] pairs = new long[total];
+        count = 0;
+        for (int i = 0; i < tokensOfChoices.length; ++i) {
+            choiceOffsets[i] = count;
+            for (final String t : tokensOfChoices[i]) {
+                final int id = Arrays.binarySearch(tokens, t);
+                choiceTokens[count] = id;
+                pairs[count] = PostingLists.pack(id, i);
+                ++count;
+            }
+        }
+        choiceOffsets[tokensOfChoices.length] = count;
+        this.postings = new PostingLists(pairs, count);
+    }
+
+    @NonNull
+    private String normalize(@NonNull final String value) {
+        return caseInsensitive ? value.toLowerCase(Locale.ROOT) : value;
+    }
+
+    private static boolean isTokenChar(final char c) {
+        return Character.isLetterOrDigit(c) || c == '.';
+    }
+
+    /**
+     * @param s a string
+     * @return distinct tokens in the string
+     */
+    @NonNull
+    static String[] tokenize(@NonNull final String s) {
+        final List<String> result = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= s.length(); ++i) {
+            if (i < s.length() && isTokenChar(s.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                final String token = s.substring(start, i);
+                if (!result.contains(token)) {
+                    result.add(token);
+                }
+                start = -1;
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * Tokens in the dictionary starting with a token in the input.
+     */
+    private static final class Range {
+        /**
+         * The first id of tokens.
+         */
+        private final int from;
+
+        /**
+         * The last id of tokens (exclusive).
+         */
+        private final int to;
+
+        /**
+         * The total length of posting lists, which is the upper bound of matching choices.
+         */
+        private final int estimate;
+
+        Range(final int from, final int to, final int estimate) {
+            this.from = from;
+            this.to = to;
+            this.estimate = estimate;
+        }
+
+        boolean contains(final int id) {
+            return from <= id && id < to;
+        }
+    }
+
+    @NonNull
+    private Range findRange(@NonNull final String prefix) {
+        final int from = lowerBound(prefix);
+        int to = from;
+        int estimate = 0;
+        while (to < tokens.length && tokens[to].startsWith(prefix)) {
+            // every token has its posting list, so the slot is the same as the id.
+            estimate += postings.end(to) - postings.start(to);
+            ++to;
+        }
+        return new Range(from, to, estimate);
+    }
+
+    private int lowerBound(@NonNull final String key) {
+        int low = 0;
+        int high = tokens.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (tokens[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Search choices.
+     *
+     * Results are ordered by the position in choices.
+     * All choices match when the input contains no tokens.
+     *
+     * @param input the input
+     * @param limit the maximum number of results
+     * @return positions of matching choices
+     */
+    @NonNull
+    public List<Integer> search(@NonNull final String input, final int limit) {
+        final List<Integer> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+        final String[] queryTokens = tokenize(normalize(input));
+        if (queryTokens.length == 0) {
+            for (int i = 0; i < choiceOffsets.length - 1 && result.size() < limit; ++i) {
+                result.add(i);
+            }
+            return result;
+        }
+
+        final Range[] ranges = new Range[queryTokens.length];
+        for (int i = 0; i < queryTokens.length; ++i) {
+            ranges[i] = findRange(queryTokens[i]);
+            if (ranges[i].estimate == 0) {
+                return result;
+            }
+        }
+        Arrays.sort(ranges, Comparator.comparingInt(r -> r.estimate));
+
+        int[] candidates = collect(ranges[0]);
+        int size = candidates.length;
+        for (int r = 1; r < ranges.length && size > 0; ++r) {
+            final Range range = ranges[r];
+            if ((long) size * averageTokens() < range.estimate) {
+                // cheaper to test tokens of each candidate than to read the posting lists.
+                int kept = 0;
+                for (int i = 0; i < size; ++i) {
+                    if (hasTokenIn(candidates[i], range)) {
+                        candidates[kept++] = candidates[i];
+                    }
+                }
+                size = kept;
+            } else {
+                size = intersect(candidates, size, collect(range));
+            }
+        }
+
+        for (int i = 0; i < size && result.size() < limit; ++i) {
+            result.add(candidates[i]);
+        }
+        return result;
+    }
+
+    private int averageTokens() {
+        final int choices = choiceOffsets.length - 1;
+        return (choices > 0) ? Math.max(1, choiceTokens.length / choices) : 1;
+    }
+
+    private boolean hasTokenIn(final int position, @NonNull final Range range) {
+        for (int p = choiceOffsets[position]; p < choiceOffsets[position + 1]; ++p) {
+            if (range.contains(choiceTokens[p])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param range tokens
+     * @return distinct positions of choices containing any of tokens, sorted
+     */
+    @NonNull
+    private int[] collect(@NonNull final Range range) {
+        final int[] ids = new int[range.estimate];
+        int count = 0;
+        for (int t = range.from; t < range.to; ++t) {
+            for (int p = postings.start(t); p < postings.end(t); ++p) {
+                ids[count++] = postings.id(p);
+            }
+        }
+        if (range.to - range.from <= 1) {
+            // a single posting list is already sorted and distinct.
+            return ids;
+        }
+        Arrays.sort(ids);
+        int distinct = 0;
+        for (int i = 0; i < ids.length; ++i) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, distinct);
+    }
+
+    /**
+     * Intersects sorted arrays, storing the result into {@code a}.
+     *
+     * @param a sorted positions
+     * @param size the number of positions in {@code a}
+     * @param b sorted positions
+     * @return the number of positions in the result
+     */
+    private static int intersect(@NonNull final int[] a, final int size, @NonNull final int[] b) {
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < size && j < b.length; ++i) {
+            while (j < b.length && b[j] < a[i]) {
+                ++j;
+            }
+            if (j < b.length && b[j] == a[i]) {
+                a[count++] = a[i];
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * UsageStatistics records how frequently and recently values of a parameter are used.
+ *
+ * Counts are estimated with a Count-Min sketch, so memory usage is bounded
+ * regardless of how many different values are used.
+ * Only the top-K frequent values are tracked by name.
+ * All counts are halved periodically so that recently used values rank higher
+ * than values used frequently long ago ("frecency").
+ *
+ * Not thread safe. {@link UsageStatisticsStore} guards accesses.
+ */
+@Restricted(NoExternalUse.class)
+public final class UsageStatistics {
+    /**
+     * The number of hash functions (rows) of the sketch.
+     */
+    static final int DEPTH = 4;
+
+    /**
+     * The number of counters for each hash function of the sketch.
+     */
+    static final int WIDTH = 256;
+
+    /**
+     * The number of values tracked by name.
+     */
+    static final int TOP_K = 32;
+
+    /**
+     * All counts are halved each time this number of values are recorded.
+     */
+    static final int DECAY_INTERVAL = 64;
+
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    @NonNull
+    private int[] counters = new int[DEPTH * WIDTH];
+    private int recordsSinceDecay = 0;
+    @NonNull
+    private Map<String, Integer> topValues = new HashMap<>();
+
+    /**
+     * Heap of {@link #topValues} with the least used one at the head.
+     * Rebuilt after deserialization.
+     */
+    @CheckForNull
+    private transient PriorityQueue<String> heap;
+
+    /**
+     * @return this instance with the heap restored
+     */
+    private Object readResolve() {
+        if (counters == null || counters.length != DEPTH * WIDTH) {
+            counters = new int[DEPTH * WIDTH];
+        }
+        if (topValues == null) {
+            topValues = new HashMap<>();
+        }
+        return this;
+    }
+
+    @NonNull
+    private PriorityQueue<String> getHeap() {
+        if (heap == null) {
+            heap = new PriorityQueue<>(
+                TOP_K + 1,
+                Comparator.comparingInt((String v) -> topValues.get(v)).thenComparing(Comparator.naturalOrder())
+            );
+            heap.addAll(topValues.keySet());
+        }
+        return heap;
+    }
+
+    private static int slot(final int row, @NonNull final String value) {
+        int h = value.hashCode() ^ SEEDS[row];
+        // murmur3 finalizer to spread bits before reducing to the width.
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return row * WIDTH + ((h & Integer.MAX_VALUE) % WIDTH);
+    }
+
+    /**
+     * @param value the value
+     * @return the estimated (decayed) count of the value
+     */
+    public int estimate(@NonNull final String value) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; ++row) {
+            min = Math.min(min, counters[slot(row, value)]);
+        }
+        return min;
+    }
+
+    /**
+     * Record that the value is used.
+     *
+     * @param value the used value
+     */
+    public void record(@NonNull final String value) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; ++row) {
+            final int slot = slot(row, value);
+            if (counters[slot] < Integer.MAX_VALUE) {
+                ++counters[slot];
+            }
+            min = Math.min(min, counters[slot]);
+        }
+        updateTop(value, min);
+        if (++recordsSinceDecay >= DECAY_INTERVAL) {
+            decay();
+        }
+    }
+
+    private void updateTop(@NonNull final String value, final int count) {
+        final PriorityQueue<String> heap = getHeap();
+        if (topValues.containsKey(value)) {
+            heap.remove(value);
+            topValues.put(value, count);
+            heap.add(value);
+            return;
+        }
+        if (topValues.size() >= TOP_K) {
+            final String least = heap.peek();
+            if (least == null || topValues.get(least) >= count) {
+                return;
+            }
+            heap.poll();
+            topValues.remove(least);
+        }
+        topValues.put(value, count);
+        heap.add(value);
+    }
+
+    private void decay() {
+        recordsSinceDecay = 0;
+        for (int i = 0; i < counters.length; ++i) {
+            counters[i] >>>= 1;
+        }
+        for (final Map.Entry<String, Integer> e : topValues.entrySet()) {
+            e.setValue(e.getValue() >>> 1);
+        }
+        topValues.values().removeIf(count -> count <= 0);
+        // halving keeps the order, but values may be removed.
+        heap = null;
+    }
+
+    /**
+     * @return values tracked by name, the most used first
+     */
+    @NonNull
+    public List<String> getTopValues() {
+        final List<String> values = new ArrayList<>(topValues.keySet());
+        values.sort(
+            Comparator.comparingInt((String v) -> topValues.get(v)).reversed().thenComparing(Comparator.naturalOrder())
+        );
+        return values;
+    }
+
+    /**
+     * Reorder choices by usage.
+     *
+     * Frequently and recently used choices come first,
+     * and others follow in the original order.
+     *
+     * @param choices choices to reorder
+     * @param index the index of choices
+     * @return reordered choices
+     */
+    @NonNull
+    public List<String> reorder(@NonNull final List<String> choices, @NonNull final ChoiceIndex index) {
+        final List<String> top = new ArrayList<>();
+        for (final String value : getTopValues()) {
+            final int pos = index.indexOf(value);
+            if (pos >= 0) {
+                // use the instance in choices.
+                top.add(index.get(pos));
+            }
+        }
+        if (top.isEmpty()) {
+            return choices;
+        }
+        final List<String> reordered = new ArrayList<>(choices.size());
+        reordered.addAll(top);
+        for (final String value : choices) {
+            if (!topValues.containsKey(value)) {
+                reordered.add(value);
+            }
+        }
+        return reordered;
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.XStream2;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Holds {@link UsageStatistics} and {@link RecentValues} for each job,
+ * and saves them in the job directory.
+ *
+ * Usages are recorded when builds start.
+ * Recording only queues the usage, and a background task applies
+ * queued usages and saves them in batch,
+ * so starting builds never waits for disk accesses.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class UsageStatisticsStore {
+    private static final Logger LOGGER = Logger.getLogger(UsageStatisticsStore.class.getName());
+
+    /**
+     * The name of the file saved in the job directory.
+     */
+    static final String FILENAME = "editable-choice-usage.xml";
+
+    /**
+     * Delay to apply and save queued usages.
+     */
+    private static final long FLUSH_DELAY_MILLIS = SystemProperties.getLong(
+        UsageStatisticsStore.class.getName() + ".flushDelayMillis",
+        5000L
+    );
+
+    private static final XStream2 XSTREAM = new XStream2();
+
+    static {
+        XSTREAM.alias("editable-choice-usage", JobRecord.class);
+        XSTREAM.alias("usage-statistics", UsageStatistics.class);
+        XSTREAM.alias("recent-values", RecentValues.class);
+    }
+
+    /**
+     * Records for each job keyed by the full name of the job.
+     */
+    private final ConcurrentMap<String, JobRecord> records = new ConcurrentHashMap<>();
+    private final Queue<Usage> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    /**
+     * @return the instance
+     */
+    @NonNull
+    public static UsageStatisticsStore get() {
+        return ExtensionList.lookupSingleton(UsageStatisticsStore.class);
+    }
+
+    /**
+     * Queue the usage of the value. Returns immediately.
+     *
+     * @param job the job
+     * @param name the name of the parameter
+     * @param value the used value
+     */
+    public void record(@NonNull final Job<?, ?> job, @NonNull final String name, @NonNull final String value) {
+        pending.add(new Usage(job.getFullName(), name, value));
+        if (flushScheduled.compareAndSet(false, true)) {
+            Timer.get().schedule(this::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Reorder choices with the usage of the parameter.
+     *
+     * @param job the job
+     * @param name the name of the parameter
+     * @param choices choices to reorder
+     * @param index the index of choices
+     * @return reordered choices
+     * @see UsageStatistics#reorder(List, ChoiceIndex)
+     */
+    @NonNull
+    public List<String> reorder(
+        @NonNull final Job<?, ?> job,
+        @NonNull final String name,
+        @NonNull final List<String> choices,
+        @NonNull final ChoiceIndex index
+    ) {
+        final JobRecord record = getRecord(job);
+        synchronized (record) {
+            final UsageStatistics stats = record.parameters.get(name);
+            if (stats == null) {
+                return choices;
+            }
+            return stats.reorder(choices, index);
+        }
+    }
+
+    /**
+     * Values used in recent builds, excluding ones filtered out.
+     *
+     * @param job the job
+     * @param name the name of the parameter
+     * @param limit the maximum number of values to return
+     * @param filter values to exclude, e.g. values in choices
+     * @return values used in recent builds, the most recent first
+     */
+    @NonNull
+    public List<String> getRecentValues(
+        @NonNull final Job<?, ?> job,
+        @NonNull final String name,
+        final int limit,
+        @NonNull final Predicate<String> filter
+    ) {
+        final List<String> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+        final JobRecord record = getRecord(job);
+        synchronized (record) {
+            final RecentValues recent = record.recentValues.get(name);
+            if (recent == null) {
+                return result;
+            }
+            for (final String value : recent.getValues()) {
+                if (filter.test(value)) {
+                    continue;
+                }
+                result.add(value);
+                if (result.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Apply queued usages and save them.
+     */
+    synchronized void flush() {
+        flushScheduled.set(false);
+        final Map<String, Job<?, ?>> dirty = new LinkedHashMap<>();
+        try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+            Usage usage;
+            while ((usage = pending.poll()) != null) {
+                final Job<?, ?> job = Jenkins.get().getItemByFullName(usage.job, Job.class);
+                if (job == null) {
+                    // deleted or renamed after the build started.
+                    continue;
+                }
+                final JobRecord record = getRecord(job);
+                synchronized (record) {
+                    record.parameters.computeIfAbsent(usage.name, k -> new UsageStatistics()).record(usage.value);
+                    record.recentValues.computeIfAbsent(usage.name, k -> new RecentValues()).record(usage.value);
+                }
+                dirty.put(usage.job, job);
+            }
+        }
+        for (final Job<?, ?> job : dirty.values()) {
+            final JobRecord record = records.get(job.getFullName());
+            if (record == null) {
+                continue;
+            }
+            final File dir = job.getRootDir();
+            if (!dir.isDirectory()) {
+                continue;
+            }
+            try {
+                synchronized (record) {
+                    new XmlFile(XSTREAM, new File(dir, FILENAME)).write(record);
+                }
+            } catch (final IOException e) {
+                LOGGER.log(Level.WARNING, String.format("Failed to save usages of parameters in %s", job.getFullName()), e);
+            }
+        }
+    }
+
+    @NonNull
+    private JobRecord getRecord(@NonNull final Job<?, ?> job) {
+        return records.computeIfAbsent(job.getFullName(), k -> load(job));
+    }
+
+    @NonNull
+    private static JobRecord load(@NonNull final Job<?, ?> job) {
+        final XmlFile file = new XmlFile(XSTREAM, new File(job.getRootDir(), FILENAME));
+        if (file.exists()) {
+            try {
+                final Object o = file.read();
+                if (o instanceof JobRecord) {
+                    return (JobRecord) o;
+                }
+            } catch (final IOException e) {
+                LOGGER.log(Level.WARNING, String.format("Failed to load usages of parameters in %s", job.getFullName()), e);
+            }
+        }
+        return new JobRecord();
+    }
+
+    /**
+     * A queued usage.
+     */
+    private static final class Usage {
+        @NonNull
+        private final String job;
+        @NonNull
+        private final String name;
+        @NonNull
+        private final String value;
+
+        Usage(@NonNull final String job, @NonNull final String name, @NonNull final String value) {
+            this.job = job;
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Usages of parameters in a job. Saved in the job directory.
+     */
+    static final class JobRecord {
+        @NonNull
+        private Map<String, UsageStatistics> parameters = new HashMap<>();
+        @NonNull
+        private Map<String, RecentValues> recentValues = new HashMap<>();
+
+        private Object readResolve() {
+            if (parameters == null) {
+                parameters = new HashMap<>();
+            }
+            if (recentValues == null) {
+                recentValues = new HashMap<>();
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Records values of editable choice parameters when builds start.
+     *
+     * Only parameters ordered by usage or offering recent values are recorded.
+     */
+    @Extension
+    public static class RunListenerImpl extends RunListener<Run<?, ?>> {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onStarted(final Run<?, ?> run, final TaskListener listener) {
+            final ParametersAction action = run.getAction(ParametersAction.class);
+            if (action == null) {
+                return;
+            }
+            final Job<?, ?> job = run.getParent();
+            final ParametersDefinitionProperty prop = job.getProperty(ParametersDefinitionProperty.class);
+            if (prop == null) {
+                return;
+            }
+            for (final ParameterDefinition def : prop.getParameterDefinitions()) {
+                if (!(def instanceof EditableChoiceParameterDefinition)
+                        || !((EditableChoiceParameterDefinition) def).isUsageRecorded()) {
+                    continue;
+                }
+                final ParameterValue value = action.getParameter(def.getName());
+                if (value == null || !(value.getValue() instanceof String)) {
+                    continue;
+                }
+                get().record(job, def.getName(), (String) value.getValue());
+            }
+        }
+    }
+
+    /**
+     * Follows renaming and deleting jobs.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLocationChanged(final Item item, final String oldFullName, final String newFullName) {
+            final JobRecord record = get().records.remove(oldFullName);
+            if (record != null) {
+                get().records.put(newFullName, record);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onDeleted(final Item item) {
+            get().records.remove(item.getFullName());
+        }
+    }
+}
@@ -37,6 +37,11 @@
 // * pressing tab: same to pressing enter.
 // * pressing esc: switch to not-suggesting.
 // * input: filter choices in configured way. select completely matching choice, deselect if none.
+//   some match modes (e.g. fuzzy matching) ask the server to filter choices,
+//   then display matched choices in the order returned.
+// * the parameter depended on is changed: replace choices with ones returned from the server.
+// * click a group: expand or collapse the group, asking the server for its children.
+//   inputting searches choices in all groups in the server side.
 // * form submitting: prevent and switch to not-suggesting.
 //
 // not-suggesting:
@@ -55,11 +60,37 @@
 // * new style class definition (`class` keyword)
 // * Array.find / Array.findIndex
 document.addEventListener('DOMContentLoaded', function() {
+  // wait for the user to stop typing before asking the server.
+  const SERVER_SIDE_FILTER_DELAY = 200;
+
+  // same as ChoiceIndex#fold in the server side.
+  const foldValue = function(value) {
+    return (value.normalize ? value.normalize('NFC') : value).toLowerCase();
+  };
+
+  // find the element holding the value of the parameter in the build form.
+  const findParameterInput = function(form, name) {
+    const blocks = form.querySelectorAll('[name="parameter"]');
+    for (let i = 0; i < blocks.length; ++i) {
+      const nameInput = blocks[i].querySelector('input[name="name"]');
+      if (nameInput != null && nameInput.value === name) {
+        return blocks[i].querySelector('[name="value"]');
+      }
+    }
+    return null;
+  };
+
   // options:
   //   textbox: textbox to use
   //   choices: elements to use as choices
   //   filterConfig: configurations for filtering.
   //   restrict: whether to rectrict input to be a value in choices.
+  //   restrictIgnoringCase: whether to accept values different from choices only in cases or Unicode normalization.
+  //   allowedPatterns: regular expressions for values allowed in addition to choices when restricted.
+  //   endpoint: the base url to ask the server to filter choices.
+  //   parameterName: the name of the parameter to ask the server to filter choices.
+  //   groups: elements to use as groups, expanded lazily.
+  //   dependsOn: the name of the parameter to refresh choices with.
   const SuggestInput =  function(container, option) {
     if (!option) {
       option = {};
@@ -71,11 +102,48 @@ document.addEventListener('DOMContentLoaded', function() {
     this.choiceValues = this.choices.map(function(e) {
       return e.dataset.value;
     });
+    this.originalChoices = this.choices.slice();
+    this.choiceByValue = {};
+    const self = this;
+    this.choices.forEach(function(e) {
+      if (!Object.prototype.hasOwnProperty.call(self.choiceByValue, e.dataset.value)) {
+        self.choiceByValue[e.dataset.value] = e;
+      }
+    });
     this.filterConfig = option.filterConfig || null;
     this.restrict = option.restrict || null;
+    this.restrictIgnoringCase = option.restrictIgnoringCase || false;
+    this.foldedChoiceValues = this.choiceValues.map(foldValue);
+    // null for patterns not available in JavaScript, which are left to the server.
+    this.allowedPatterns = (option.allowedPatterns || []).map(function(pattern) {
+      try {
+        return new RegExp('^(?:' + pattern + ')$');
+      } catch (e) {
+        return null;
+      }
+    });
+    this.endpoint = option.endpoint || null;
+    this.parameterName = option.parameterName || null;
+    this.groups = Array.prototype.slice.call(option.groups || []);
+    this.grouped = this.groups.length > 0
+      && this.endpoint != null
+      && this.parameterName != null;
+    this.serverSide = this.grouped || (
+      this.filterConfig != null
+      && this.filterConfig.serverSide
+      && this.endpoint != null
+      && this.parameterName != null
+    );
+    this.serverSideFilterTimer = null;
+    this.upstreamInput = (option.dependsOn && this.endpoint != null && this.parameterName != null)
+      ? findParameterInput(this.textbox.form, option.dependsOn)
+      : null;
+    this.upstreamTimer = null;
     this.currentInput = '';
     this.filter = null;
-    if (this.filterConfig != null) {
+    if (this.serverSide) {
+      // filtered in the server side.
+    } else if (this.filterConfig != null) {
       if (this.filterConfig.prefix) {
         if (this.filterConfig.caseInsensitive) {
           this.filter = function(input, testValue) {
@@ -110,18 +178,28 @@ document.addEventListener('DOMContentLoaded', function() {
 
   SuggestInput.prototype.setupEvents = function() {
     const self = this;
-    // set up choices behavior
-    // * activate on mouse over
-    // * enter value when clicking
     this.choices.forEach(function(e) {
-      e.addEventListener('mouseenter', function() {
-        self.select(e);
-      });
-      e.addEventListener('click', function(evt) {
-        evt.stopPropagation();
-        self.decide(e);
-      });
+      self.setupChoice(e);
+    });
+    this.groups.forEach(function(e) {
+      self.setupGroup(e);
     });
+    if (this.upstreamInput != null) {
+      const onUpstreamChanged = function() {
+        if (self.upstreamTimer != null) {
+          clearTimeout(self.upstreamTimer);
+        }
+        self.upstreamTimer = setTimeout(
+          function() {
+            self.upstreamTimer = null;
+            self.refreshDependentChoices();
+          },
+          SERVER_SIDE_FILTER_DELAY
+        );
+      };
+      this.upstreamInput.addEventListener('input', onUpstreamChanged);
+      this.upstreamInput.addEventListener('change', onUpstreamChanged);
+    }
 
     // set up textbox behavir
     // * focus / blur: toggle display of choices
@@ -203,6 +281,192 @@ document.addEventListener('DOMContentLoaded', function() {
     });
   };
 
+  // set up choices behavior
+  // * activate on mouse over
+  // * enter value when clicking
+  SuggestInput.prototype.setupChoice = function(e) {
+    const self = this;
+    e.addEventListener('mouseenter', function() {
+      self.select(e);
+    });
+    e.addEventListener('click', function(evt) {
+      evt.stopPropagation();
+      self.decide(e);
+    });
+  };
+
+  // set up groups behavior
+  // * expand or collapse when clicking
+  SuggestInput.prototype.setupGroup = function(e) {
+    const self = this;
+    e.addEventListener('mousedown', function(evt) {
+      // keep the focus in the textbox not to stop suggesting.
+      evt.preventDefault();
+    });
+    e.addEventListener('click', function(evt) {
+      evt.stopPropagation();
+      if (e.classList.contains('expanded')) {
+        self.collapseGroup(e);
+      } else {
+        self.expandGroup(e);
+      }
+    });
+  };
+
+  // entry: {value, label, group, count} returned from the server.
+  SuggestInput.prototype.createEntry = function(entry, depth, parent) {
+    const e = document.createElement('li');
+    e.textContent = entry.label;
+    e.style.paddingLeft = depth + 'em';
+    e.classList.add('editable-choice-suggest-loaded');
+    if (parent != null) {
+      e.dataset.parent = parent;
+    }
+    if (entry.group) {
+      e.classList.add('editable-choice-suggest-group');
+      e.dataset.group = entry.value;
+      e.dataset.depth = depth;
+      const count = document.createElement('span');
+      count.classList.add('editable-choice-suggest-group-count');
+      count.textContent = entry.count;
+      e.appendChild(count);
+      this.setupGroup(e);
+    } else {
+      e.classList.add('editable-choice-suggest-choice');
+      e.dataset.value = entry.value;
+      if (entry.label !== entry.value) {
+        e.dataset.label = entry.label;
+        e.title = entry.value;
+      }
+      this.setupChoice(e);
+    }
+    return e;
+  };
+
+  SuggestInput.prototype.requestChildren = function(path, value, callback) {
+    const xhr = new XMLHttpRequest();
+    xhr.open(
+      'GET',
+      this.endpoint + 'children'
+        + '?name=' + encodeURIComponent(this.parameterName)
+        + '&path=' + encodeURIComponent(path)
+        + '&value=' + encodeURIComponent(value)
+    );
+    xhr.onload = function() {
+      if (xhr.status == 200) {
+        callback(JSON.parse(xhr.responseText).data);
+      }
+    };
+    xhr.send();
+  };
+
+  SuggestInput.prototype.expandGroup = function(group) {
+    const self = this;
+    group.classList.add('expanded');
+    this.requestChildren(group.dataset.group, '', function(entries) {
+      if (!group.classList.contains('expanded') || group.parentNode == null) {
+        // collapsed or removed while loading.
+        return;
+      }
+      const depth = parseInt(group.dataset.depth || '0', 10) + 1;
+      const next = group.nextSibling;
+      entries.forEach(function(entry) {
+        group.parentNode.insertBefore(self.createEntry(entry, depth, group.dataset.group), next);
+      });
+      self.refreshChoices();
+    });
+  };
+
+  SuggestInput.prototype.collapseGroup = function(group) {
+    group.classList.remove('expanded');
+    this.removeChildren(group.dataset.group);
+    this.refreshChoices();
+  };
+
+  // remove entries in the group and in groups expanded in it.
+  // parents are compared exactly, as the path of a group can be a prefix of another one.
+  SuggestInput.prototype.removeChildren = function(path) {
+    const self = this;
+    Array.prototype.slice.call(this.container.querySelectorAll('.editable-choice-suggest-loaded')).forEach(function(e) {
+      if (e.dataset.parent === path && e.parentNode != null) {
+        e.parentNode.removeChild(e);
+        if (e.dataset.group != null) {
+          self.removeChildren(e.dataset.group);
+        }
+      }
+    });
+  };
+
+  // update choices after elements are added or removed.
+  SuggestInput.prototype.refreshChoices = function() {
+    const self = this;
+    this.choices = Array.prototype.slice.call(this.container.querySelectorAll('.editable-choice-suggest-choices [data-value]'));
+    this.choices.forEach(function(e) {
+      if (!Object.prototype.hasOwnProperty.call(self.choiceByValue, e.dataset.value)) {
+        self.choiceByValue[e.dataset.value] = e;
+      }
+    });
+    Object.keys(this.choiceByValue).forEach(function(value) {
+      if (self.choiceByValue[value].parentNode == null) {
+        delete self.choiceByValue[value];
+      }
+    });
+    this.selectMatching();
+  };
+
+  SuggestInput.prototype.getUpstreamValue = function() {
+    return (this.upstreamInput != null) ? this.upstreamInput.value : '';
+  };
+
+  SuggestInput.prototype.refreshDependentChoices = function() {
+    const self = this;
+    const upstream = this.getUpstreamValue();
+    const xhr = new XMLHttpRequest();
+    xhr.open(
+      'GET',
+      this.endpoint + 'dependentChoices'
+        + '?name=' + encodeURIComponent(this.parameterName)
+        + '&upstream=' + encodeURIComponent(upstream)
+    );
+    xhr.onload = function() {
+      if (xhr.status != 200 || upstream !== self.getUpstreamValue()) {
+        // failed or outdated.
+        return;
+      }
+      self.replaceChoices(JSON.parse(xhr.responseText).data);
+    };
+    xhr.send();
+  };
+
+  // values: new choices. values used recently are kept.
+  SuggestInput.prototype.replaceChoices = function(values) {
+    const self = this;
+    const list = this.container.querySelector('.editable-choice-suggest-choices');
+    const recent = list.querySelector('.editable-choice-suggest-recent');
+    this.originalChoices.forEach(function(e) {
+      if (!e.classList.contains('editable-choice-suggest-recent')) {
+        e.parentNode.removeChild(e);
+      }
+    });
+    values.forEach(function(value) {
+      const e = document.createElement('li');
+      e.classList.add('editable-choice-suggest-choice');
+      e.dataset.value = value;
+      e.textContent = value;
+      self.setupChoice(e);
+      list.insertBefore(e, recent);
+    });
+    this.originalChoices = Array.prototype.slice.call(list.querySelectorAll('[data-value]'));
+    this.choiceValues = this.originalChoices.map(function(e) {
+      return e.dataset.value;
+    });
+    this.foldedChoiceValues = this.choiceValues.map(foldValue);
+    this.choiceByValue = {};
+    this.refreshChoices();
+    this.updateInput(true, true);
+    this.checkRestriction();
+  };
+
   SuggestInput.prototype.startSuggesting = function() {
     if (this.isSuggesting()) {
       return;
@@ -307,30 +571,165 @@ document.addEventListener('DOMContentLoaded', function() {
     }
     this.currentInput = input;
 
-    let availables = [];
     const self = this;
-    if (this.filter != null) {
+    if (this.serverSide) {
+      this.requestServerSideFilter(input);
+    } else if (this.filter != null) {
       this.choices.forEach(function(e) {
-        if (self.filter(self.currentInput, e.dataset.value)) {
+        // filter with labels if available, while values are entered.
+        if (self.filter(self.currentInput, e.dataset.label || e.dataset.value)) {
           e.classList.remove('filter-out');
-          availables.push(e);
         } else {
           e.classList.add('filter-out');
           e.classList.remove('active');
         }
       });
-    } else {
-      availables = this.choices;
     }
+    this.selectMatching();
+    if (!suppressSuggestion && !this.isSuggesting()) {
+      this.startSuggesting();
+    }
+  };
+
+  SuggestInput.prototype.selectMatching = function() {
+    const self = this;
     let match = null;
-    availables.forEach(function(e) {
-      if (match == null && e.dataset.value === self.currentInput) {
+    this.choices.forEach(function(e) {
+      if (match == null && !e.classList.contains('filter-out') && e.dataset.value === self.currentInput) {
         match = e;
       }
     });
     this.select(match);
-    if (!suppressSuggestion && !this.isSuggesting()) {
-      this.startSuggesting();
+  };
+
+  SuggestInput.prototype.requestServerSideFilter = function(input) {
+    const self = this;
+    if (this.serverSideFilterTimer != null) {
+      clearTimeout(this.serverSideFilterTimer);
+      this.serverSideFilterTimer = null;
+    }
+    if (!input) {
+      if (this.grouped) {
+        this.applyGroupedFilter(null);
+      } else {
+        this.applyServerSideFilter(null);
+      }
+      return;
+    }
+    this.serverSideFilterTimer = setTimeout(
+      function() {
+        self.serverSideFilterTimer = null;
+        if (self.grouped) {
+          self.requestChildren('', input, function(entries) {
+            if (input !== self.currentInput) {
+              // outdated.
+              return;
+            }
+            self.applyGroupedFilter(entries);
+          });
+          return;
+        }
+        const xhr = new XMLHttpRequest();
+        xhr.open(
+          'GET',
+          self.endpoint + 'suggest'
+            + '?name=' + encodeURIComponent(self.parameterName)
+            + '&value=' + encodeURIComponent(input)
+            + '&upstream=' + encodeURIComponent(self.getUpstreamValue())
+        );
+        xhr.onload = function() {
+          if (xhr.status != 200 || input !== self.currentInput) {
+            // failed or outdated.
+            return;
+          }
+          self.applyServerSideFilter(JSON.parse(xhr.responseText).data);
+        };
+        xhr.send();
+      },
+      SERVER_SIDE_FILTER_DELAY
+    );
+  };
+
+  // values: values returned from the server. null to display all choices.
+  SuggestInput.prototype.applyServerSideFilter = function(values) {
+    const self = this;
+    const ranked = [];
+    if (values == null) {
+      this.originalChoices.forEach(function(e) {
+        e.classList.remove('filter-out');
+        ranked.push(e);
+      });
+    } else {
+      this.originalChoices.forEach(function(e) {
+        e.classList.add('filter-out');
+        e.classList.remove('active');
+      });
+      values.forEach(function(value) {
+        const e = Object.prototype.hasOwnProperty.call(self.choiceByValue, value) ? self.choiceByValue[value] : null;
+        if (e != null && e.classList.contains('filter-out')) {
+          e.classList.remove('filter-out');
+          ranked.push(e);
+        }
+      });
+      // values used recently are not known to the server.
+      const input = this.currentInput.toLowerCase();
+      this.originalChoices.forEach(function(e) {
+        if (
+          e.classList.contains('editable-choice-suggest-recent')
+          && e.classList.contains('filter-out')
+          && e.dataset.value.toLowerCase().indexOf(input) >= 0
+        ) {
+          e.classList.remove('filter-out');
+          ranked.push(e);
+        }
+      });
+    }
+    // display in the order of the result.
+    ranked.forEach(function(e) {
+      e.parentNode.appendChild(e);
+    });
+    this.choices = ranked.concat(this.originalChoices.filter(function(e) {
+      return e.classList.contains('filter-out');
+    }));
+    this.selectMatching();
+  };
+
+  // entries: choices in all groups returned from the server. null to display groups.
+  SuggestInput.prototype.applyGroupedFilter = function(entries) {
+    const self = this;
+    // choices loaded for previous inputs or expanded groups are discarded.
+    Array.prototype.slice.call(this.container.querySelectorAll('.editable-choice-suggest-loaded')).forEach(function(e) {
+      e.parentNode.removeChild(e);
+    });
+    this.groups.forEach(function(e) {
+      e.classList.remove('expanded');
+      if (entries == null) {
+        e.classList.remove('filter-out');
+      } else {
+        e.classList.add('filter-out');
+      }
+    });
+    const list = this.container.querySelector('.editable-choice-suggest-choices');
+    const values = [];
+    if (entries != null) {
+      entries.forEach(function(entry) {
+        if (!Object.prototype.hasOwnProperty.call(self.choiceByValue, entry.value)
+            || self.choiceByValue[entry.value].parentNode == null) {
+          const e = self.createEntry(entry, 0, null);
+          // displayed in applyServerSideFilter.
+          e.classList.add('filter-out');
+          list.appendChild(e);
+        }
+        values.push(entry.value);
+      });
+    }
+    this.refreshChoices();
+    this.applyServerSideFilter(entries == null ? null : values);
+    if (entries == null) {
+      // display groups first as rendered.
+      this.groups.slice().reverse().forEach(function(e) {
+        list.insertBefore(e, list.firstChild);
+      });
     }
   };
 
@@ -338,7 +737,20 @@ document.addEventListener('DOMContentLoaded', function() {
     if (!this.restrict) {
       return false;
     }
-    return !this.choiceValues.includes(this.textbox.value);
+    const value = this.textbox.value;
+    if (this.choiceValues.includes(value)) {
+      return false;
+    }
+    if (this.grouped) {
+      // choices in groups are not known until loaded. left to the server.
+      return false;
+    }
+    if (this.restrictIgnoringCase && this.foldedChoiceValues.includes(foldValue(value))) {
+      return false;
+    }
+    return !this.allowedPatterns.some(function(pattern) {
+      return pattern == null || pattern.test(value);
+    });
   };
 
   SuggestInput.prototype.checkRestriction = function() {
@@ -359,7 +771,18 @@ document.addEventListener('DOMContentLoaded', function() {
         textbox: e.querySelector('.editable-choice-suggest-input-block input[type="text"]'),
         choices: e.querySelectorAll('.editable-choice-suggest-choices [data-value]'),
         filterConfig: JSON.parse(e.dataset.filterConfig),
-        restrict: JSON.parse(e.dataset.restrict)
+        restrict: JSON.parse(e.dataset.restrict),
+        restrictIgnoringCase: JSON.parse(e.dataset.restrictIgnoringCase || 'false'),
+        allowedPatterns: Array.prototype.map.call(
+          e.querySelectorAll('.editable-choice-suggest-allowed-patterns [data-pattern]'),
+          function(p) {
+            return p.dataset.pattern;
+          }
+        ),
+        endpoint: e.dataset.endpoint || null,
+        parameterName: e.dataset.parameterName || null,
+        groups: e.querySelectorAll('.editable-choice-suggest-choices [data-group]'),
+        dependsOn: e.dataset.dependsOn || null
       }
     );
   });
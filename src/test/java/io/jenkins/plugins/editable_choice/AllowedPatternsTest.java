@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class AllowedPatternsTest {
+    @Test
+    public void union() throws Exception {
+        final AllowedPatterns patterns = new AllowedPatterns(Arrays.asList("feature/.+", "(?i)release/\\d+"));
+        assertThat(patterns.matches("feature/a"), is(true));
+        assertThat(patterns.matches("RELEASE/1"), is(true));
+        assertThat(patterns.matches("FEATURE/a"), is(false));
+        assertThat(patterns.matches("main"), is(false));
+    }
+
+    @Test
+    public void backReferences() throws Exception {
+        final AllowedPatterns patterns = new AllowedPatterns(Arrays.asList("(a)\\1", "(b)\\1"));
+        assertThat(patterns.matches("aa"), is(true));
+        assertThat(patterns.matches("bb"), is(true));
+        assertThat(patterns.matches("ab"), is(false));
+    }
+
+    @Test
+    public void patternsBreakingUnion() throws Exception {
+        final AllowedPatterns quoted = new AllowedPatterns(Arrays.asList("\\Qa.b", "main"));
+        assertThat(quoted.matches("a.b"), is(true));
+        assertThat(quoted.matches("axb"), is(false));
+        assertThat(quoted.matches("main"), is(true));
+
+        final AllowedPatterns commented = new AllowedPatterns(Arrays.asList("(?x)foo # comment", "main"));
+        assertThat(commented.matches("foo"), is(true));
+        assertThat(commented.matches("main"), is(true));
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+import org.jvnet.hudson.test.TestBuilder;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.User;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.tasks.ArtifactArchiver;
+import jenkins.model.Jenkins;
+
+public class ArtifactChoiceProviderTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    /**
+     * Writes the content and then sets the result.
+     */
+    private static class WriteBuilder extends TestBuilder {
+        private final String content;
+        private final Result result;
+
+        WriteBuilder(final String content, final Result result) {
+            this.content = content;
+            this.result = result;
+        }
+
+        @Override
+        public boolean perform(final AbstractBuild<?, ?> build, final Launcher launcher, final BuildListener listener)
+                throws InterruptedException, IOException {
+            build.getWorkspace().child("versions.txt").write(content, "UTF-8");
+            build.setResult(result);
+            return true;
+        }
+    }
+
+    private FreeStyleProject createUpstream(final String content) throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject("upstream");
+        p.getBuildersList().add(new WriteBuilder(content, Result.SUCCESS));
+        p.getPublishersList().add(new ArtifactArchiver("versions.txt"));
+        return p;
+    }
+
+    private void build(final FreeStyleProject p, final String content, final Result result) throws Exception {
+        p.getBuildersList().replace(new WriteBuilder(content, result));
+        j.assertBuildStatus(result, p.scheduleBuild2(0));
+    }
+
+    @Test
+    public void configRoundtrip() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoiceProvider(new ArtifactChoiceProvider("release/build", "versions.txt"))
+            .withRestrict(true);
+        p.addProperty(new ParametersDefinitionProperty(def));
+        j.configRoundtrip(p);
+        j.assertEqualDataBoundBeans(
+            def,
+            p.getProperty(ParametersDefinitionProperty.class).getParameterDefinition("PARAM1")
+        );
+    }
+
+    @Test
+    public void cachedUntilNewSuccessfulBuild() throws Exception {
+        final FreeStyleProject upstream = createUpstream("");
+        final ArtifactChoiceProvider provider = new ArtifactChoiceProvider("upstream", "versions.txt");
+        assertThat(provider.getChoices(), is(empty()));
+
+        build(upstream, "# versions\n1.0\n\n1.1\n", Result.SUCCESS);
+        final List<String> choices = provider.getChoices();
+        assertThat(choices, contains("1.0", "1.1"));
+        assertThat(provider.getChoices(), is(sameInstance(choices)));
+
+        // failed builds are ignored.
+        build(upstream, "1.0\n1.1\n1.2\n", Result.FAILURE);
+        assertThat(provider.getChoices(), is(sameInstance(choices)));
+
+        build(upstream, "1.0\n1.1\n1.2\n", Result.SUCCESS);
+        assertThat(provider.getChoices(), contains("1.0", "1.1", "1.2"));
+
+        upstream.getLastSuccessfulBuild().delete();
+        assertThat(provider.getChoices(), contains("1.0", "1.1"));
+    }
+
+    @Test
+    public void jobReplaced() throws Exception {
+        final FreeStyleProject upstream = createUpstream("1.0\n");
+        j.buildAndAssertSuccess(upstream);
+        build(upstream, "1.1\n", Result.SUCCESS);
+        final ArtifactChoiceProvider provider = new ArtifactChoiceProvider("upstream", "versions.txt");
+        assertThat(provider.getChoices(), contains("1.1"));
+
+        upstream.delete();
+        j.buildAndAssertSuccess(createUpstream("2.0\n"));
+        assertThat(provider.getChoices(), contains("2.0"));
+
+        j.jenkins.getItemByFullName("upstream", FreeStyleProject.class).renameTo("renamed");
+        j.buildAndAssertSuccess(createUpstream("3.0\n"));
+        assertThat(provider.getChoices(), contains("3.0"));
+    }
+
+    @Test
+    public void restrict() throws Exception {
+        final FreeStyleProject upstream = createUpstream("1.0\n");
+        j.buildAndAssertSuccess(upstream);
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoiceProvider(new ArtifactChoiceProvider("upstream", "versions.txt"))
+            .withRestrict(true);
+        def.createValue("1.0");
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("1.1"));
+    }
+
+    @Test
+    public void permission() throws Exception {
+        final FreeStyleProject upstream = createUpstream("1.0\n");
+        j.buildAndAssertSuccess(upstream);
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        j.jenkins.setAuthorizationStrategy(
+            new MockAuthorizationStrategy()
+                .grant(Jenkins.READ).everywhere().to("alice", "bob")
+                .grant(Item.READ).onItems(upstream).to("alice", "bob")
+                .grant(Run.ARTIFACTS).onItems(upstream).to("alice")
+        );
+        final ArtifactChoiceProvider provider = new ArtifactChoiceProvider("upstream", "versions.txt");
+        try (ACLContext ctx = ACL.as(User.getById("alice", true))) {
+            assertThat(provider.getChoices(), contains("1.0"));
+        }
+        try (ACLContext ctx = ACL.as(User.getById("bob", true))) {
+            assertThat(provider.getChoices(), is(empty()));
+        }
+    }
+}
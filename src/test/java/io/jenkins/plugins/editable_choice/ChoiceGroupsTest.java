@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class ChoiceGroupsTest {
+    private static final List<String> CHOICES = Arrays.asList(
+        "service-b/prod",
+        "main",
+        "service-a/prod/eu",
+        "service-a/staging",
+        "service-a/prod/us",
+        "service-b/staging"
+    );
+
+    private static List<String> describe(final List<ChoiceGroups.Entry> entries) {
+        return entries.stream()
+            .map(e -> e.isGroup() ? String.format("%s(%d)", e.getLabel(), e.getCount()) : e.getLabel())
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void topLevel() throws Exception {
+        final ChoiceGroups groups = new ChoiceIndex(CHOICES).getGroups("/");
+        assertThat(describe(groups.getTopLevel()), contains("service-b/(2)", "main", "service-a/(3)"));
+    }
+
+    @Test
+    public void children() throws Exception {
+        final ChoiceGroups groups = new ChoiceIndex(CHOICES).getGroups("/");
+        assertThat(describe(groups.getChildren("service-a/")), contains("prod/(2)", "service-a/staging"));
+        assertThat(describe(groups.getChildren("service-a/prod/")), contains("service-a/prod/eu", "service-a/prod/us"));
+        assertThat(groups.getChildren("service-c/"), empty());
+    }
+
+    @Test
+    public void labels() throws Exception {
+        final ChoiceGroups groups = new ChoiceIndex(
+            CHOICES,
+            Arrays.asList("B Production", "Main")
+        ).getGroups("/");
+        assertThat(describe(groups.getChildren("service-b/")), contains("B Production", "service-b/staging"));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsSessionRule;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersDefinitionProperty;
+
+public class ChoiceIndexWarmerTest {
+    @Rule
+    public JenkinsSessionRule sessions = new JenkinsSessionRule();
+
+    private static EditableChoiceParameterDefinition getDefinition(final FreeStyleProject p, final String name) {
+        return (EditableChoiceParameterDefinition) p.getProperty(ParametersDefinitionProperty.class)
+            .getParameterDefinition(name);
+    }
+
+    @Test
+    public void buildIndicesAfterJobsLoaded() throws Throwable {
+        sessions.then(j -> {
+            final FreeStyleProject p = j.createFreeStyleProject("p");
+            p.addProperty(new ParametersDefinitionProperty(
+                new EditableChoiceParameterDefinition("STATIC")
+                    .withChoices(Arrays.asList("b", "a"))
+                    .withSortMode(SortMode.LEXICAL),
+                new EditableChoiceParameterDefinition("PER_USER")
+                    .withChoiceProvider(new JobNameChoiceProvider())
+            ));
+        });
+        sessions.then(j -> {
+            final FreeStyleProject p = j.jenkins.getItemByFullName("p", FreeStyleProject.class);
+            final EditableChoiceParameterDefinition def = getDefinition(p, "STATIC");
+            final long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (def.getBuiltChoiceIndex() == null && System.currentTimeMillis() < timeout) {
+                Thread.sleep(100);
+            }
+            assertThat(def.getBuiltChoiceIndex(), is(notNullValue()));
+            assertThat(def.getBuiltChoiceIndex().getValues(), contains("a", "b"));
+            // choices depending on users are not loaded as the system.
+            assertThat(getDefinition(p, "PER_USER").getBuiltChoiceIndex(), is(nullValue()));
+        });
+    }
+}
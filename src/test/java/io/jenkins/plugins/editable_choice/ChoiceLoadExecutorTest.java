@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ChoiceLoadExecutorTest {
+    private static void limitsConcurrency(final boolean useVirtualThreads) throws Exception {
+        final ChoiceLoadExecutor executor = new ChoiceLoadExecutor(2, 100, useVirtualThreads);
+        try {
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger maxRunning = new AtomicInteger();
+            final List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; ++i) {
+                final int n = i;
+                futures.add(executor.submit("source", () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(10);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    return n;
+                }));
+            }
+            for (int i = 0; i < 20; ++i) {
+                assertThat(futures.get(i).get(10, TimeUnit.SECONDS), is(i));
+            }
+            assertThat(maxRunning.get(), lessThanOrEqualTo(2));
+            final ChoiceLoadExecutor.SourceMetrics metrics = executor.getMetrics().get("source");
+            assertThat(metrics.getCompleted(), is(20L));
+            assertThat(metrics.getQueued(), is(0));
+            assertThat(metrics.getRunning(), is(0));
+        } finally {
+            executor.close();
+        }
+    }
+
+    @Test
+    public void limitsConcurrencyWithPlatformThreads() throws Exception {
+        limitsConcurrency(false);
+    }
+
+    @Test
+    public void limitsConcurrencyWithVirtualThreadsIfAvailable() throws Exception {
+        limitsConcurrency(true);
+    }
+
+    private static void rejectsWhenQueueIsFull(final boolean useVirtualThreads) throws Exception {
+        final ChoiceLoadExecutor executor = new ChoiceLoadExecutor(1, 1, useVirtualThreads);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            final CompletableFuture<Boolean> running = executor.submit("a", () -> {
+                try {
+                    return release.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            });
+            final CompletableFuture<String> queued = executor.submit("b", () -> "queued");
+            final CompletableFuture<String> rejected = executor.submit("b", () -> "rejected");
+            final ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+            assertThat(e.getCause(), instanceOf(RejectedExecutionException.class));
+
+            assertThat(executor.getMetrics().get("a").getRunning() + executor.getMetrics().get("a").getQueued(), is(1));
+            assertThat(executor.getMetrics().get("b").getQueued(), is(1));
+            assertThat(executor.getMetrics().get("b").getRejected(), is(1L));
+
+            release.countDown();
+            assertThat(running.get(10, TimeUnit.SECONDS), is(true));
+            assertThat(queued.get(10, TimeUnit.SECONDS), is("queued"));
+        } finally {
+            executor.close();
+        }
+    }
+
+    @Test
+    public void rejectsWhenQueueIsFullWithPlatformThreads() throws Exception {
+        rejectsWhenQueueIsFull(false);
+    }
+
+    @Test
+    public void rejectsWhenQueueIsFullWithVirtualThreadsIfAvailable() throws Exception {
+        rejectsWhenQueueIsFull(true);
+    }
+
+    @Test
+    public void countsFailures() throws Exception {
+        final ChoiceLoadExecutor executor = new ChoiceLoadExecutor(1, 1, false);
+        try {
+            final CompletableFuture<String> failed = executor.submit("source", () -> {
+                throw new IllegalStateException();
+            });
+            final ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+            assertThat(executor.getMetrics().get("source").getFailed(), is(1L));
+        } finally {
+            executor.close();
+        }
+    }
+}
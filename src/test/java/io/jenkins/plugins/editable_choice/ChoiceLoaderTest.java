@@ -0,0 +1,249 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ChoiceLoaderTest {
+    private static final long WAIT_MILLIS = 500;
+    private static final long LONG_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ChoiceLoadExecutor loadExecutor = new ChoiceLoadExecutor(4, 16, true);
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        loadExecutor.close();
+    }
+
+    /**
+     * Returns the number of loads as a choice, blocking while the latch is set.
+     */
+    private static class BlockingProvider extends ChoiceProvider {
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicInteger loads = new AtomicInteger();
+        private transient volatile CountDownLatch started;
+        private transient volatile CountDownLatch release;
+
+        void block() {
+            started = new CountDownLatch(1);
+            release = new CountDownLatch(1);
+        }
+
+        void awaitStarted() throws InterruptedException {
+            assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+        }
+
+        void unblock() {
+            release.countDown();
+        }
+
+        @Override
+        public List<String> getChoices() {
+            final int count = loads.incrementAndGet();
+            final CountDownLatch s = started;
+            final CountDownLatch r = release;
+            if (s != null) {
+                s.countDown();
+                try {
+                    r.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (count < 0) {
+                throw new IllegalStateException();
+            }
+            return Collections.singletonList(Integer.toString(count));
+        }
+    }
+
+    private List<Future<List<String>>> loadConcurrently(
+        final ChoiceLoader loader,
+        final ChoiceProvider provider,
+        final int count
+    ) throws InterruptedException {
+        final CountDownLatch arrived = new CountDownLatch(count);
+        final List<Future<List<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            futures.add(executor.submit(() -> {
+                arrived.countDown();
+                return loader.load(provider);
+            }));
+        }
+        assertThat(arrived.await(10, TimeUnit.SECONDS), is(true));
+        // let them reach the running load.
+        Thread.sleep(WAIT_MILLIS);
+        return futures;
+    }
+
+    @Test
+    public void sequentialLoadsAreFresh() throws Exception {
+        final ChoiceLoader loader = new ChoiceLoader(0, 0, LONG_MILLIS, loadExecutor);
+        final BlockingProvider provider = new BlockingProvider();
+        assertThat(loader.load(provider), contains("1"));
+        Thread.sleep(10);
+        assertThat(loader.load(provider), contains("2"));
+    }
+
+    @Test
+    public void recentChoicesAreNotLoaded() throws Exception {
+        final ChoiceLoader loader = new ChoiceLoader(LONG_MILLIS, LONG_MILLIS, LONG_MILLIS, loadExecutor);
+        final BlockingProvider provider = new BlockingProvider();
+        assertThat(loader.load(provider), contains("1"));
+        assertThat(loader.load(provider), contains("1"));
+        assertThat(provider.loads.get(), is(1));
+    }
+
+    @Test
+    public void concurrentLoadsShareOneLoad() throws Exception {
+        final ChoiceLoader loader = new ChoiceLoader(0, LONG_MILLIS, LONG_MILLIS, loadExecutor);
+        final BlockingProvider provider = new BlockingProvider();
+        provider.block();
+        final Future<List<String>> first = executor.submit(() -> loader.load(provider));
+        provider.awaitStarted();
+        final List<Future<List<String>>> others = loadConcurrently(loader, provider, 10);
+        provider.unblock();
+        assertThat(first.get(10, TimeUnit.SECONDS), contains("1"));
+        for (final Future<List<String>> f : others) {
+            assertThat(f.get(10, TimeUnit.SECONDS), contains("1"));
+        }
+        assertThat(provider.loads.get(), is(1));
+    }
+
+    @Test
+    public void staleWhileRevalidate() throws Exception {
+        final ChoiceLoader loader = new ChoiceLoader(WAIT_MILLIS, LONG_MILLIS, LONG_MILLIS, loadExecutor);
+        final BlockingProvider provider = new BlockingProvider();
+        assertThat(loader.load(provider), contains("1"));
+        Thread.sleep(WAIT_MILLIS * 2);
+
+        provider.block();
+        // served without waiting for the load started to refresh choices.
+        assertThat(loader.load(provider), contains("1"));
+        provider.awaitStarted();
+        for (final Future<List<String>> f : loadConcurrently(loader, provider, 10)) {
+            assertThat(f.get(10, TimeUnit.SECONDS), contains("1"));
+        }
+        provider.unblock();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!loader.load(provider).contains("2")) {
+            assertThat(System.nanoTime() < deadline, is(true));
+            Thread.sleep(10);
+        }
+        assertThat(provider.loads.get(), is(2));
+    }
+
+    @Test
+    public void tooStaleWaits() throws Exception {
+        final ChoiceLoader loader = new ChoiceLoader(0, 0, LONG_MILLIS, loadExecutor);
+        final BlockingProvider provider = new BlockingProvider();
+        assertThat(loader.load(provider), contains("1"));
+        Thread.sleep(10);
+
+        provider.block();
+        final Future<List<String>> reloading = executor.submit(() -> loader.load(provider));
+        provider.awaitStarted();
+        final List<Future<List<String>>> others = loadConcurrently(loader, provider, 10);
+        provider.unblock();
+        assertThat(reloading.get(10, TimeUnit.SECONDS), contains("2"));
+        for (final Future<List<String>> f : others) {
+            assertThat(f.get(10, TimeUnit.SECONDS), contains("2"));
+        }
+        assertThat(provider.loads.get(), is(2));
+    }
+
+    @Test
+    public void failure() throws Exception {
+        final ChoiceLoader loader = new ChoiceLoader(LONG_MILLIS, LONG_MILLIS, LONG_MILLIS, loadExecutor);
+        final BlockingProvider provider = new BlockingProvider();
+        provider.loads.set(Integer.MIN_VALUE);
+        assertThrows(IllegalStateException.class, () -> loader.load(provider));
+        // the next load runs again.
+        provider.loads.set(0);
+        assertThat(loader.load(provider), contains("1"));
+    }
+
+    @Test
+    public void rejectedLoadRunsInCaller() throws Exception {
+        final ChoiceLoadExecutor rejecting = new ChoiceLoadExecutor(1, 1, false);
+        try {
+            final ChoiceLoader loader = new ChoiceLoader(0, 0, LONG_MILLIS, rejecting);
+            final BlockingProvider busy = new BlockingProvider();
+            busy.block();
+            final Future<List<String>> running = executor.submit(() -> loader.load(busy));
+            busy.awaitStarted();
+            final BlockingProvider queued = new BlockingProvider();
+            final Future<List<String>> waiting = executor.submit(() -> loader.load(queued));
+            Thread.sleep(WAIT_MILLIS);
+
+            final BlockingProvider provider = new BlockingProvider();
+            assertThat(loader.load(provider), contains("1"));
+            busy.unblock();
+            assertThat(running.get(10, TimeUnit.SECONDS), contains("1"));
+            assertThat(waiting.get(10, TimeUnit.SECONDS), contains("1"));
+        } finally {
+            rejecting.close();
+        }
+    }
+
+    @Test
+    public void hungLoadTimesOut() throws Exception {
+        final ChoiceLoader loader = new ChoiceLoader(0, 0, WAIT_MILLIS, loadExecutor);
+        final BlockingProvider provider = new BlockingProvider();
+        provider.block();
+        assertThat(loader.load(provider), is(empty()));
+        provider.unblock();
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (loader.load(provider).isEmpty()) {
+            assertThat(System.nanoTime() < deadline, is(true));
+            Thread.sleep(10);
+        }
+        Thread.sleep(10);
+        provider.block();
+        // serves the last choices.
+        assertThat(loader.load(provider), contains("1"));
+        provider.unblock();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ControllerPathsTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @After
+    public void clearAllowedDirectories() {
+        System.clearProperty(ControllerPaths.ALLOWED_DIRECTORIES);
+    }
+
+    @Test
+    public void nothingAllowedByDefault() throws Exception {
+        assertThat(ControllerPaths.resolve(tmp.getRoot().toString()), is(nullValue()));
+    }
+
+    @Test
+    public void allowedDirectories() throws Exception {
+        final Path allowed1 = tmp.newFolder("allowed1").toPath();
+        final Path allowed2 = tmp.newFolder("allowed2").toPath();
+        final Path other = tmp.newFolder("other").toPath();
+        System.setProperty(
+            ControllerPaths.ALLOWED_DIRECTORIES,
+            allowed1 + File.pathSeparator + " " + allowed2 + File.pathSeparator
+        );
+        assertThat(ControllerPaths.resolve(allowed1.toString()), equalTo(allowed1.toRealPath()));
+        assertThat(
+            ControllerPaths.resolve(allowed2.resolve("sub").toString()),
+            equalTo(allowed2.toRealPath().resolve("sub"))
+        );
+        assertThat(ControllerPaths.resolve(other.toString()), is(nullValue()));
+        assertThat(ControllerPaths.resolve(allowed1.resolve("../other").toString()), is(nullValue()));
+        // not a prefix of the name
+        assertThat(ControllerPaths.resolve(allowed1 + "x"), is(nullValue()));
+    }
+
+    @Test
+    public void symbolicLinks() throws Exception {
+        final Path allowed = tmp.newFolder("allowed").toPath();
+        final Path other = tmp.newFolder("other").toPath();
+        final Path link = Files.createSymbolicLink(allowed.resolve("link"), other);
+        System.setProperty(ControllerPaths.ALLOWED_DIRECTORIES, allowed.toString());
+        assertThat(ControllerPaths.resolve(link.toString()), is(nullValue()));
+        assertThat(ControllerPaths.isIn(link.resolve("file"), allowed), is(false));
+        assertThat(ControllerPaths.isIn(allowed.resolve("file"), allowed), is(true));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersDefinitionProperty;
+
+public class DirectoryChoiceProviderTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Before
+    public void allowTemporaryFolder() {
+        System.setProperty(ControllerPaths.ALLOWED_DIRECTORIES, tmp.getRoot().toString());
+    }
+
+    @After
+    public void clearAllowedDirectories() {
+        System.clearProperty(ControllerPaths.ALLOWED_DIRECTORIES);
+    }
+
+    private static void waitFor(final ChoiceProvider provider, final String... expected) throws Exception {
+        final List<String> expectedList = Arrays.asList(expected);
+        final long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (!provider.getChoices().equals(expectedList) && System.currentTimeMillis() < timeout) {
+            Thread.sleep(100);
+        }
+        assertThat(provider.getChoices(), contains(expected));
+    }
+
+    @Test
+    public void configRoundtrip() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoiceProvider(new DirectoryChoiceProvider("/srv/deploy/configs").withGlob("*.yaml"))
+            .withRestrict(true);
+        p.addProperty(new ParametersDefinitionProperty(def));
+        j.configRoundtrip(p);
+        j.assertEqualDataBoundBeans(
+            def,
+            p.getProperty(ParametersDefinitionProperty.class).getParameterDefinition("PARAM1")
+        );
+    }
+
+    @Test
+    public void updatedWithFileEvents() throws Exception {
+        final Path dir = tmp.newFolder("configs").toPath();
+        Files.createFile(dir.resolve("b.yaml"));
+        Files.createFile(dir.resolve("a.yaml"));
+        Files.createFile(dir.resolve("readme.txt"));
+        Files.createDirectory(dir.resolve("sub.yaml"));
+
+        final DirectoryChoiceProvider provider = new DirectoryChoiceProvider(dir.toString()).withGlob("*.yaml");
+        final List<String> choices = provider.getChoices();
+        assertThat(choices, contains("a.yaml", "b.yaml"));
+        // the same instance while unchanged
+        assertThat(provider.getChoices(), is(sameInstance(choices)));
+        assertThat(
+            new DirectoryChoiceProvider(dir.toString()).getChoices(),
+            contains("a.yaml", "b.yaml", "readme.txt")
+        );
+
+        Files.createFile(dir.resolve("c.yaml"));
+        Files.delete(dir.resolve("a.yaml"));
+        waitFor(provider, "b.yaml", "c.yaml");
+    }
+
+    @Test
+    public void restrict() throws Exception {
+        final Path dir = tmp.newFolder("configs").toPath();
+        Files.createFile(dir.resolve("a.yaml"));
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoiceProvider(new DirectoryChoiceProvider(dir.toString()).withGlob("*.yaml"))
+            .withRestrict(true);
+        def.createValue("a.yaml");
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("b.yaml"));
+    }
+
+    @Test
+    public void stopWatchingIdleDirectories() throws Exception {
+        final Path dir = tmp.newFolder("configs").toPath();
+        Files.createFile(dir.resolve("a.yaml"));
+        final DirectoryIndex index = DirectoryIndex.get();
+        final DirectoryChoiceProvider provider = new DirectoryChoiceProvider(dir.toString());
+        final int watched = index.getWatchedCount();
+        assertThat(provider.getChoices(), contains("a.yaml"));
+        assertThat(index.getWatchedCount(), is(watched + 1));
+
+        index.expire(System.currentTimeMillis() + DirectoryIndex.IDLE_MILLIS + 1);
+        assertThat(index.getWatchedCount(), is(0));
+
+        // watched again when requested.
+        Files.createFile(dir.resolve("b.yaml"));
+        assertThat(provider.getChoices(), contains("a.yaml", "b.yaml"));
+        assertThat(index.getWatchedCount(), is(1));
+    }
+
+    @Test
+    public void notAllowed() throws Exception {
+        final Path dir = tmp.newFolder("configs").toPath();
+        Files.createFile(dir.resolve("a.yaml"));
+        System.setProperty(ControllerPaths.ALLOWED_DIRECTORIES, tmp.newFolder("other").toString());
+        assertThat(new DirectoryChoiceProvider(dir.toString()).getChoices(), is(empty()));
+        assertThat(new DirectoryChoiceProvider(dir.resolve("../configs").toString()).getChoices(), is(empty()));
+    }
+}
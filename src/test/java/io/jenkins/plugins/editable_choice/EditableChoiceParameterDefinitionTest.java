@@ -24,12 +24,26 @@
 package io.jenkins.plugins.editable_choice;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
 
+import org.htmlunit.html.DomElement;
 import org.htmlunit.html.HtmlElement;
 import org.htmlunit.html.HtmlPage;
 import org.htmlunit.html.HtmlTextInput;
@@ -42,7 +56,13 @@ import org.jvnet.hudson.test.JenkinsRule.WebClient;
 
 import hudson.model.FreeStyleProject;
 import hudson.model.Job;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
 import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Run;
+import hudson.model.StringParameterValue;
+import hudson.util.FormValidation;
+import net.sf.json.JSONObject;
 
 public class EditableChoiceParameterDefinitionTest {
     @Rule
@@ -67,6 +87,22 @@ public class EditableChoiceParameterDefinitionTest {
         j.waitUntilNoActivity();
     }
 
+    /**
+     * Get values displayed as suggestions in the build page.
+     *
+     * @param p          job to get the build page
+     * @param paramName  parameter name
+     * @param selector   selector for suggested values
+     * @return values of suggested items
+     * @throws Exception any exceptions
+     */
+    private List<String> getSuggestedValues(final Job<?, ?> p, final String paramName, final String selector) throws Exception {
+        final HtmlPage page = j.createWebClient().getPage(p, "build?delay=0sec");
+        return page.querySelectorAll(String.format("[data-parameter='%s'] %s", paramName, selector)).stream()
+            .map(e -> ((DomElement) e).getAttribute("data-value"))
+            .collect(Collectors.toList());
+    }
+
     @Test
     public void configSimple() throws Exception {
         final FreeStyleProject p = j.createFreeStyleProject();
@@ -114,6 +150,24 @@ public class EditableChoiceParameterDefinitionTest {
         j.configRoundtrip(p);
     }
 
+    @Test
+    public void configDependentChoices() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("CLUSTER")
+            .withChoices(Arrays.asList("default"))
+            .withDependsOn("REGION")
+            .withDependentChoices(Arrays.asList(
+                new DependentChoices("eu-west-1").withChoices(Arrays.asList("euw1-a", "euw1-b")),
+                new DependentChoices("us-east-1").withChoices(Arrays.asList("use1-a"))
+            ));
+        p.addProperty(new ParametersDefinitionProperty(def));
+        j.configRoundtrip(p);
+        j.assertEqualDataBoundBeans(
+            def,
+            p.getProperty(ParametersDefinitionProperty.class).getParameterDefinition("CLUSTER")
+        );
+    }
+
     @Test
     public void useTopMost() throws Exception {
         final FreeStyleProject p = j.createFreeStyleProject();
@@ -296,4 +350,391 @@ public class EditableChoiceParameterDefinitionTest {
         // prevents submitting form.
         assertThat(p.getLastBuild(), is(nullValue()));
     }
+
+    @Test
+    public void orderByUsage() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        p.addProperty(new ParametersDefinitionProperty(
+            new EditableChoiceParameterDefinition("PARAM1")
+                .withChoices(Arrays.asList("Apple", "Grape", "Orange"))
+                .withOrderByUsage(true)
+        ));
+        runBuildFromView(p, "PARAM1", "Orange");
+        runBuildFromView(p, "PARAM1", "Orange");
+        runBuildFromView(p, "PARAM1", "Grape");
+        UsageStatisticsStore.get().flush();
+        assertThat(
+            getSuggestedValues(p, "PARAM1", ".editable-choice-suggest-choice"),
+            contains("Orange", "Grape", "Apple")
+        );
+    }
+
+    @Test
+    public void recentValues() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        p.addProperty(new ParametersDefinitionProperty(
+            new EditableChoiceParameterDefinition("PARAM1")
+                .withChoices(Arrays.asList("Apple", "Grape", "Orange"))
+                .withNumberOfRecentValues(5)
+        ));
+        runBuildFromView(p, "PARAM1", "Grapefruit");
+        runBuildFromView(p, "PARAM1", "Orange");
+        runBuildFromView(p, "PARAM1", "Lemon");
+        UsageStatisticsStore.get().flush();
+        assertThat(
+            getSuggestedValues(p, "PARAM1", ".editable-choice-suggest-recent"),
+            contains("Lemon", "Grapefruit")
+        );
+    }
+
+    @Test
+    public void restrictErrorTellsSimilarChoices() throws Exception {
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoices(Arrays.asList("release-2.2", "release-2.3", "develop"))
+            .withRestrict(true);
+        final IllegalArgumentException e = assertThrows(
+            IllegalArgumentException.class,
+            () -> def.createValue("relase-2.3")
+        );
+        assertThat(e.getMessage(), containsString("'release-2.3'"));
+    }
+
+    @Test
+    public void labels() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        p.addProperty(new ParametersDefinitionProperty(
+            new EditableChoiceParameterDefinition("PARAM1")
+                .withChoices(Arrays.asList("prod-euw1", "stg-euw1", "dev"))
+                .withLabels(Arrays.asList("Production (eu-west-1)", "Staging (eu-west-1)"))
+                .withRestrict(true)
+                .withFilterConfig(new FilterConfig().withMatchMode(FilterConfig.MatchMode.TOKENS))
+        ));
+        final HtmlPage page = j.createWebClient().getPage(p, "build?delay=0sec");
+        final List<String> labels = page.querySelectorAll("[data-parameter='PARAM1'] [data-value]").stream()
+            .map(e -> ((DomElement) e).getTextContent())
+            .collect(Collectors.toList());
+        assertThat(labels, contains("Production (eu-west-1)", "Staging (eu-west-1)", "dev"));
+
+        final JSONObject result = j.getJSON(String.format(
+            "%sdescriptorByName/%s/suggest?name=PARAM1&value=eu%%20prod",
+            p.getUrl(),
+            EditableChoiceParameterDefinition.class.getName()
+        )).getJSONObject();
+        assertThat(result.getJSONArray("data").toString(), equalTo("[\"prod-euw1\"]"));
+
+        runBuildFromView(p, "PARAM1", "prod-euw1");
+        j.assertBuildStatusSuccess(p.getLastBuild());
+        runBuildFromView(p, "PARAM1", "Production (eu-west-1)");
+        assertThat(p.getLastBuild().getNumber(), equalTo(1));
+    }
+
+    @Test
+    public void export() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        p.addProperty(new ParametersDefinitionProperty(
+            new EditableChoiceParameterDefinition("PARAM1")
+                .withChoices(Arrays.asList("prod-euw1", "dev \"quoted\""))
+                .withLabels(Arrays.asList("Production (eu-west-1)"))
+        ));
+        final WebClient wc = j.createWebClient();
+        final String url = String.format(
+            "%sdescriptorByName/%s/export?name=PARAM1",
+            p.getUrl(),
+            EditableChoiceParameterDefinition.class.getName()
+        );
+        final JSONObject result = wc.getJSON(url).getJSONObject();
+        assertThat(
+            result.getJSONArray("data").toString(),
+            equalTo("[{\"value\":\"prod-euw1\",\"label\":\"Production (eu-west-1)\"},"
+                + "{\"value\":\"dev \\\"quoted\\\"\",\"label\":\"dev \\\"quoted\\\"\"}]")
+        );
+        assertThat(
+            wc.goTo(url, "application/json").getWebResponse().getResponseHeaderValue("Content-Disposition"),
+            containsString("PARAM1.json")
+        );
+    }
+
+    @Test
+    public void groups() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        p.addProperty(new ParametersDefinitionProperty(
+            new EditableChoiceParameterDefinition("PARAM1")
+                .withChoices(Arrays.asList("service-a/prod", "service-a/staging", "service-b/prod", "main"))
+                .withGroupDelimiter("/")
+        ));
+        final HtmlPage page = j.createWebClient().getPage(p, "build?delay=0sec");
+        assertThat(
+            page.querySelectorAll("[data-parameter='PARAM1'] [data-group]").stream()
+                .map(e -> ((DomElement) e).getAttribute("data-group"))
+                .collect(Collectors.toList()),
+            contains("service-a/", "service-b/")
+        );
+        assertThat(getSuggestedValues(p, "PARAM1", "[data-value]"), contains("main"));
+
+        final JSONObject children = j.getJSON(String.format(
+            "%sdescriptorByName/%s/children?name=PARAM1&path=service-a/",
+            p.getUrl(),
+            EditableChoiceParameterDefinition.class.getName()
+        )).getJSONObject();
+        assertThat(
+            children.getJSONArray("data").stream()
+                .map(e -> ((JSONObject) e).getString("value"))
+                .collect(Collectors.toList()),
+            contains("service-a/prod", "service-a/staging")
+        );
+
+        final JSONObject found = j.getJSON(String.format(
+            "%sdescriptorByName/%s/children?name=PARAM1&value=prod",
+            p.getUrl(),
+            EditableChoiceParameterDefinition.class.getName()
+        )).getJSONObject();
+        assertThat(
+            found.getJSONArray("data").stream()
+                .map(e -> ((JSONObject) e).getString("value"))
+                .collect(Collectors.toList()),
+            contains("service-a/prod", "service-b/prod")
+        );
+    }
+
+    @Test
+    public void dependentChoices() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        p.addProperty(new ParametersDefinitionProperty(
+            new EditableChoiceParameterDefinition("REGION")
+                .withChoices(Arrays.asList("eu-west-1", "us-east-1", "ap-northeast-1")),
+            new EditableChoiceParameterDefinition("CLUSTER")
+                .withChoices(Arrays.asList("default"))
+                .withRestrict(true)
+                .withDependsOn("REGION")
+                .withDependentChoices(Arrays.asList(
+                    new DependentChoices("eu-west-1").withChoices(Arrays.asList("euw1-a", "euw1-b")),
+                    new DependentChoices("us-east-1").withChoices(Arrays.asList("use1-a"))
+                ))
+        ));
+        // for the default value of REGION.
+        assertThat(getSuggestedValues(p, "CLUSTER", "[data-value]"), contains("euw1-a", "euw1-b"));
+
+        final String url = String.format(
+            "%sdescriptorByName/%s/dependentChoices?name=CLUSTER&upstream=%%s",
+            p.getUrl(),
+            EditableChoiceParameterDefinition.class.getName()
+        );
+        assertThat(
+            j.getJSON(String.format(url, "us-east-1")).getJSONObject().getJSONArray("data").toString(),
+            equalTo("[\"use1-a\"]")
+        );
+        assertThat(
+            j.getJSON(String.format(url, "ap-northeast-1")).getJSONObject().getJSONArray("data").toString(),
+            equalTo("[\"default\"]")
+        );
+
+        final EditableChoiceParameterDefinition def = (EditableChoiceParameterDefinition) p
+            .getProperty(ParametersDefinitionProperty.class)
+            .getParameterDefinition("CLUSTER");
+        assertThat(def.createValue("use1-a"), equalTo(new EditableChoiceParameterValue("CLUSTER", "use1-a")));
+        assertThat(def.createValue("default"), equalTo(new EditableChoiceParameterValue("CLUSTER", "default")));
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("use1-b"));
+    }
+
+    @Test
+    public void dependentChoicesForSubmittedUpstreamValue() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        p.addProperty(new ParametersDefinitionProperty(
+            new EditableChoiceParameterDefinition("REGION")
+                .withChoices(Arrays.asList("eu-west-1", "us-east-1")),
+            new EditableChoiceParameterDefinition("CLUSTER")
+                .withChoices(Arrays.asList("default"))
+                .withRestrict(true)
+                .withDependsOn("REGION")
+                .withDependentChoices(Arrays.asList(
+                    new DependentChoices("eu-west-1").withChoices(Arrays.asList("euw1-a", "euw1-b")),
+                    new DependentChoices("us-east-1").withChoices(Arrays.asList("use1-a"))
+                ))
+        ));
+        // not a choice for eu-west-1, the default value of REGION.
+        runBuildFromView(p, "CLUSTER", "use1-a");
+        assertThat(p.getLastBuild(), is(nullValue()));
+
+        final WebClient wc = j.createWebClient();
+        final HtmlPage page = wc.getPage(p, "build?delay=0sec");
+        final HtmlElement region = page.querySelector("[data-parameter='REGION']");
+        region.<HtmlTextInput>getOneHtmlElementByAttribute("input", "name", "value").setValue("us-east-1");
+        final HtmlElement cluster = page.querySelector("[data-parameter='CLUSTER']");
+        cluster.<HtmlTextInput>getOneHtmlElementByAttribute("input", "name", "value").setValue("use1-a");
+        j.submit(page.getFormByName("parameters"));
+        j.waitUntilNoActivity();
+        assertThat(
+            p.getLastBuild().getAction(ParametersAction.class).getParameter("CLUSTER"),
+            equalTo(new EditableChoiceParameterValue("CLUSTER", "use1-a"))
+        );
+    }
+
+    @Test
+    public void restrictIgnoringCase() throws Exception {
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoices(Arrays.asList("Caf\u00e9", "Main"))
+            .withRestrict(true)
+            .withRestrictIgnoringCase(true);
+        assertThat(def.createValue("Main"), equalTo(new EditableChoiceParameterValue("PARAM1", "Main")));
+        assertThat(def.createValue("MAIN"), equalTo(new EditableChoiceParameterValue("PARAM1", "Main")));
+        // "E" followed by a combining acute accent
+        assertThat(def.createValue("CAFE\u0301"), equalTo(new EditableChoiceParameterValue("PARAM1", "Caf\u00e9")));
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("Cafe"));
+
+        def.setRestrictIgnoringCase(false);
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("MAIN"));
+    }
+
+    @Test
+    public void restrictWithAllowedPatterns() throws Exception {
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoices(Arrays.asList("develop", "main"))
+            .withRestrict(true)
+            .withAllowedPatterns(Arrays.asList("feature/.+", "release/\\d+\\.\\d+"));
+        assertThat(def.createValue("main"), equalTo(new EditableChoiceParameterValue("PARAM1", "main")));
+        assertThat(def.createValue("feature/foo"), equalTo(new EditableChoiceParameterValue("PARAM1", "feature/foo")));
+        assertThat(def.createValue("release/2.3"), equalTo(new EditableChoiceParameterValue("PARAM1", "release/2.3")));
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("feature/"));
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("release/2.3.1"));
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("hotfix/feature/foo"));
+    }
+
+    @Test
+    public void malformedAllowedPatterns() throws Exception {
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1");
+        assertThrows(PatternSyntaxException.class, () -> def.setAllowedPatterns(Arrays.asList("feature/(")));
+        final EditableChoiceParameterDefinition.DescriptorImpl d
+            = j.jenkins.getDescriptorByType(EditableChoiceParameterDefinition.DescriptorImpl.class);
+        assertThat(d.doCheckAllowedPatternsWithText("feature/.+\n").kind, equalTo(FormValidation.Kind.OK));
+        assertThat(d.doCheckAllowedPatternsWithText("feature/.+\nfeature/(\n").kind, equalTo(FormValidation.Kind.ERROR));
+    }
+
+    @Test
+    public void suggestFuzzy() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        p.addProperty(new ParametersDefinitionProperty(
+            new EditableChoiceParameterDefinition("PARAM1")
+                .withChoices(Arrays.asList("release-2.2", "release-2.3.1", "develop"))
+                .withFilterConfig(new FilterConfig().withMatchMode(FilterConfig.MatchMode.FUZZY))
+        ));
+        final JSONObject result = j.getJSON(String.format(
+            "%sdescriptorByName/%s/suggest?name=PARAM1&value=relase-2.3",
+            p.getUrl(),
+            EditableChoiceParameterDefinition.class.getName()
+        )).getJSONObject();
+        assertThat(
+            result.getJSONArray("data").toString(),
+            is(equalTo("[\"release-2.3.1\",\"release-2.2\"]"))
+        );
+    }
+
+    /**
+     * @param values parameter values
+     * @return the number of distinct instances of values
+     */
+    private static int countValueInstances(final List<?> values) {
+        final Set<Object> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (final Object value : values) {
+            instances.add(((StringParameterValue) value).getValue());
+        }
+        return instances.size();
+    }
+
+    @Test
+    public void shareValuesWithChoicesAfterLoading() throws Exception {
+        final List<String> choices = Arrays.asList("develop", "main", "release");
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoices(choices);
+        final List<ParameterValue> values = new ArrayList<>();
+        final List<ParameterValue> plainValues = new ArrayList<>();
+        for (int i = 0; i < 10000; ++i) {
+            final String value = new String(choices.get(i % choices.size()));
+            values.add(def.createValue(value));
+            plainValues.add(new StringParameterValue("PARAM1", value));
+        }
+        // values in 10k builds loaded from build.xml
+        final List<?> loaded = (List<?>) Run.XSTREAM2.fromXML(Run.XSTREAM2.toXML(values));
+        final List<?> plainLoaded = (List<?>) Run.XSTREAM2.fromXML(Run.XSTREAM2.toXML(plainValues));
+
+        assertThat(countValueInstances(plainLoaded), is(10000));
+        assertThat(countValueInstances(loaded), is(choices.size()));
+        for (int i = 0; i < 10000; ++i) {
+            assertThat(
+                ((StringParameterValue) loaded.get(i)).getValue(),
+                is(sameInstance(def.getChoiceIndex().get(i % choices.size())))
+            );
+        }
+
+        // values not in choices are left as they are.
+        final List<ParameterValue> freeValues = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            freeValues.add(def.createValue(new String("feature")));
+        }
+        final List<?> freeLoaded = (List<?>) Run.XSTREAM2.fromXML(Run.XSTREAM2.toXML(freeValues));
+        assertThat(countValueInstances(freeLoaded), is(100));
+        assertThat(freeLoaded, is(equalTo(freeValues)));
+    }
+
+    @Test
+    public void recordChoiceIndexAndChoiceList() throws Exception {
+        final List<String> choices = Arrays.asList("develop", "main", "release");
+        final FreeStyleProject p1 = j.createFreeStyleProject();
+        p1.addProperty(new ParametersDefinitionProperty(
+            new EditableChoiceParameterDefinition("PARAM1")
+                .withChoices(choices)
+                .withDefaultValue("main")
+        ));
+        final FreeStyleProject p2 = j.createFreeStyleProject();
+        p2.addProperty(new ParametersDefinitionProperty(
+            new EditableChoiceParameterDefinition("PARAM1")
+                .withChoices(new ArrayList<>(choices))
+                .withDefaultValue("feature")
+        ));
+        final EditableChoiceParameterValue value1 = (EditableChoiceParameterValue) j.buildAndAssertSuccess(p1)
+            .getAction(ParametersAction.class)
+            .getParameter("PARAM1");
+        final EditableChoiceParameterValue value2 = (EditableChoiceParameterValue) j.buildAndAssertSuccess(p2)
+            .getAction(ParametersAction.class)
+            .getParameter("PARAM1");
+
+        assertThat(value1.isListedValue(), is(true));
+        assertThat(value1.getChoiceIndex(), is(1));
+        assertThat(value2.isListedValue(), is(false));
+        assertThat(value2.getChoiceIndex(), is(-1));
+
+        // choices are identified with the hash, and never saved.
+        assertThat(value1.getChoiceListHash(), is(equalTo(value2.getChoiceListHash())));
+        assertThat(value1.getChoiceList(), is(equalTo(choices)));
+        ChoiceListStore.get().flush();
+        assertThat(listSavedChoiceLists(), is(arrayWithSize(0)));
+    }
+
+    private String[] listSavedChoiceLists() {
+        final String[] names = new File(j.jenkins.getRootDir(), ChoiceListStore.DIRNAME)
+            .list((dir, name) -> !name.equals(ChoiceListStore.REFERENCES_FILENAME));
+        return (names != null) ? names : new String[0];
+    }
+
+    @Test
+    public void sortNaturalDescending() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoices(Arrays.asList("1.9.0", "1.10.0", "1.10.0-rc1", "1.2.0"))
+            .withSortMode(SortMode.NATURAL_DESCENDING);
+        p.addProperty(new ParametersDefinitionProperty(def));
+        j.configRoundtrip(p);
+        j.assertEqualDataBoundBeans(
+            def,
+            p.getProperty(ParametersDefinitionProperty.class).getParameterDefinition("PARAM1")
+        );
+
+        assertThat(
+            getSuggestedValues(p, "PARAM1", ".editable-choice-suggest-choice"),
+            contains("1.10.0", "1.10.0-rc1", "1.9.0", "1.2.0")
+        );
+        final CaptureEnvironmentBuilder ceb = new CaptureEnvironmentBuilder();
+        p.getBuildersList().add(ceb);
+        j.buildAndAssertSuccess(p);
+        assertThat(ceb.getEnvVars().get("PARAM1"), is(equalTo("1.10.0")));
+    }
 }
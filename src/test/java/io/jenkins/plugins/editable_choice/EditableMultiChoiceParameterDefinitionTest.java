@@ -0,0 +1,237 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThrows;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.CaptureEnvironmentBuilder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.Util;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Run;
+
+public class EditableMultiChoiceParameterDefinitionTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void configRoundtrip() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        final EditableMultiChoiceParameterDefinition def = new EditableMultiChoiceParameterDefinition("PARAM1")
+            .withDelimiter(";");
+        def.withChoices(Arrays.asList("Apple", "Grape", "Orange"))
+            .withDefaultValue("Apple;Orange")
+            .withRestrict(true);
+        p.addProperty(new ParametersDefinitionProperty(def));
+        j.configRoundtrip(p);
+        j.assertEqualDataBoundBeans(
+            def,
+            p.getProperty(ParametersDefinitionProperty.class).getParameterDefinition("PARAM1")
+        );
+    }
+
+    @Test
+    public void defaultValues() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        p.addProperty(new ParametersDefinitionProperty(
+            new EditableMultiChoiceParameterDefinition("PARAM1")
+                .withChoices(Arrays.asList("Apple", "Grape", "Orange"))
+                .withDefaultValue("Orange, Melon, Apple")
+        ));
+        final CaptureEnvironmentBuilder ceb = new CaptureEnvironmentBuilder();
+        p.getBuildersList().add(ceb);
+        j.buildAndAssertSuccess(p);
+        // choices in the order of choices, followed by other values.
+        assertThat(ceb.getEnvVars().get("PARAM1"), is(equalTo("Apple,Orange,Melon")));
+    }
+
+    @Test
+    public void noDefaultValues() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        p.addProperty(new ParametersDefinitionProperty(
+            new EditableMultiChoiceParameterDefinition("PARAM1")
+                .withChoices(Arrays.asList("Apple", "Grape", "Orange"))
+        ));
+        final CaptureEnvironmentBuilder ceb = new CaptureEnvironmentBuilder();
+        p.getBuildersList().add(ceb);
+        j.buildAndAssertSuccess(p);
+        assertThat(ceb.getEnvVars().get("PARAM1"), is(equalTo("")));
+    }
+
+    @Test
+    public void restrict() throws Exception {
+        final EditableMultiChoiceParameterDefinition def = new EditableMultiChoiceParameterDefinition("PARAM1");
+        def.withChoices(Arrays.asList("Apple", "Grape", "Orange"))
+            .withRestrict(true)
+            .withRestrictIgnoringCase(true)
+            .withAllowedPatterns(Arrays.asList("Berry-.+"));
+        final EditableMultiChoiceParameterValue value = def.createMultiValue(
+            Arrays.asList("grape", "Berry-1", "Apple")
+        );
+        assertThat(value.getValues(), contains("Apple", "Grape", "Berry-1"));
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> def.createValue("Apple,Melon")
+        );
+    }
+
+    @Test
+    public void compactInBuildXml() throws Exception {
+        final List<String> choices = IntStream.range(0, 300)
+            .mapToObj(i -> String.format("suite%03d", i))
+            .collect(Collectors.toList());
+        final List<String> selected = new ArrayList<>();
+        for (int i = 0; i < choices.size(); i += 2) {
+            selected.add(choices.get(i));
+        }
+        final FreeStyleProject p = j.createFreeStyleProject();
+        final EditableMultiChoiceParameterDefinition def = new EditableMultiChoiceParameterDefinition("PARAM1");
+        def.withChoices(choices).withRestrict(true);
+        p.addProperty(new ParametersDefinitionProperty(def));
+        final FreeStyleBuild b = j.assertBuildStatusSuccess(p.scheduleBuild2(
+            0,
+            new ParametersAction(def.createValue(String.join(",", selected)))
+        ));
+        final String joined = String.join(",", selected);
+
+        final String xml = new String(
+            Files.readAllBytes(new File(b.getRootDir(), "build.xml").toPath()),
+            StandardCharsets.UTF_8
+        );
+        // only selected choices are saved in the build.
+        assertThat(xml, containsString("suite002"));
+        assertThat(xml, not(containsString("suite001")));
+
+        j.jenkins.reload();
+        final FreeStyleProject reloaded = j.jenkins.getItemByFullName(p.getFullName(), FreeStyleProject.class);
+        final EditableMultiChoiceParameterValue value = (EditableMultiChoiceParameterValue) reloaded
+            .getBuildByNumber(b.getNumber())
+            .getAction(ParametersAction.class)
+            .getParameter("PARAM1");
+        assertThat(value.getValue(), is(equalTo(joined)));
+    }
+
+    @Test
+    public void choiceListLost() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        final EditableMultiChoiceParameterDefinition def = new EditableMultiChoiceParameterDefinition("PARAM1");
+        def.withChoices(Arrays.asList("Apple", "Grape", "Orange")).withRestrict(false);
+        p.addProperty(new ParametersDefinitionProperty(def));
+        final FreeStyleBuild b = j.assertBuildStatusSuccess(p.scheduleBuild2(
+            0,
+            new ParametersAction(def.createValue("Orange,Apple,Melon"))
+        ));
+
+        ChoiceListStore.get().flush();
+        Util.deleteRecursive(new File(j.jenkins.getRootDir(), ChoiceListStore.DIRNAME));
+        j.jenkins.reload();
+        final FreeStyleProject reloaded = j.jenkins.getItemByFullName(p.getFullName(), FreeStyleProject.class);
+        final EditableMultiChoiceParameterValue value = (EditableMultiChoiceParameterValue) reloaded
+            .getBuildByNumber(b.getNumber())
+            .getAction(ParametersAction.class)
+            .getParameter("PARAM1");
+        assertThat(value.getValues(), contains("Apple", "Orange", "Melon"));
+    }
+
+    private String[] listSavedChoiceLists() {
+        final String[] names = new File(j.jenkins.getRootDir(), ChoiceListStore.DIRNAME)
+            .list((dir, name) -> !name.equals(ChoiceListStore.REFERENCES_FILENAME));
+        return (names != null) ? names : new String[0];
+    }
+
+    @Test
+    public void saveChoiceListOnlyForBuilds() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        final EditableMultiChoiceParameterDefinition def = new EditableMultiChoiceParameterDefinition("PARAM1");
+        def.withChoices(Arrays.asList("Apple", "Grape", "Orange")).withDefaultValue("Apple");
+        p.addProperty(new ParametersDefinitionProperty(def));
+
+        // rendering the build page never saves choices.
+        j.createWebClient().getPage(p, "build?delay=0sec");
+        ChoiceListStore.get().flush();
+        assertThat(listSavedChoiceLists(), is(arrayWithSize(0)));
+
+        // saved in background.
+        final Run<?, ?> b1 = j.buildAndAssertSuccess(p);
+        final Run<?, ?> b2 = j.buildAndAssertSuccess(p);
+        ChoiceListStore.get().flush();
+        assertThat(listSavedChoiceLists(), is(arrayWithSize(1)));
+        final String hash = ((EditableMultiChoiceParameterValue) b1.getAction(ParametersAction.class)
+            .getParameter("PARAM1")).getChoiceListHash();
+        assertThat(ChoiceListStore.get().getReferenceCount(hash), is(2));
+
+        // deleted when no builds refer them.
+        b1.delete();
+        assertThat(listSavedChoiceLists(), is(arrayWithSize(1)));
+        b2.delete();
+        assertThat(listSavedChoiceLists(), is(arrayWithSize(0)));
+
+        // also when jobs are deleted.
+        j.buildAndAssertSuccess(p);
+        ChoiceListStore.get().flush();
+        assertThat(listSavedChoiceLists(), is(arrayWithSize(1)));
+        p.delete();
+        assertThat(listSavedChoiceLists(), is(arrayWithSize(0)));
+    }
+
+    @Test
+    public void noChoiceListForChoiceProvider() throws Exception {
+        j.createFreeStyleProject("job1");
+        final FreeStyleProject p = j.createFreeStyleProject("job2");
+        final EditableMultiChoiceParameterDefinition def = new EditableMultiChoiceParameterDefinition("PARAM1");
+        def.withChoiceProvider(new JobNameChoiceProvider()).withDefaultValue("job1");
+        p.addProperty(new ParametersDefinitionProperty(def));
+
+        final EditableMultiChoiceParameterValue value = (EditableMultiChoiceParameterValue) j.buildAndAssertSuccess(p)
+            .getAction(ParametersAction.class)
+            .getParameter("PARAM1");
+        ChoiceListStore.get().flush();
+        assertThat(value.getChoiceListHash(), is(nullValue()));
+        assertThat(value.getValues(), contains("job1"));
+        assertThat(listSavedChoiceLists(), is(arrayWithSize(0)));
+    }
+}
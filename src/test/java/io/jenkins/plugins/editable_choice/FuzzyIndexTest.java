@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class FuzzyIndexTest {
+    private static List<String> search(final List<String> choices, final boolean caseInsensitive, final String input, final int limit) {
+        final ChoiceIndex index = new ChoiceIndex(choices);
+        return index.getFuzzyIndex(caseInsensitive).search(input, limit).stream()
+            .map(index::get)
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void typo() throws Exception {
+        assertThat(
+            search(Arrays.asList("release-2.2", "release-2.3.1", "develop", "feature-2.3"), false, "relase-2.3", 10),
+            contains("release-2.3.1", "release-2.2")
+        );
+    }
+
+    @Test
+    public void exactMatchComesFirst() throws Exception {
+        assertThat(
+            search(Arrays.asList("Grape", "Grapefruit", "Gripe"), false, "Grape", 10),
+            contains("Grape", "Grapefruit", "Gripe")
+        );
+    }
+
+    @Test
+    public void caseInsensitive() throws Exception {
+        assertThat(
+            search(Arrays.asList("Apple", "Grape", "Orange"), true, "APLE", 10),
+            contains("Apple", "Grape")
+        );
+        assertThat(
+            search(Arrays.asList("Apple", "Grape", "Orange"), false, "APLE", 10),
+            is(empty())
+        );
+    }
+
+    @Test
+    public void shortInputMustMatchExactly() throws Exception {
+        assertThat(
+            search(Arrays.asList("Apple", "Grape", "Orange"), false, "pe", 10),
+            contains("Grape")
+        );
+    }
+
+    @Test
+    public void limit() throws Exception {
+        assertThat(
+            search(Arrays.asList("release-1", "release-2", "release-3"), false, "release", 2),
+            contains("release-1", "release-2")
+        );
+    }
+
+    @Test
+    public void substringDistance() throws Exception {
+        final int[] row = new int[16];
+        assertThat(FuzzyIndex.substringDistance("relase", "release-2.3", row), is(equalTo(1)));
+        assertThat(FuzzyIndex.substringDistance("2.3", "release-2.3", row), is(equalTo(0)));
+        assertThat(FuzzyIndex.substringDistance("xyz", "release-2.3", row), is(equalTo(3)));
+    }
+
+    @Test
+    public void bitParallelMatcherAgreesWithDynamicProgramming() throws Exception {
+        final Random random = new Random(1);
+        for (int n = 0; n < 1000; ++n) {
+            final String query = randomString(random, 1 + random.nextInt(10));
+            final String text = randomString(random, random.nextInt(20));
+            assertThat(
+                String.format("%s in %s", query, text),
+                new FuzzyIndex.Matcher(query).distance(text),
+                is(equalTo(FuzzyIndex.substringDistance(query, text, new int[query.length() + 1])))
+            );
+        }
+    }
+
+    private static String randomString(final Random random, final int length) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            sb.append((char) ('a' + random.nextInt(4)));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void largeChoices() throws Exception {
+        final List<String> choices = new ArrayList<>();
+        for (int i = 0; i < 100000; ++i) {
+            choices.add(String.format("service%03d-release-%d", i % 200, i / 200));
+        }
+        final FuzzyIndex index = new ChoiceIndex(choices).getFuzzyIndex(false);
+        final List<Integer> result = index.search("servce042-relase-123", 10);
+        assertThat(result.isEmpty(), is(false));
+        assertThat(choices.get(result.get(0)), is(equalTo("service042-release-123")));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersDefinitionProperty;
+
+public class GitRefChoiceProviderTest {
+    private static final String OBJECT_ID = "0123456789abcdef0123456789abcdef01234567";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Before
+    public void allowTemporaryFolder() {
+        System.setProperty(ControllerPaths.ALLOWED_DIRECTORIES, tmp.getRoot().toString());
+    }
+
+    @After
+    public void clearAllowedDirectories() {
+        System.clearProperty(ControllerPaths.ALLOWED_DIRECTORIES);
+    }
+
+    private Path createRepository() throws Exception {
+        final Path repo = tmp.newFolder("work").toPath();
+        final Path gitDir = repo.resolve(".git");
+        Files.createDirectories(gitDir.resolve("refs/heads"));
+        Files.createDirectories(gitDir.resolve("refs/tags"));
+        Files.write(
+            gitDir.resolve("packed-refs"),
+            (OBJECT_ID + " refs/tags/v1.0\n" + OBJECT_ID + " refs/tags/v1.1\n").getBytes(StandardCharsets.UTF_8)
+        );
+        Files.write(gitDir.resolve("refs/heads/main"), (OBJECT_ID + "\n").getBytes(StandardCharsets.UTF_8));
+        return repo;
+    }
+
+    @Test
+    public void configRoundtrip() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoiceProvider(new GitRefChoiceProvider("/path/to/repo.git").withIncludeBranches(true))
+            .withRestrict(true);
+        p.addProperty(new ParametersDefinitionProperty(def));
+        j.configRoundtrip(p);
+        j.assertEqualDataBoundBeans(
+            def,
+            p.getProperty(ParametersDefinitionProperty.class).getParameterDefinition("PARAM1")
+        );
+    }
+
+    @Test
+    public void choices() throws Exception {
+        final String repo = createRepository().toString();
+        assertThat(new GitRefChoiceProvider(repo).getChoices(), contains("v1.0", "v1.1"));
+        assertThat(
+            new GitRefChoiceProvider(repo).withIncludeBranches(true).getChoices(),
+            contains("main", "v1.0", "v1.1")
+        );
+        assertThat(
+            new GitRefChoiceProvider(repo).withIncludeTags(false).withIncludeBranches(true).getChoices(),
+            contains("main")
+        );
+    }
+
+    @Test
+    public void restrict() throws Exception {
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoiceProvider(new GitRefChoiceProvider(createRepository().toString()))
+            .withRestrict(true);
+        def.createValue("v1.1");
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("main"));
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("v2.0"));
+    }
+
+    @Test
+    public void notAllowed() throws Exception {
+        final String repo = createRepository().toString();
+        System.setProperty(ControllerPaths.ALLOWED_DIRECTORIES, tmp.newFolder("other").toString());
+        assertThat(new GitRefChoiceProvider(repo).getChoices(), is(empty()));
+
+        System.clearProperty(ControllerPaths.ALLOWED_DIRECTORIES);
+        assertThat(new GitRefChoiceProvider(repo).getChoices(), is(empty()));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GitRefIndexTest {
+    private static final String OBJECT_ID = "0123456789abcdef0123456789abcdef01234567";
+    private static final List<String> TAGS = Collections.singletonList("refs/tags/");
+    private static final List<String> BRANCHES_AND_TAGS = Arrays.asList("refs/heads/", "refs/tags/");
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path gitDir;
+
+    /**
+     * Files modified recently are always read again,
+     * so move modification times to the past to test caching.
+     */
+    private long clock = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+
+    @Before
+    public void setUp() throws Exception {
+        gitDir = tmp.newFolder("repo.git").toPath();
+        Files.createDirectories(gitDir.resolve("refs/heads"));
+        Files.createDirectories(gitDir.resolve("refs/tags"));
+        touch(gitDir.resolve("refs"));
+        touch(gitDir.resolve("refs/heads"));
+        touch(gitDir.resolve("refs/tags"));
+    }
+
+    private void touch(final Path path) throws IOException {
+        clock += TimeUnit.SECONDS.toMillis(1);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(clock));
+    }
+
+    private void writeLooseRef(final String ref) throws IOException {
+        final Path file = gitDir.resolve(ref);
+        if (!Files.isDirectory(file.getParent())) {
+            Files.createDirectories(file.getParent());
+            touch(file.getParent().getParent());
+        }
+        Files.write(file, (OBJECT_ID + "\n").getBytes(StandardCharsets.UTF_8));
+        touch(file.getParent());
+    }
+
+    private void deleteLooseRef(final String ref) throws IOException {
+        final Path file = gitDir.resolve(ref);
+        Files.delete(file);
+        touch(file.getParent());
+    }
+
+    private void writePackedRefs(final String... refs) throws IOException {
+        final Path file = gitDir.resolve("packed-refs");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# pack-refs with: peeled fully-peeled sorted \n");
+            for (final String ref : refs) {
+                writer.write(OBJECT_ID + " " + ref + "\n");
+                if (ref.startsWith("refs/tags/")) {
+                    writer.write("^" + OBJECT_ID + "\n");
+                }
+            }
+        }
+        touch(file);
+    }
+
+    @Test
+    public void packedAndLooseRefs() throws Exception {
+        writePackedRefs("refs/heads/main", "refs/tags/v1.0", "refs/tags/v1.1");
+        writeLooseRef("refs/heads/feature/x");
+        writeLooseRef("refs/tags/v2.0");
+        writeLooseRef("refs/remotes/origin/main");
+
+        final GitRefIndex index = new GitRefIndex(gitDir);
+        assertThat(index.getNames(TAGS), contains("v1.0", "v1.1", "v2.0"));
+        assertThat(
+            index.getNames(BRANCHES_AND_TAGS),
+            contains("feature/x", "main", "v1.0", "v1.1", "v2.0")
+        );
+        assertThat(index.contains("refs/tags/v2.0"), is(true));
+        assertThat(index.contains("refs/tags/v3.0"), is(false));
+    }
+
+    @Test
+    public void cachedUntilChanged() throws Exception {
+        writePackedRefs("refs/tags/v1.0");
+        writeLooseRef("refs/tags/v2.0");
+
+        final GitRefIndex index = new GitRefIndex(gitDir);
+        final List<String> names = index.getNames(TAGS);
+        assertThat(names, contains("v1.0", "v2.0"));
+        assertThat(index.getNames(TAGS), is(sameInstance(names)));
+
+        writeLooseRef("refs/tags/release/v3.0");
+        final List<String> added = index.getNames(TAGS);
+        assertThat(added, is(not(sameInstance(names))));
+        assertThat(added, contains("release/v3.0", "v1.0", "v2.0"));
+        assertThat(index.getNames(TAGS), is(sameInstance(added)));
+
+        deleteLooseRef("refs/tags/v2.0");
+        assertThat(index.getNames(TAGS), contains("release/v3.0", "v1.0"));
+
+        // git pack-refs
+        writePackedRefs("refs/tags/release/v3.0", "refs/tags/v1.0");
+        deleteLooseRef("refs/tags/release/v3.0");
+        final List<String> packed = index.getNames(TAGS);
+        assertThat(packed, contains("release/v3.0", "v1.0"));
+        assertThat(index.getNames(TAGS), is(sameInstance(packed)));
+    }
+
+    @Test
+    public void recentlyModified() throws Exception {
+        final GitRefIndex index = new GitRefIndex(gitDir);
+        assertThat(index.getNames(TAGS), is(empty()));
+
+        // modified in the same tick as read
+        final Path tag = gitDir.resolve("refs/tags/v1.0");
+        Files.write(tag, (OBJECT_ID + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(gitDir.resolve("refs/tags"), FileTime.fromMillis(System.currentTimeMillis()));
+        assertThat(index.getNames(TAGS), contains("v1.0"));
+        final Path tag2 = gitDir.resolve("refs/tags/v2.0");
+        Files.write(tag2, (OBJECT_ID + "\n").getBytes(StandardCharsets.UTF_8));
+        assertThat(index.getNames(TAGS), contains("v1.0", "v2.0"));
+    }
+
+    @Test
+    public void manyTags() throws Exception {
+        final int count = 100000;
+        final String[] refs = new String[count];
+        for (int i = 0; i < count; ++i) {
+            refs[i] = String.format("refs/tags/v%d.%d.%d", i / 10000, (i / 100) % 100, i % 100);
+        }
+        writePackedRefs(refs);
+
+        final GitRefIndex index = new GitRefIndex(gitDir);
+        final List<String> names = index.getNames(TAGS);
+        assertThat(names.size(), is(count));
+        assertThat(index.contains("refs/tags/v9.99.99"), is(true));
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < 1000; ++i) {
+            assertThat(index.getNames(TAGS), is(sameInstance(names)));
+        }
+        // only stats files while unchanged.
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat(elapsed < TimeUnit.SECONDS.toMillis(10), is(true));
+    }
+}
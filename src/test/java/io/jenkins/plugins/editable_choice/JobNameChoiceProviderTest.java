@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
+
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+import org.jvnet.hudson.test.MockFolder;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.User;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+
+public class JobNameChoiceProviderTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void configRoundtrip() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoiceProvider(new JobNameChoiceProvider().withFolder("deploy").withType("FreeStyleProject"))
+            .withRestrict(true);
+        p.addProperty(new ParametersDefinitionProperty(def));
+        j.configRoundtrip(p);
+        j.assertEqualDataBoundBeans(
+            def,
+            p.getProperty(ParametersDefinitionProperty.class).getParameterDefinition("PARAM1")
+        );
+    }
+
+    @Test
+    public void updatedWithItemEvents() throws Exception {
+        final MockFolder folder = j.createFolder("deploy");
+        folder.createProject(FreeStyleProject.class, "b");
+        folder.createProject(FreeStyleProject.class, "a");
+        final FreeStyleProject outside = j.createFreeStyleProject("outside");
+
+        final JobNameChoiceProvider provider = new JobNameChoiceProvider().withFolder("deploy");
+        final List<String> choices = provider.getChoices();
+        assertThat(choices, contains("deploy/a", "deploy/b"));
+        // the same instance while unchanged
+        assertThat(provider.getChoices(), is(sameInstance(choices)));
+        assertThat(new JobNameChoiceProvider().getChoices(), contains("deploy/a", "deploy/b", "outside"));
+        assertThat(new JobNameChoiceProvider().withType("MockFolder").getChoices(), contains());
+
+        outside.renameTo("c");
+        j.jenkins.getItemByFullName("deploy/a", FreeStyleProject.class).delete();
+        assertThat(provider.getChoices(), contains("deploy/b"));
+        assertThat(new JobNameChoiceProvider().getChoices(), contains("c", "deploy/b"));
+
+        folder.renameTo("release");
+        assertThat(provider.getChoices(), contains());
+        assertThat(new JobNameChoiceProvider().withFolder("release").getChoices(), contains("release/b"));
+    }
+
+    @Test
+    public void restrict() throws Exception {
+        final MockFolder folder = j.createFolder("deploy");
+        folder.createProject(FreeStyleProject.class, "a");
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoiceProvider(new JobNameChoiceProvider().withFolder("deploy"))
+            .withRestrict(true);
+        def.createValue("deploy/a");
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("deploy/b"));
+
+        // jobs created later are accepted.
+        folder.createProject(FreeStyleProject.class, "b");
+        def.createValue("deploy/b");
+    }
+
+    @Test
+    public void permission() throws Exception {
+        final MockFolder folder = j.createFolder("deploy");
+        final FreeStyleProject visible = folder.createProject(FreeStyleProject.class, "visible");
+        folder.createProject(FreeStyleProject.class, "hidden");
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        j.jenkins.setAuthorizationStrategy(
+            new MockAuthorizationStrategy()
+                .grant(Jenkins.READ).everywhere().to("alice", "bob")
+                .grant(Item.READ).onItems(folder, visible).to("alice")
+        );
+        final JobNameChoiceProvider provider = new JobNameChoiceProvider();
+        assertThat(provider.isDependingOnAuthentication(), is(true));
+        try (ACLContext ctx = ACL.as(User.getById("alice", true))) {
+            assertThat(provider.getChoices(), contains("deploy/visible"));
+            assertThat(provider.contains("deploy/visible"), is(true));
+            assertThat(provider.contains("deploy/hidden"), is(false));
+        }
+        try (ACLContext ctx = ACL.as(User.getById("bob", true))) {
+            assertThat(provider.getChoices(), is(empty()));
+            assertThat(provider.contains("deploy/visible"), is(false));
+        }
+
+        // changes of permissions take effect without changes of jobs.
+        j.jenkins.setAuthorizationStrategy(
+            new MockAuthorizationStrategy()
+                .grant(Jenkins.READ).everywhere().to("alice", "bob")
+                .grant(Item.READ).onItems(folder, visible).to("bob")
+        );
+        try (ACLContext ctx = ACL.as(User.getById("alice", true))) {
+            assertThat(provider.getChoices(), is(empty()));
+        }
+        try (ACLContext ctx = ACL.as(User.getById("bob", true))) {
+            assertThat(provider.getChoices(), contains("deploy/visible"));
+        }
+    }
+}
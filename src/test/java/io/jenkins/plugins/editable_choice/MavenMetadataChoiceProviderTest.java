@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersDefinitionProperty;
+
+public class MavenMetadataChoiceProviderTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Before
+    public void allowTemporaryFolder() {
+        System.setProperty(ControllerPaths.ALLOWED_DIRECTORIES, tmp.getRoot().toString());
+    }
+
+    @After
+    public void clearAllowedDirectories() {
+        System.clearProperty(ControllerPaths.ALLOWED_DIRECTORIES);
+    }
+
+    @Test
+    public void configRoundtrip() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoiceProvider(
+                new MavenMetadataChoiceProvider("/path/to/repo", "com.example", "app").withExcludeSnapshots(true)
+            )
+            .withRestrict(true);
+        p.addProperty(new ParametersDefinitionProperty(def));
+        j.configRoundtrip(p);
+        j.assertEqualDataBoundBeans(
+            def,
+            p.getProperty(ParametersDefinitionProperty.class).getParameterDefinition("PARAM1")
+        );
+    }
+
+    private Path createRepository() throws Exception {
+        final Path repo = tmp.newFolder("repo").toPath();
+        final Path dir = Files.createDirectories(repo.resolve("com/example/app"));
+        Files.write(
+            dir.resolve("maven-metadata.xml"),
+            ("<metadata><versioning><versions>"
+                + "<version>1.0</version><version>1.1-SNAPSHOT</version>"
+                + "</versions></versioning></metadata>").getBytes(StandardCharsets.UTF_8)
+        );
+        return repo;
+    }
+
+    @Test
+    public void restrict() throws Exception {
+        final Path repo = createRepository();
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoiceProvider(
+                new MavenMetadataChoiceProvider(repo.toString(), "com.example", "app").withExcludeSnapshots(true)
+            )
+            .withRestrict(true);
+        def.createValue("1.0");
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("1.1-SNAPSHOT"));
+    }
+
+    @Test
+    public void notAllowed() throws Exception {
+        final Path repo = createRepository();
+        assertThat(
+            new MavenMetadataChoiceProvider(repo.toString(), "com.example", "app").getChoices(),
+            contains("1.1-SNAPSHOT", "1.0")
+        );
+        // out of the repository
+        assertThat(
+            new MavenMetadataChoiceProvider(repo.resolve("com").toString(), "..", "example/app").getChoices(),
+            is(empty())
+        );
+
+        System.setProperty(ControllerPaths.ALLOWED_DIRECTORIES, tmp.newFolder("other").toString());
+        assertThat(
+            new MavenMetadataChoiceProvider(repo.toString(), "com.example", "app").getChoices(),
+            is(empty())
+        );
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MavenMetadataIndexTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static String metadata(final String... versions) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<metadata>\n");
+        sb.append("  <groupId>com.example</groupId>\n");
+        sb.append("  <artifactId>app</artifactId>\n");
+        sb.append("  <version>0.0.1</version>\n");
+        sb.append("  <versioning>\n");
+        sb.append("    <latest>").append(versions[versions.length - 1]).append("</latest>\n");
+        sb.append("    <versions>\n");
+        for (final String version : versions) {
+            sb.append("      <version>").append(version).append("</version>\n");
+        }
+        sb.append("    </versions>\n");
+        sb.append("  </versioning>\n");
+        sb.append("</metadata>\n");
+        return sb.toString();
+    }
+
+    private static List<String> parse(final String xml) throws IOException {
+        return new ArrayList<>(
+            MavenMetadataIndex.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)))
+        );
+    }
+
+    @Test
+    public void parseVersions() throws Exception {
+        assertThat(parse(metadata("1.0", "1.1", "1.0")), contains("1.0", "1.1"));
+    }
+
+    @Test
+    public void externalEntitiesNotResolved() throws Exception {
+        final Path secret = tmp.newFile("secret").toPath();
+        Files.write(secret, "secret".getBytes(StandardCharsets.UTF_8));
+        final String xml = "<?xml version=\"1.0\"?>\n"
+            + "<!DOCTYPE metadata [<!ENTITY xxe SYSTEM \"" + secret.toUri() + "\">]>\n"
+            + "<metadata><versioning><versions><version>&xxe;</version></versions></versioning></metadata>\n";
+        assertThrows(IOException.class, () -> parse(xml));
+    }
+
+    @Test
+    public void outOfRepository() throws Exception {
+        final Path repo = tmp.newFolder("repo").toPath();
+        assertThat(MavenMetadataIndex.get(repo, "com.example", "../../.."), is(nullValue()));
+        assertThat(MavenMetadataIndex.get(repo, "..", "app"), is(nullValue()));
+        assertThat(MavenMetadataIndex.get(repo, "com.example", "app"), is(notNullValue()));
+    }
+
+    @Test
+    public void newestFirstAndCached() throws Exception {
+        final Path repo = tmp.newFolder("repo").toPath();
+        final Path dir = Files.createDirectories(repo.resolve("com/example/app"));
+        final Path file = dir.resolve("maven-metadata.xml");
+        Files.write(
+            file,
+            metadata("1.9.0", "1.10.0-SNAPSHOT", "1.10.0-rc-1", "1.10.0").getBytes(StandardCharsets.UTF_8)
+        );
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+
+        final MavenMetadataIndex index = MavenMetadataIndex.get(repo, "com.example", "app");
+        // shared for the same artifact
+        assertThat(MavenMetadataIndex.get(repo, "com.example", "app"), is(sameInstance(index)));
+
+        final List<String> versions = index.getVersions(false);
+        assertThat(versions, contains("1.10.0", "1.10.0-rc-1", "1.10.0-SNAPSHOT", "1.9.0"));
+        assertThat(index.getVersions(false), is(sameInstance(versions)));
+        assertThat(index.getVersions(true), contains("1.10.0", "1.10.0-rc-1", "1.9.0"));
+
+        Files.write(
+            file,
+            metadata("1.9.0", "1.10.0", "2.0.0").getBytes(StandardCharsets.UTF_8)
+        );
+        assertThat(index.getVersions(false), contains("2.0.0", "1.10.0", "1.9.0"));
+
+        Files.delete(file);
+        assertThat(index.getVersions(false).isEmpty(), is(true));
+    }
+}
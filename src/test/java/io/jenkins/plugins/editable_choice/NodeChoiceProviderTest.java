@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
+
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.slaves.DumbSlave;
+
+public class NodeChoiceProviderTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void configRoundtrip() throws Exception {
+        final FreeStyleProject p = j.createFreeStyleProject();
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoiceProvider(new NodeChoiceProvider().withIncludeNodes(false).withIncludeLabels(true).withOnlineOnly(true))
+            .withRestrict(true);
+        p.addProperty(new ParametersDefinitionProperty(def));
+        j.configRoundtrip(p);
+        j.assertEqualDataBoundBeans(
+            def,
+            p.getProperty(ParametersDefinitionProperty.class).getParameterDefinition("PARAM1")
+        );
+    }
+
+    @Test
+    public void updatedWithNodeEvents() throws Exception {
+        final DumbSlave agent2 = j.createOnlineSlave();
+        final NodeChoiceProvider provider = new NodeChoiceProvider();
+        final List<String> choices = provider.getChoices();
+        assertThat(choices, contains("built-in", agent2.getNodeName()));
+        // the same instance while unchanged
+        assertThat(provider.getChoices(), is(sameInstance(choices)));
+
+        final DumbSlave agent1 = j.createSlave("agent1", "linux docker", null);
+        assertThat(provider.getChoices(), contains("agent1", "built-in", agent2.getNodeName()));
+        assertThat(
+            new NodeChoiceProvider().withIncludeNodes(false).withIncludeLabels(true).getChoices(),
+            hasItems("docker", "linux")
+        );
+        // agent1 is not launched
+        assertThat(
+            new NodeChoiceProvider().withOnlineOnly(true).getChoices(),
+            contains("built-in", agent2.getNodeName())
+        );
+
+        // as configured from the UI
+        final DumbSlave updated = new DumbSlave("agent1", agent1.getRemoteFS(), j.createComputerLauncher(null));
+        updated.setLabelString("windows");
+        j.jenkins.getNodesObject().replaceNode(agent1, updated);
+        assertThat(
+            new NodeChoiceProvider().withIncludeNodes(false).withIncludeLabels(true).getChoices(),
+            not(hasItems("linux"))
+        );
+
+        j.jenkins.removeNode(updated);
+        assertThat(provider.getChoices(), contains("built-in", agent2.getNodeName()));
+        assertThat(
+            new NodeChoiceProvider().withIncludeNodes(false).withIncludeLabels(true).getChoices(),
+            not(hasItems("windows"))
+        );
+    }
+
+    @Test
+    public void restrict() throws Exception {
+        j.createSlave("agent1", "linux docker", null);
+        final EditableChoiceParameterDefinition def = new EditableChoiceParameterDefinition("PARAM1")
+            .withChoiceProvider(new NodeChoiceProvider().withIncludeLabels(true))
+            .withRestrict(true);
+        def.createValue("agent1");
+        def.createValue("linux");
+        def.createValue("linux && docker");
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("agent2"));
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("linux && windows"));
+        assertThrows(IllegalArgumentException.class, () -> def.createValue("linux &&"));
+
+        // nodes added later are accepted.
+        j.createSlave("agent2", "windows", null);
+        def.createValue("agent2");
+        def.createValue("linux || windows");
+    }
+}
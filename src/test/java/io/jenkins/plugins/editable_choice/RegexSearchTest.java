@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class RegexSearchTest {
+    private static final List<String> CHOICES = Arrays.asList(
+        "release-2.0.1",
+        "release-2.1.0",
+        "Release-2.2.3",
+        "hotfix-release-2.1.1",
+        "release-2.10.0"
+    );
+
+    private static List<String> search(final List<String> choices, final boolean caseInsensitive, final String input, final int limit) {
+        final ChoiceIndex index = new ChoiceIndex(choices);
+        return RegexSearch.search(index, input, caseInsensitive, limit).stream()
+            .map(index::get)
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void literalPrefix() throws Exception {
+        assertThat(RegexSearch.literalPrefix("^release-2\\.(1|2)\\."), equalTo("release-2."));
+        assertThat(RegexSearch.literalPrefix("^release-2\\.1|hotfix"), equalTo(""));
+        assertThat(RegexSearch.literalPrefix("release-2"), equalTo(""));
+        assertThat(RegexSearch.literalPrefix("^releases?"), equalTo("release"));
+        assertThat(RegexSearch.literalPrefix("^rel+ease"), equalTo("rel"));
+        assertThat(RegexSearch.literalPrefix("^v\\d+"), equalTo("v"));
+        assertThat(RegexSearch.literalPrefix("^[ab]c"), equalTo(""));
+    }
+
+    @Test
+    public void search() throws Exception {
+        assertThat(
+            search(CHOICES, false, "^release-2\\.(1|2)\\.", 10),
+            contains("release-2.1.0")
+        );
+        assertThat(
+            search(CHOICES, true, "^release-2\\.(1|2)\\.", 10),
+            contains("release-2.1.0", "Release-2.2.3")
+        );
+        assertThat(
+            search(CHOICES, false, "2\\.1\\.", 10),
+            contains("release-2.1.0", "hotfix-release-2.1.1")
+        );
+        assertThat(
+            search(CHOICES, false, "^release-2\\.1\\d*\\.0$|^hotfix", 10),
+            contains("release-2.1.0", "hotfix-release-2.1.1", "release-2.10.0")
+        );
+        assertThat(search(CHOICES, false, "release", 2), contains("release-2.0.1", "release-2.1.0"));
+    }
+
+    @Test
+    public void malformedPatternMatchesNothing() throws Exception {
+        assertThat(search(CHOICES, false, "release-(2", 10), is(empty()));
+    }
+
+    @Test
+    public void patternsAreCached() throws Exception {
+        assertThat(
+            RegexSearch.compile("^release-\\d+", true),
+            sameInstance(RegexSearch.compile("^release-\\d+", true))
+        );
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        final List<String> choices = new ArrayList<>(Collections.nCopies(100, "aaaaaaaaaaaaaaaaaaaaaaaab"));
+        // takes a few seconds for each choice without the time budget.
+        final long start = System.nanoTime();
+        assertThat(search(choices, false, "(.*a){20}c", 10), is(empty()));
+        assertThat(
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            lessThan(RegexSearch.TIMEOUT_MILLIS * 10)
+        );
+    }
+}
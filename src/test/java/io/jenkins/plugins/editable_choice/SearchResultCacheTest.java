@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SearchResultCacheTest {
+    private static final List<String> CHOICES = Arrays.asList("Apple", "Apricot", "Banana", "apple pie");
+
+    @Test
+    public void cachedForSameChoices() throws Exception {
+        final SearchResultCache cache = new SearchResultCache(16, 1024);
+        final FilterConfig filter = new FilterConfig().withCaseInsensitive(true);
+        assertThat(cache.search(new ChoiceIndex(CHOICES), filter, "ap", 10), contains(0, 1, 3));
+        // another index with the same choices
+        assertThat(cache.search(new ChoiceIndex(CHOICES), filter, "AP", 10), contains(0, 1, 3));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitCount(), is(1L));
+
+        // different limits, modes and choices
+        assertThat(cache.search(new ChoiceIndex(CHOICES), filter, "ap", 1), contains(0));
+        assertThat(cache.search(new ChoiceIndex(CHOICES), new FilterConfig(), "ap", 10), contains(3));
+        assertThat(cache.search(new ChoiceIndex(CHOICES.subList(1, 4)), filter, "ap", 10), contains(0, 2));
+        assertThat(cache.getMissCount(), is(4L));
+    }
+
+    @Test
+    public void labelsAreSearched() throws Exception {
+        final SearchResultCache cache = new SearchResultCache(16, 1024);
+        final FilterConfig filter = new FilterConfig();
+        assertThat(cache.search(new ChoiceIndex(CHOICES), filter, "fruit", 10).isEmpty(), is(true));
+        final ChoiceIndex labeled = new ChoiceIndex(CHOICES, Arrays.asList("fruit 1", "fruit 2"));
+        assertThat(cache.search(labeled, filter, "fruit", 10), contains(0, 1));
+    }
+
+    @Test
+    public void regexNotCached() throws Exception {
+        final SearchResultCache cache = new SearchResultCache(16, 1024);
+        final FilterConfig filter = new FilterConfig()
+            .withMatchMode(FilterConfig.MatchMode.REGEX)
+            .withCaseInsensitive(true);
+        final ChoiceIndex index = new ChoiceIndex(Arrays.asList("a b", "axb"));
+        assertThat(cache.search(index, filter, "a\\sb", 10), contains(0));
+        assertThat(cache.search(index, filter, "a\\Sb", 10), contains(1));
+        assertThat(cache.getMissCount() + cache.getHitCount(), is(0L));
+    }
+
+    @Test
+    public void evictedByPositions() throws Exception {
+        final SearchResultCache cache = new SearchResultCache(16, 4);
+        final ChoiceIndex index = new ChoiceIndex(CHOICES);
+        final FilterConfig filter = new FilterConfig().withCaseInsensitive(true);
+        cache.search(index, filter, "ap", 10);
+        cache.search(index, filter, "b", 10);
+        assertThat(cache.getEvictionCount(), is(0L));
+        cache.search(index, filter, "a", 10);
+        // evicts "ap" and "b" for 4 positions of "a"
+        assertThat(cache.getEvictionCount(), is(2L));
+        cache.search(index, filter, "a", 10);
+        assertThat(cache.getHitCount(), is(1L));
+    }
+
+    @Test
+    public void invalidate() throws Exception {
+        final SearchResultCache cache = new SearchResultCache(16, 1024);
+        final ChoiceIndex index = new ChoiceIndex(CHOICES);
+        cache.search(index, new FilterConfig(), "ap", 10);
+        cache.invalidate(index);
+        cache.search(index, new FilterConfig(), "ap", 10);
+        assertThat(cache.getHitCount(), is(0L));
+        assertThat(cache.getMissCount(), is(2L));
+    }
+}
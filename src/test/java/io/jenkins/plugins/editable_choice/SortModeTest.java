@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SortModeTest {
+    private static List<String> sort(final List<String> choices, final SortMode mode) {
+        return new ChoiceIndex(choices, null, mode).getValues();
+    }
+
+    @Test
+    public void asConfigured() throws Exception {
+        assertThat(
+            sort(Arrays.asList("b", "c", "a"), SortMode.AS_CONFIGURED),
+            contains("b", "c", "a")
+        );
+    }
+
+    @Test
+    public void lexical() throws Exception {
+        final List<String> choices = Arrays.asList("abcde", "abcdd", "b", "ab", "1.10", "1.9", "");
+        assertThat(
+            sort(choices, SortMode.LEXICAL),
+            contains("", "1.10", "1.9", "ab", "abcdd", "abcde", "b")
+        );
+        assertThat(
+            sort(choices, SortMode.LEXICAL_DESCENDING),
+            contains("b", "abcde", "abcdd", "ab", "1.9", "1.10", "")
+        );
+    }
+
+    @Test
+    public void natural() throws Exception {
+        final List<String> choices = Arrays.asList(
+            "release-10",
+            "1.10.0",
+            "v1.9.2",
+            "1.2.0-rc.1",
+            "1.2.0",
+            "1.2",
+            "1.2.0-beta",
+            "100000.0",
+            "1.2.0+build.5",
+            "release-9",
+            "2.0"
+        );
+        assertThat(
+            sort(choices, SortMode.NATURAL),
+            contains(
+                "1.2.0-beta",
+                "1.2.0-rc.1",
+                "1.2",
+                "1.2.0",
+                "1.2.0+build.5",
+                "v1.9.2",
+                "1.10.0",
+                "2.0",
+                "100000.0",
+                "release-9",
+                "release-10"
+            )
+        );
+        assertThat(sort(choices, SortMode.NATURAL_DESCENDING).get(0), is(equalTo("release-10")));
+        assertThat(
+            sort(Arrays.asList("1.2.3", "1.10.0", "1.9.9"), SortMode.NATURAL_DESCENDING),
+            contains("1.10.0", "1.9.9", "1.2.3")
+        );
+    }
+
+    @Test
+    public void packedKeysAgreeWithFullComparison() throws Exception {
+        // versions with more or larger numbers than packed are compared fully.
+        final Random random = new Random(1L);
+        final List<String> choices = new ArrayList<>();
+        for (int i = 0; i < 2000; ++i) {
+            final int size = 1 + random.nextInt(6);
+            final List<String> numbers = new ArrayList<>();
+            for (int n = 0; n < size; ++n) {
+                numbers.add(Integer.toString(random.nextBoolean() ? random.nextInt(3) : random.nextInt(200000)));
+            }
+            choices.add(String.join(".", numbers) + (random.nextInt(4) == 0 ? "-rc" : ""));
+        }
+        final List<String> sorted = sort(choices, SortMode.NATURAL);
+        final List<String> expected = new ArrayList<>(choices);
+        Collections.sort(expected, (a, b) -> {
+            final SortKeys.NaturalKey ka = new SortKeys.NaturalKey(a);
+            final SortKeys.NaturalKey kb = new SortKeys.NaturalKey(b);
+            // compare without packed keys
+            return ka.compareFully(kb);
+        });
+        assertThat(sorted, is(equalTo(expected)));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class StreamingJsonResponseTest {
+    private static final int MANY = 100000;
+
+    private static String write(final StreamingJsonResponse response) throws Exception {
+        final StringWriter w = new StringWriter();
+        response.write(w);
+        return w.toString();
+    }
+
+    @Test
+    public void envelope() throws Exception {
+        assertThat(
+            write(new StreamingJsonResponse(() -> Arrays.asList("a", "b").stream())),
+            is("{\"status\":\"ok\",\"data\":[\"a\",\"b\"]}")
+        );
+    }
+
+    @Test
+    public void empty() throws Exception {
+        assertThat(
+            write(new StreamingJsonResponse(() -> Collections.emptyList().stream())),
+            is("{\"status\":\"ok\",\"data\":[]}")
+        );
+    }
+
+    @Test
+    public void escape() throws Exception {
+        final StringWriter w = new StringWriter();
+        StreamingJsonResponse.writeString(
+            w,
+            "q\"b\\n\nr\rt\tc\u0001" + (char) 0x2028 + (char) 0x2029 + "x"
+        );
+        assertThat(
+            w.toString(),
+            is("\"q\\\"b\\\\n\\nr\\rt\\tc\\u0001\\u2028\\u2029x\"")
+        );
+    }
+
+    @Test
+    public void customItemWriter() throws Exception {
+        assertThat(
+            write(new StreamingJsonResponse(
+                () -> IntStream.range(0, 2).boxed(),
+                (w, item) -> w.write("{\"n\":" + item + "}")
+            )),
+            is("{\"status\":\"ok\",\"data\":[{\"n\":0},{\"n\":1}]}")
+        );
+    }
+
+    @Test
+    public void manyItems() throws Exception {
+        final String json = write(new StreamingJsonResponse(
+            () -> IntStream.range(0, MANY).mapToObj(i -> "choice-" + i)
+        ));
+        assertThat(json, startsWith("{\"status\":\"ok\",\"data\":[\"choice-0\","));
+        assertThat(json, endsWith(",\"choice-" + (MANY - 1) + "\"]}"));
+    }
+}
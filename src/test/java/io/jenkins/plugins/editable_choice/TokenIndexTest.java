@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class TokenIndexTest {
+    private static final List<String> CHOICES = Arrays.asList(
+        "billing-eu-prod-4.2.1",
+        "billing-us-prod-4.2.0",
+        "billing-eu-staging-4.3.0",
+        "search-eu-production-4.2.3",
+        "search-EU-prod-5.0.0"
+    );
+
+    private static List<String> search(final List<String> choices, final boolean caseInsensitive, final String input, final int limit) {
+        final ChoiceIndex index = new ChoiceIndex(choices);
+        return index.getTokenIndex(caseInsensitive).search(input, limit).stream()
+            .map(index::get)
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void tokenize() throws Exception {
+        assertThat(
+            TokenIndex.tokenize("service-eu_prod/4.2.1 eu"),
+            arrayContaining("service", "eu", "prod", "4.2.1")
+        );
+    }
+
+    @Test
+    public void allTokensInAnyOrder() throws Exception {
+        assertThat(
+            search(CHOICES, false, "eu prod 4.2", 10),
+            contains("billing-eu-prod-4.2.1", "search-eu-production-4.2.3")
+        );
+        assertThat(
+            search(CHOICES, false, "4.2 prod eu", 10),
+            contains("billing-eu-prod-4.2.1", "search-eu-production-4.2.3")
+        );
+        assertThat(
+            search(CHOICES, false, "eu-prod", 10),
+            contains("billing-eu-prod-4.2.1", "search-eu-production-4.2.3")
+        );
+        assertThat(search(CHOICES, false, "eu canary", 10), is(empty()));
+    }
+
+    @Test
+    public void tokenMatchesOnlyPrefix() throws Exception {
+        assertThat(search(CHOICES, false, "illing", 10), is(empty()));
+        assertThat(search(CHOICES, false, "bill", 10), contains(
+            "billing-eu-prod-4.2.1",
+            "billing-us-prod-4.2.0",
+            "billing-eu-staging-4.3.0"
+        ));
+    }
+
+    @Test
+    public void caseInsensitive() throws Exception {
+        assertThat(
+            search(CHOICES, true, "EU 5", 10),
+            contains("search-EU-prod-5.0.0")
+        );
+        assertThat(search(CHOICES, false, "EU 4", 10), is(empty()));
+    }
+
+    @Test
+    public void noTokens() throws Exception {
+        assertThat(search(CHOICES, false, " - ", 2), contains("billing-eu-prod-4.2.1", "billing-us-prod-4.2.0"));
+    }
+
+    @Test
+    public void largeChoices() throws Exception {
+        final String[] regions = {"eu", "us", "ap"};
+        final String[] envs = {"dev", "staging", "prod"};
+        final List<String> choices = new ArrayList<>();
+        for (int service = 0; service < 1000; ++service) {
+            for (final String region : regions) {
+                for (final String env : envs) {
+                    for (int minor = 0; minor < 20; ++minor) {
+                        choices.add(String.format(Locale.ROOT, "service%03d-%s-%s-1.%d.0", service, region, env, minor));
+                    }
+                }
+            }
+        }
+        final List<String> expected = choices.stream()
+            .filter(s -> s.startsWith("service42") && s.contains("-eu-prod-1.1"))
+            .collect(Collectors.toList());
+        assertThat(search(choices, false, "prod eu service42 1.1", 1000), equalTo(expected));
+        assertThat(expected.size(), equalTo(10 * 11));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 IKEDA Yasuyuki
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.editable_choice;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class UsageStatisticsTest {
+    @Test
+    public void reorderByUsage() throws Exception {
+        final List<String> choices = Arrays.asList("Apple", "Grape", "Orange", "Banana");
+        final UsageStatistics stats = new UsageStatistics();
+        stats.record("Orange");
+        stats.record("Orange");
+        stats.record("Banana");
+        assertThat(
+            stats.reorder(choices, new ChoiceIndex(choices)),
+            contains("Orange", "Banana", "Apple", "Grape")
+        );
+    }
+
+    @Test
+    public void reorderIgnoresValuesNotInChoices() throws Exception {
+        final List<String> choices = Arrays.asList("Apple", "Grape", "Orange");
+        final UsageStatistics stats = new UsageStatistics();
+        stats.record("Grapefruit");
+        stats.record("Grapefruit");
+        stats.record("Grape");
+        assertThat(
+            stats.reorder(choices, new ChoiceIndex(choices)),
+            contains("Grape", "Apple", "Orange")
+        );
+    }
+
+    @Test
+    public void recentUsagesWeighMore() throws Exception {
+        final List<String> choices = Arrays.asList("Apple", "Grape", "Orange");
+        final UsageStatistics stats = new UsageStatistics();
+        for (int i = 0; i < UsageStatistics.DECAY_INTERVAL * 2; ++i) {
+            stats.record("Apple");
+        }
+        for (int i = 0; i < UsageStatistics.DECAY_INTERVAL; ++i) {
+            stats.record("Orange");
+        }
+        assertThat(
+            stats.reorder(choices, new ChoiceIndex(choices)),
+            contains("Orange", "Apple", "Grape")
+        );
+    }
+
+    @Test
+    public void topValuesAreBounded() throws Exception {
+        final UsageStatistics stats = new UsageStatistics();
+        for (int i = 0; i < UsageStatistics.TOP_K * 2; ++i) {
+            stats.record(String.format("value%d", i));
+        }
+        stats.record("value0");
+        assertThat(stats.getTopValues().size(), lessThanOrEqualTo(UsageStatistics.TOP_K));
+        assertThat(stats.getTopValues().get(0), is(equalTo("value0")));
+    }
+}